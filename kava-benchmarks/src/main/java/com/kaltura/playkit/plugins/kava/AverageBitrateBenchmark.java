@@ -0,0 +1,50 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the average bitrate of a session that played many renditions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AverageBitrateBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int renditions;
+
+    private AverageBitrateCounter averageBitrateCounter;
+    private long totalPlayTime;
+
+    @Setup
+    public void setUp() {
+        averageBitrateCounter = new AverageBitrateCounter(KavaClock.SYSTEM);
+        for (int i = 0; i < renditions; i++) {
+            long playTime = 10_000 + i * 1_000;
+            averageBitrateCounter.restorePlayTime(300_000 + i * 250_000, playTime);
+            totalPlayTime += playTime;
+        }
+        averageBitrateCounter.setBitrate(300_000);
+        averageBitrateCounter.resumeCounting();
+    }
+
+    @Benchmark
+    public long getAverageBitrate() {
+        return averageBitrateCounter.getAverageBitrate(totalPlayTime);
+    }
+}
@@ -0,0 +1,46 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning the collected params into the trackEvent url.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BuildUrlBenchmark {
+
+    @Param({"VIEW", "PLAY", "ERROR"})
+    public KavaEvents event;
+
+    private Map<String, String> params;
+
+    @Setup
+    public void setUp() {
+        JvmKavaPlatform.muteLog();
+        DataHandler dataHandler = KavaFixtures.createPlayingDataHandler(KavaClock.SYSTEM);
+        dataHandler.handleAdError(1005, KavaFixtures.ERROR_DETAILS, KavaFixtures.ERROR_FINGERPRINT);
+        params = dataHandler.collectData(event, KavaMediaEntryType.Vod, false);
+    }
+
+    @Benchmark
+    public String buildUrlWithParams() {
+        return KavaRequestFactory.buildUrlWithParams(KavaAnalyticsConfig.DEFAULT_BASE_URL, params);
+    }
+}
@@ -0,0 +1,50 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of collecting the params of a single event, for every {@link KavaEvents} type.
+ * VIEW and PAUSE include the fsync of the persisted session state, as on a device.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectDataBenchmark {
+
+    // All the KavaEvents constants when not restricted with -p event=...
+    @Param
+    public KavaEvents event;
+
+    private DataHandler dataHandler;
+
+    @Setup
+    public void setUp() {
+        JvmKavaPlatform.muteLog();
+        dataHandler = KavaFixtures.createPlayingDataHandler(KavaClock.SYSTEM);
+    }
+
+    @Benchmark
+    public Map<String, String> collectData() {
+        if (event == KavaEvents.ERROR) {
+            // ERROR params are reset once reported.
+            dataHandler.handleAdError(1005, "SOURCE_ERROR - ExoPlaybackException", KavaFixtures.ERROR_FINGERPRINT);
+        }
+        return dataHandler.collectData(event, KavaMediaEntryType.Vod, false);
+    }
+}
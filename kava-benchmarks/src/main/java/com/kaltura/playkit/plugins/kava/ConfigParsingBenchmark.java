@@ -0,0 +1,57 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of binding the plugin config Json on every config update: the former new Gson with reflection
+ * against the streaming {@link KavaAnalyticsConfigCodec}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigParsingBenchmark {
+
+    private JsonObject configJson;
+
+    @Setup
+    public void setUp() {
+        configJson = JsonParser.parseString(KavaAnalyticsConfigCodec.getInstance().toJson(new KavaAnalyticsConfig()
+                .setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID)
+                .setEntryId(KavaFixtures.ENTRY_ID)
+                .setUiConfId(44267972)
+                .setKs("djJ8MjUwNDIwMXwx")
+                .setUserId("kava-tools-user")
+                .setCustomVar1("customVar1")
+                .setPlaybackContext("kava-tools")
+                .setSamplingRate(0.5f, KavaEvents.VIEW)
+                .setDisabledEvents(KavaEvents.BUFFER_START, KavaEvents.BUFFER_END))).getAsJsonObject();
+    }
+
+    @Benchmark
+    public KavaAnalyticsConfig gsonReflection() {
+        return new Gson().fromJson(configJson, KavaAnalyticsConfig.class);
+    }
+
+    @Benchmark
+    public KavaAnalyticsConfig streamingCodec() {
+        return KavaAnalyticsConfigCodec.getInstance().fromJson(configJson);
+    }
+}
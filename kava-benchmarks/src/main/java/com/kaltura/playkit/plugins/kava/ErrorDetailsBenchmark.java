@@ -0,0 +1,53 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the ERROR errorDetails and fingerprint of an exception with a deep cause chain, as thrown by
+ * the player data sources.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ErrorDetailsBenchmark {
+
+    @Param({"1", "8", "32"})
+    public int causeDepth;
+
+    private Throwable exception;
+
+    @Setup
+    public void setUp() {
+        Throwable cause = new IOException("Unable to connect to https://cdnapisec.kaltura.com/p/2504201/playManifest");
+        for (int i = 1; i < causeDepth; i++) {
+            cause = new IllegalStateException("Source error, level " + i, cause);
+        }
+        exception = cause;
+    }
+
+    @Benchmark
+    public String buildErrorDetails() {
+        return DataHandler.buildErrorDetails("Source error", "SOURCE_ERROR", exception, "ERROR");
+    }
+
+    @Benchmark
+    public long errorFingerprint() {
+        return ErrorFingerprint.of(7000, "SOURCE_ERROR", exception);
+    }
+}
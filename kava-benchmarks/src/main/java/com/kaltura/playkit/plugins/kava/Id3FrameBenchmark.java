@@ -0,0 +1,40 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the sequenceId of a live segment ID3 TEXT frame, a Json tree against the {@link Id3TextFrameScanner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Id3FrameBenchmark {
+
+    public String frameValue = "{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}";
+    private final Id3TextFrameScanner scanner = new Id3TextFrameScanner();
+
+    @Benchmark
+    public String parseJsonFrame() {
+        return JsonParser.parseString(frameValue).getAsJsonObject().get("sequenceId").getAsString();
+    }
+
+    @Benchmark
+    public int scanFrame() {
+        return scanner.scan(frameValue);
+    }
+}
@@ -0,0 +1,45 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the trackEvent response, in both the Json and the plain String formats.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParsingBenchmark {
+
+    public String jsonResponse = "{\"time\":1573049629.312,\"viewEventsEnabled\":true,\"viewEventInterval\":10,\"maxViewEventInterval\":30,\"viewEventIdleTimeout\":30}";
+    public String plainResponse = "1573049629.312";
+
+    @Benchmark
+    public double parseJsonResponse() {
+        JsonObject jsonObject = KavaSession.parseResponse(jsonResponse);
+        double serverTime = KavaSession.optDouble(jsonObject, "time");
+        boolean viewEventsEnabled = KavaSession.optBoolean(jsonObject, "viewEventsEnabled", true);
+        int viewEventInterval = KavaSession.optInt(jsonObject, "viewEventInterval", 0);
+        return viewEventsEnabled ? serverTime + viewEventInterval : serverTime;
+    }
+
+    @Benchmark
+    public double parsePlainResponse() {
+        JsonObject jsonObject = KavaSession.parseResponse(plainResponse);
+        return jsonObject == null ? Double.parseDouble(plainResponse) : 0;
+    }
+}
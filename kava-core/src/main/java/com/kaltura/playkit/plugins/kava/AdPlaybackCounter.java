@@ -0,0 +1,159 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Time spent in ads, kept apart from the content time: ad play time since the view session start, ad buffer
+ * time between two VIEW events and since the view session start, the ad time that overlapped the content
+ * view timer, and the ad time before the first content frame. All the timestamps are of the DataHandler clock, in ms.
+ */
+class AdPlaybackCounter {
+
+    private boolean isAdPlaying;
+    private boolean isAdBuffering;
+    private boolean isOverlappingContent;
+    private boolean isContentStarted;
+    private long periodStartTimestamp;
+    private long firstAdTimestamp;
+    private int adCount;
+
+    private long adTimeBeforeContent;
+    private long playTimeSum;
+    private long bufferTimePerViewEvent;
+    private long bufferTimeSum;
+    private long overlappedTimePerViewEvent;
+
+    /**
+     * @param timestamp            - ad start time.
+     * @param isOverlappingContent - true if the content view timer keeps counting played time during the ad.
+     */
+    void onAdStarted(long timestamp, boolean isOverlappingContent) {
+        updateCounters(timestamp);
+        isAdPlaying = true;
+        isAdBuffering = false;
+        this.isOverlappingContent = isOverlappingContent;
+        if (adCount == 0) {
+            firstAdTimestamp = timestamp;
+        }
+        adCount++;
+    }
+
+    void onAdBufferStart(long timestamp) {
+        updateCounters(timestamp);
+        isAdBuffering = isAdPlaying;
+    }
+
+    void onAdBufferEnd(long timestamp) {
+        updateCounters(timestamp);
+        isAdBuffering = false;
+    }
+
+    /**
+     * Ad completed, was skipped or failed.
+     */
+    void onAdEnded(long timestamp) {
+        updateCounters(timestamp);
+        isAdPlaying = false;
+        isAdBuffering = false;
+    }
+
+    /**
+     * First content frame, the ad time from now on is not part of the content join time.
+     */
+    void onContentStarted(long timestamp) {
+        updateCounters(timestamp);
+        isContentStarted = true;
+    }
+
+    /**
+     * Add the time of the current ad period up to the timestamp to the counters.
+     */
+    void updateCounters(long timestamp) {
+        if (isAdPlaying) {
+            long periodTime = Math.max(0, timestamp - periodStartTimestamp);
+            if (isAdBuffering) {
+                bufferTimePerViewEvent += periodTime;
+                bufferTimeSum += periodTime;
+            } else {
+                playTimeSum += periodTime;
+            }
+            if (isOverlappingContent) {
+                overlappedTimePerViewEvent += periodTime;
+            }
+            if (!isContentStarted) {
+                adTimeBeforeContent += periodTime;
+            }
+        }
+        periodStartTimestamp = timestamp;
+    }
+
+    boolean isAdPlaying() {
+        return isAdPlaying;
+    }
+
+    /**
+     * @return - number of ads started for the media.
+     */
+    int getAdCount() {
+        return adCount;
+    }
+
+    /**
+     * @return - start time of the first ad of the media, valid if getAdCount() is above 0.
+     */
+    long getFirstAdTimestamp() {
+        return firstAdTimestamp;
+    }
+
+    /**
+     * @return - ad play and buffer time before the first content frame.
+     */
+    long getAdTimeBeforeContent() {
+        return adTimeBeforeContent;
+    }
+
+    long getPlayTimeSum() {
+        return playTimeSum;
+    }
+
+    long getBufferTimePerViewEvent() {
+        return bufferTimePerViewEvent;
+    }
+
+    long getBufferTimeSum() {
+        return bufferTimeSum;
+    }
+
+    /**
+     * @return - ad time counted by the content view timer since the last VIEW event, to take off the content play time.
+     */
+    long getOverlappedTimePerViewEvent() {
+        return overlappedTimePerViewEvent;
+    }
+
+    void resetViewEventCounters() {
+        bufferTimePerViewEvent = 0;
+        overlappedTimePerViewEvent = 0;
+    }
+
+    /**
+     * View session closed by the server, the sums start over as the content ones do.
+     */
+    void resetSums() {
+        resetViewEventCounters();
+        playTimeSum = 0;
+        bufferTimeSum = 0;
+    }
+
+    /**
+     * New media entry.
+     */
+    void reset() {
+        resetSums();
+        isAdPlaying = false;
+        isAdBuffering = false;
+        isOverlappingContent = false;
+        isContentStarted = false;
+        firstAdTimestamp = 0;
+        adCount = 0;
+        adTimeBeforeContent = 0;
+    }
+}
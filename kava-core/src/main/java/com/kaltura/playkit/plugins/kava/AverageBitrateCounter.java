@@ -0,0 +1,131 @@
+package com.kaltura.playkit.plugins.kava;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Created by anton.afanasiev on 08/02/2018.
+ */
+
+public class AverageBitrateCounter {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final KavaClock clock;
+
+    private boolean shouldCount = false;
+    private long currentTrackBitrate = -1;
+    private long currentTrackStartTimestamp = 0;
+
+    // Played time per bitrate, as parallel arrays. A session sees only a handful of bitrates.
+    private long[] bitrates = new long[INITIAL_CAPACITY];
+    private long[] playTimes = new long[INITIAL_CAPACITY];
+    private int bitratesCount;
+
+    AverageBitrateCounter(KavaClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Calculate average bitrate for the entire media session.
+     *
+     * @param totalPlaytimeSum - total amount of the player being in active playback mode.
+     * @return - average bitrate.
+     */
+    long getAverageBitrate(long totalPlaytimeSum) {
+
+        updateBitratePlayTime();
+
+        long averageBitrate = 0;
+        if (totalPlaytimeSum == 0) {
+            return averageBitrate;
+        }
+        for (int i = 0; i < bitratesCount; i++) {
+            averageBitrate += (bitrates[i] * playTimes[i]) / totalPlaytimeSum;
+        }
+        return averageBitrate;
+    }
+
+    private void updateBitratePlayTime() {
+        //We are not counting adaptive bitrate(0) selection as average.
+        if (currentTrackBitrate == 0) {
+            return;
+        }
+
+        long currentTimeStamp = clock.currentTimeMillis();
+        long playedTime = currentTimeStamp - currentTrackStartTimestamp;
+
+        //When it is first time that this bitrate is was selected we add it with the playedTime value.
+        //Otherwise the last played time is added to the existing value.
+        addPlayTime(currentTrackBitrate, playedTime);
+
+        currentTrackStartTimestamp = currentTimeStamp;
+
+    }
+
+    private void addPlayTime(long bitrate, long playTime) {
+        for (int i = 0; i < bitratesCount; i++) {
+            if (bitrates[i] == bitrate) {
+                playTimes[i] += playTime;
+                return;
+            }
+        }
+        if (bitratesCount == bitrates.length) {
+            bitrates = Arrays.copyOf(bitrates, bitratesCount * 2);
+            playTimes = Arrays.copyOf(playTimes, bitratesCount * 2);
+        }
+        bitrates[bitratesCount] = bitrate;
+        playTimes[bitratesCount] = playTime;
+        bitratesCount++;
+    }
+
+    void resumeCounting() {
+        currentTrackStartTimestamp = clock.currentTimeMillis();
+        shouldCount = true;
+    }
+
+    void pauseCounting() {
+        updateBitratePlayTime();
+        shouldCount = false;
+    }
+
+    void setBitrate(long bitrate) {
+        if (shouldCount) {
+            updateBitratePlayTime();
+        }
+        this.currentTrackBitrate = bitrate;
+    }
+
+    void reset() {
+        bitratesCount = 0;
+    }
+
+    int getBitratesCount() {
+        return bitratesCount;
+    }
+
+    long getBitrateAt(int index) {
+        return bitrates[index];
+    }
+
+    long getPlayTimeAt(int index) {
+        return playTimes[index];
+    }
+
+    /**
+     * Restore play time of the bitrate from a persisted session.
+     *
+     * @param bitrate  - track bitrate.
+     * @param playTime - total time this bitrate was played.
+     */
+    void restorePlayTime(long bitrate, long playTime) {
+        for (int i = 0; i < bitratesCount; i++) {
+            if (bitrates[i] == bitrate) {
+                playTimes[i] = playTime;
+                return;
+            }
+        }
+        addPlayTime(bitrate, playTime);
+    }
+}
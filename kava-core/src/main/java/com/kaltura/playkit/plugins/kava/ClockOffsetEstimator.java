@@ -0,0 +1,62 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * NTP style estimation of the analytics server clock offset from the trackEvent responses.
+ * Every response gives one sample: the request round trip time (monotonic clock) and the server "time" field.
+ * The offset of the sample with the lowest round trip time among the recent ones is the most accurate,
+ * because its unknown network asymmetry is bounded by the smallest RTT.
+ * Must be updated only from the Kava analytics thread, results are published to {@link KavaMetrics}.
+ */
+class ClockOffsetEstimator {
+
+    private static final int SAMPLES_COUNT = 8;
+
+    private final long[] roundTripTimes = new long[SAMPLES_COUNT];
+    private final long[] clockOffsets = new long[SAMPLES_COUNT];
+    private int samples;
+    private int nextSample;
+
+    private long clockOffset;
+    private long minRoundTripTime;
+
+    /**
+     * @param roundTripTime           - request round trip time in ms.
+     * @param completedClientTimestamp - client wall clock time of the response in ms.
+     * @param serverTimestamp         - server wall clock time from the response in ms.
+     */
+    void addSample(long roundTripTime, long completedClientTimestamp, long serverTimestamp) {
+        if (roundTripTime < 0) {
+            return;
+        }
+
+        // Server time is assumed to be taken in the middle of the round trip.
+        roundTripTimes[nextSample] = roundTripTime;
+        clockOffsets[nextSample] = serverTimestamp - (completedClientTimestamp - roundTripTime / 2);
+        nextSample = (nextSample + 1) % SAMPLES_COUNT;
+        samples = Math.min(samples + 1, SAMPLES_COUNT);
+
+        int bestSample = 0;
+        for (int i = 1; i < samples; i++) {
+            if (roundTripTimes[i] < roundTripTimes[bestSample]) {
+                bestSample = i;
+            }
+        }
+        minRoundTripTime = roundTripTimes[bestSample];
+        clockOffset = clockOffsets[bestSample];
+    }
+
+    boolean hasEstimate() {
+        return samples > 0;
+    }
+
+    /**
+     * @return - server clock minus client clock in ms.
+     */
+    long getClockOffset() {
+        return clockOffset;
+    }
+
+    long getMinRoundTripTime() {
+        return minRoundTripTime;
+    }
+}
@@ -0,0 +1,1114 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Handle, update and hold all the Kava related data. When needed will provide all the collected information.
+ * Created by anton.afanasiev on 31/01/2018.
+ */
+
+class DataHandler {
+
+    private static final KavaLog log = KavaLog.get(DataHandler.class.getSimpleName());
+
+    private static final long KB_MULTIPLIER = 1024L;
+    static final float MILLISECONDS_MULTIPLIER_FLOAT = 1000f;
+
+
+    private static final int SAMPLING_BUCKETS = 10000;
+
+    // Hard cap of the reported errorDetails, and of the short form of an error reported recently.
+    static final int MAX_ERROR_DETAILS_BYTES = 2048;
+    static final int REPEATED_ERROR_DETAILS_BYTES = 128;
+
+    private final KavaPlatform platform;
+    private final KavaClock clock;
+
+    private int errorCode;
+    private String errorDetails;
+    private long errorFingerprint;
+    private Integer errorPosition;
+    private int eventIndex;
+    private int totalBufferTimePerViewEvent;
+
+    private long playTimeSum;
+    private long viewEventPlayedTime;
+    private long viewEventIdleTimeout = ViewTimer.MAX_ALLOWED_VIEW_IDLE_TIME;
+    private long dvrThreshold;
+    private long actualBitrate;
+    private long currentPosition;
+    private long currentBufferPosition;
+    private long currentDuration;
+    private long joinTimeStartTimestamp;
+    private long canPlayTimestamp;
+    private long loadedMetaDataTimestamp;
+    private long totalBufferTimePerEntry;
+    private long lastKnownBufferingTimestamp;
+    private long targetSeekPositionInSeconds;
+    private float lastKnownPlaybackSpeed = 1.0f;
+
+    private String entryId;
+    private String sessionId;
+    private String partnerId;
+    private String userAgent;
+    private String deliveryType;
+    private String sessionStartTime;
+    private String encodedReferrer;
+    private String currentAudioLanguage;
+    private String currentCaptionLanguage;
+    private String flavorParamsId;
+    private long maxConnectDurationMs = -1;
+    private boolean attachClientEventTime;
+    private boolean hasServerClockOffset;
+    private long serverClockOffset;
+
+    // Per KavaEvents ordinal, decided once per session.
+    private final boolean[] sampledEvents = new boolean[KavaEvents.values().length];
+    private final float[] samplingRates = new float[KavaEvents.values().length];
+    private final boolean[] paramsGroupsEnabled = new boolean[KavaParamsGroup.values().length];
+    private KavaAnalyticsConfig pluginConfig;
+
+    private final AdPlaybackCounter adPlaybackCounter = new AdPlaybackCounter();
+    private final ThroughputCounter manifestThroughput = new ThroughputCounter();
+    private final ThroughputCounter videoThroughput = new ThroughputCounter();
+    private final ThroughputCounter audioThroughput = new ThroughputCounter();
+    private final ThroughputCounter textThroughput = new ThroughputCounter();
+
+    private final SessionStateStore sessionStateStore;
+    private final SessionStateStore.SessionState sessionState = new SessionStateStore.SessionState();
+    private final OfflineSummaryStore offlineSummaryStore;
+    private OfflineSessionSummary offlineSessionSummary;
+
+    private OptionalParams optionalParams;
+    private KavaMediaEntryType playbackType;
+    private AverageBitrateCounter averageBitrateCounter;
+
+
+    private boolean onApplicationPaused = false;
+    private double targetBuffer;
+    private boolean isLive;
+    // Last playheadUpdated values, valid only if hasPlayhead.
+    private boolean hasPlayhead;
+    private long playheadPosition;
+    private long playheadBufferPosition;
+    private long playheadDuration;
+
+
+    DataHandler(KavaPlatform platform) {
+        this.platform = platform;
+        this.clock = platform.clock;
+        this.userAgent = platform.userAgent;
+        sessionStateStore = new SessionStateStore(platform.filesDir);
+        offlineSummaryStore = new OfflineSummaryStore(platform.filesDir);
+    }
+
+    /**
+     * Apply plugin configuration values.
+     *
+     * @param pluginConfig - plugin configurations.
+     */
+    void onUpdateConfig(KavaAnalyticsConfig pluginConfig) {
+        if (pluginConfig.getPartnerId() != null) {
+            partnerId = Integer.toString(pluginConfig.getPartnerId());
+        }
+        dvrThreshold = pluginConfig.getDvrThreshold();
+        attachClientEventTime = pluginConfig.isAttachClientEventTime();
+        generateReferrer(pluginConfig.getReferrer());
+        optionalParams = new OptionalParams(pluginConfig);
+        for (KavaParamsGroup paramsGroup : KavaParamsGroup.values()) {
+            paramsGroupsEnabled[paramsGroup.ordinal()] = pluginConfig.isParamsGroupEnabled(paramsGroup);
+        }
+        this.pluginConfig = pluginConfig;
+        if (sessionId != null) {
+            updateSampling();
+        }
+    }
+
+    /**
+     * Apply media related values.
+     *
+     * @param entryId      - Kava entry id of the media.
+     * @param sessionId    - player session id.
+     * @param targetBuffer - max player buffer in seconds, or -1 if not available.
+     */
+    void onUpdateMedia(String entryId, String sessionId, double targetBuffer) {
+
+        averageBitrateCounter = new AverageBitrateCounter(clock);
+
+        //Previous entry session was ended on purpose, there is nothing to continue.
+        sessionStateStore.clear(this.entryId);
+        saveOfflineSessionSummary();
+        offlineSessionSummary = null;
+
+        this.entryId = entryId;
+        this.sessionId = sessionId != null ? sessionId : "";
+        resetValues();
+        this.targetBuffer = targetBuffer;
+        restoreSessionState();
+        updateSampling();
+    }
+
+    /**
+     * Decide once per session which events are reported. All the events share the session bucket,
+     * so the decision is stable for the session and nested across the rates. Disabled events are never reported.
+     */
+    private void updateSampling() {
+        int sessionBucket = getSamplingBucket(sessionId);
+        KavaEvents[] events = KavaEvents.values();
+        for (int i = 0; i < events.length; i++) {
+            float samplingRate = pluginConfig != null ? pluginConfig.getSamplingRate(events[i]) : 1f;
+            boolean isEnabled = pluginConfig == null || pluginConfig.isEventEnabled(events[i]);
+            samplingRates[i] = samplingRate;
+            sampledEvents[i] = isEnabled && sessionBucket < samplingRate * SAMPLING_BUCKETS;
+        }
+    }
+
+    /**
+     * FNV-1a hash of the sessionId, identical on every device and release, unlike a random draw.
+     */
+    static int getSamplingBucket(String sessionId) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < sessionId.length(); i++) {
+            hash ^= sessionId.charAt(i);
+            hash *= 0x01000193;
+        }
+        return (hash & Integer.MAX_VALUE) % SAMPLING_BUCKETS;
+    }
+
+    /**
+     * @param event - current Kava event.
+     * @return - true if the event should be reported for the current session.
+     */
+    boolean isSampled(KavaEvents event) {
+        return sampledEvents[event.ordinal()];
+    }
+
+    /**
+     * Event is not reported for this session, or is disabled. Only keep the counters the reported events rely on,
+     * without collecting the event data.
+     *
+     * @param event - current Kava event.
+     */
+    void handleUnsampledEvent(KavaEvents event) {
+        switch (event) {
+            case VIEW:
+                addViewEventPlayTime();
+                adPlaybackCounter.resetViewEventCounters();
+                totalBufferTimePerViewEvent = 0;
+                break;
+            case PLAY:
+            case RESUME:
+                averageBitrateCounter.resumeCounting();
+                totalBufferTimePerViewEvent = 0;
+                break;
+            case PAUSE:
+                averageBitrateCounter.pauseCounting();
+                sessionStartTime = null;
+                break;
+            case ERROR:
+                errorCode = -1;
+                errorDetails = null;
+                errorFingerprint = ErrorFingerprint.NONE;
+                errorPosition = null;
+                break;
+        }
+    }
+
+    /**
+     * If the process was killed in the middle of this entry session and the entry is reloaded
+     * before the server closed the session, continue the persisted session.
+     */
+    private void restoreSessionState() {
+        if (!sessionStateStore.load(entryId, sessionState)) {
+            return;
+        }
+
+        long sessionStateAge = clock.currentTimeMillis() - sessionState.savedAtTimestamp;
+        if (sessionStateAge < 0 || sessionStateAge >= viewEventIdleTimeout) {
+            sessionStateStore.clear(entryId);
+            return;
+        }
+
+        log.d("Continuing persisted Kava session");
+        sessionId = sessionState.sessionId;
+        sessionStartTime = sessionState.sessionStartTime;
+        eventIndex = sessionState.eventIndex;
+        playTimeSum = sessionState.playTimeSum;
+        totalBufferTimePerEntry = sessionState.totalBufferTimePerEntry;
+        for (int i = 0; i < sessionState.bitratesCount; i++) {
+            averageBitrateCounter.restorePlayTime(sessionState.bitrates[i], sessionState.bitratePlayTimes[i]);
+        }
+    }
+
+    private void persistSessionState() {
+        sessionState.savedAtTimestamp = clock.currentTimeMillis();
+        sessionState.entryId = entryId;
+        sessionState.sessionId = sessionId;
+        sessionState.sessionStartTime = sessionStartTime;
+        sessionState.eventIndex = eventIndex;
+        sessionState.playTimeSum = playTimeSum;
+        sessionState.totalBufferTimePerEntry = totalBufferTimePerEntry;
+        int bitratesCount = Math.min(averageBitrateCounter.getBitratesCount(), SessionStateStore.MAX_BITRATES);
+        for (int i = 0; i < bitratesCount; i++) {
+            sessionState.bitrates[i] = averageBitrateCounter.getBitrateAt(i);
+            sessionState.bitratePlayTimes[i] = averageBitrateCounter.getPlayTimeAt(i);
+        }
+        sessionState.bitratesCount = bitratesCount;
+        sessionStateStore.save(sessionState);
+    }
+
+    /**
+     * Session is closed on purpose, persisted state should not be continued.
+     */
+    void clearSessionState() {
+        sessionStateStore.clear(entryId);
+    }
+
+    void updatePartnerAndEntryId(int partnerId, String entryId) {
+        log.d("Updating partner and entry id");
+        this.partnerId = String.valueOf(partnerId);
+        this.entryId = entryId;
+    }
+
+    /**
+     * Collect all the event relevant information.
+     * Information will be hold in {@link LinkedHashMap} in order to preserve parameters order
+     * when sending to server.
+     *
+     * @param event - current Kava event.
+     * @return - Map with all the event relevant information
+     */
+    Map<String, String> collectData(KavaEvents event, KavaMediaEntryType mediaEntryType, boolean isLiveMedia) {
+        this.isLive = isLiveMedia;
+        if (!onApplicationPaused) {
+
+            long playerPosition = 0;
+            long playerDuration = 0;
+
+            if (hasPlayhead) {
+                playerPosition = playheadPosition;
+                playerDuration = playheadDuration;
+            }
+            playbackType = getPlaybackType(mediaEntryType, playerPosition, playerDuration);
+        }
+
+        Map<String, String> params = new LinkedHashMap<>();
+
+        params.put("service", "analytics");
+        params.put("action", "trackEvent");
+        params.put("eventType", Integer.toString(event.getValue()));
+        params.put("partnerId", partnerId);
+        params.put("entryId", entryId);
+        params.put("sessionId", sessionId);
+        params.put("eventIndex", Integer.toString(eventIndex));
+        params.put("referrer", encodedReferrer);
+        params.put("deliveryType", deliveryType);
+        params.put("playbackType", playbackType.name().toLowerCase(Locale.ROOT));
+        params.put("clientVer", platform.clientTag);
+        String position = getPlayerPosition(mediaEntryType);
+        if (isParamsGroupEnabled(KavaParamsGroup.PLAYHEAD)) {
+            params.put("position", position);
+        }
+        params.put("application", platform.applicationId);
+        params.put("playbackSpeed", String.valueOf(lastKnownPlaybackSpeed));
+        if (currentCaptionLanguage != null) {
+            params.put("caption", currentCaptionLanguage);
+        }
+        if (sessionStartTime != null) {
+            params.put("sessionStartTime", sessionStartTime);
+        }
+        float samplingRate = samplingRates[event.ordinal()];
+        if (samplingRate < 1f) {
+            params.put("samplingRate", Float.toString(samplingRate));
+        }
+        if (attachClientEventTime && hasServerClockOffset) {
+            long clientEventTime = clock.currentTimeMillis() + serverClockOffset;
+            params.put("clientEventTime", String.format(Locale.US, "%.3f", clientEventTime / 1000.0));
+        }
+
+        //Set event specific information.
+        switch (event) {
+
+            case VIEW:
+                addViewParams(params);
+                addBufferParams(params);
+                break;
+            case IMPRESSION:
+                break;
+            case PLAY:
+                params.put("actualBitrate", Long.toString(actualBitrate / KB_MULTIPLIER));
+
+                float joinTime = (clock.currentTimeMillis() - joinTimeStartTimestamp) / MILLISECONDS_MULTIPLIER_FLOAT;
+                params.put("joinTime", Float.toString(joinTime));
+
+                float canPlay = (canPlayTimestamp - loadedMetaDataTimestamp) / MILLISECONDS_MULTIPLIER_FLOAT;
+                params.put("canPlay", Float.toString(canPlay));
+                addAdJoinParams(params);
+                params.put("networkConnectionType", platform.networkInfo.getNetworkClass());
+                averageBitrateCounter.resumeCounting();
+                addBufferParams(params);
+                break;
+            case RESUME:
+                params.put("actualBitrate", Long.toString(actualBitrate / KB_MULTIPLIER));
+                averageBitrateCounter.resumeCounting();
+                addBufferParams(params);
+                break;
+            case SEEK:
+                params.put("targetPosition", Float.toString(targetSeekPositionInSeconds / MILLISECONDS_MULTIPLIER_FLOAT));
+                break;
+            case SOURCE_SELECTED:
+            case FLAVOR_SWITCHED:
+                params.put("actualBitrate", Long.toString(actualBitrate / KB_MULTIPLIER));
+                break;
+            case AUDIO_SELECTED:
+                params.put("language", currentAudioLanguage);
+                break;
+            case CAPTIONS:
+                break;
+            case SPEED:
+                break;
+            case ERROR:
+                if (errorCode != -1) {
+                    params.put("errorCode", Integer.toString(errorCode));
+                }
+                if (errorDetails != null) {
+                    params.put("errorDetails", errorDetails);
+                }
+                if (errorFingerprint != ErrorFingerprint.NONE) {
+                    params.put("errorFingerprint", ErrorFingerprint.toHex(errorFingerprint));
+                }
+                if (errorPosition != null) {
+                    params.put("errorPosition", String.valueOf(errorPosition));
+                }
+                errorCode = -1;
+                errorDetails = null;
+                errorFingerprint = ErrorFingerprint.NONE;
+                errorPosition = null;
+                break;
+            case PAUSE:
+                //When player was paused we should update average bitrate value,
+                //because we are interested in average bitrate only during active playback.
+                averageBitrateCounter.pauseCounting();
+                // each time we stop counting view timer we should reset the sessionStartTimer.
+                sessionStartTime = null;
+                break;
+        }
+
+        params.putAll(optionalParams.getParams());
+        eventIndex++;
+        if (event == KavaEvents.VIEW || event == KavaEvents.PAUSE) {
+            persistSessionState();
+        }
+        return params;
+    }
+
+    private boolean isParamsGroupEnabled(KavaParamsGroup paramsGroup) {
+        return paramsGroupsEnabled[paramsGroup.ordinal()];
+    }
+
+    /**
+     * Add the playback time measured by the view timer since the previous VIEW event, net of buffering.
+     */
+    private void addViewEventPlayTime() {
+        adPlaybackCounter.updateCounters(clock.currentTimeMillis());
+        playTimeSum += Math.max(0, viewEventPlayedTime - totalBufferTimePerViewEvent - adPlaybackCounter.getOverlappedTimePerViewEvent());
+        viewEventPlayedTime = 0;
+    }
+
+    /**
+     * Add the time to the first ad frame and the content join time net of the ads, if an ad started before the content.
+     */
+    private void addAdJoinParams(Map<String, String> params) {
+        long now = clock.currentTimeMillis();
+        adPlaybackCounter.onContentStarted(now);
+        if (adPlaybackCounter.getAdCount() == 0 || !isParamsGroupEnabled(KavaParamsGroup.ADS)) {
+            return;
+        }
+        long adJoinTime = Math.max(0, adPlaybackCounter.getFirstAdTimestamp() - joinTimeStartTimestamp);
+        long contentJoinTime = Math.max(0, now - joinTimeStartTimestamp - adPlaybackCounter.getAdTimeBeforeContent());
+        params.put("adJoinTime", Float.toString(adJoinTime / MILLISECONDS_MULTIPLIER_FLOAT));
+        params.put("contentJoinTime", Float.toString(contentJoinTime / MILLISECONDS_MULTIPLIER_FLOAT));
+    }
+
+    /**
+     * Add the ad play and buffer time, if an ad was played for the media.
+     */
+    private void addAdViewParams(Map<String, String> params) {
+        if (adPlaybackCounter.getAdCount() > 0 && isParamsGroupEnabled(KavaParamsGroup.ADS)) {
+            params.put("adPlayTimeSum", Float.toString(adPlaybackCounter.getPlayTimeSum() / MILLISECONDS_MULTIPLIER_FLOAT));
+            params.put("adBufferTime", Float.toString(adPlaybackCounter.getBufferTimePerViewEvent() / MILLISECONDS_MULTIPLIER_FLOAT));
+            params.put("adBufferTimeSum", Float.toString(adPlaybackCounter.getBufferTimeSum() / MILLISECONDS_MULTIPLIER_FLOAT));
+        }
+        adPlaybackCounter.resetViewEventCounters();
+    }
+
+    /**
+     * @param playedTime - active playback time measured by the view timer for the next VIEW event, in ms.
+     */
+    void handleViewEventPlayedTime(long playedTime) {
+        viewEventPlayedTime += playedTime;
+    }
+
+    /**
+     * @param viewEventIdleTimeout - idle time after which the server closes the view session, in ms.
+     */
+    void setViewEventIdleTimeout(long viewEventIdleTimeout) {
+        this.viewEventIdleTimeout = viewEventIdleTimeout;
+    }
+
+    private void addViewParams(Map<String, String> params) {
+
+        int soundMode = platform.audioState.getSoundMode();
+        if (soundMode != KavaAudioState.SOUND_MODE_UNKNOWN && isParamsGroupEnabled(KavaParamsGroup.SOUND_MODE)) {
+            params.put("soundMode", Integer.toString(soundMode)); // 1 - sound Off, 2 - sound On
+        }
+
+        if (isParamsGroupEnabled(KavaParamsGroup.SEGMENT_DOWNLOAD)) {
+            addThroughputParams(params);
+        }
+
+        if (flavorParamsId != null && isParamsGroupEnabled(KavaParamsGroup.SEQUENCE_ID)) {
+            params.put("flavorParamsId", flavorParamsId); // --> in live
+        }
+
+        if (targetBuffer > 0 && isParamsGroupEnabled(KavaParamsGroup.PLAYHEAD)) {
+            params.put("targetBuffer", targetBuffer + "");
+            if (currentBufferPosition > 0 && currentPosition > 0 && currentBufferPosition > currentPosition) {
+                double forwardBufferHealth = (((currentBufferPosition - currentPosition) / MILLISECONDS_MULTIPLIER_FLOAT) / targetBuffer);
+                params.put("forwardBufferHealth", String.format(Locale.US, "%.3f", forwardBufferHealth));
+            }
+        }
+
+        if (isParamsGroupEnabled(KavaParamsGroup.NETWORK)) {
+            params.put("networkConnectionType", platform.networkInfo.getNetworkClass());
+            if (maxConnectDurationMs > 0) {
+                params.put("networkConnectionOverhead", maxConnectDurationMs / MILLISECONDS_MULTIPLIER_FLOAT + ""); // 	max dns+ssl+tcp resolving time over all video segments in sec
+                maxConnectDurationMs = -1;
+            }
+        }
+
+        addViewEventPlayTime();
+        params.put("playTimeSum", Float.toString(playTimeSum / MILLISECONDS_MULTIPLIER_FLOAT));
+        addAdViewParams(params);
+        params.put("actualBitrate", Long.toString(actualBitrate / KB_MULTIPLIER));
+        long averageBitrate = averageBitrateCounter.getAverageBitrate(playTimeSum + totalBufferTimePerEntry);
+        params.put("averageBitrate", Long.toString(averageBitrate / KB_MULTIPLIER));
+        if (currentAudioLanguage != null && isParamsGroupEnabled(KavaParamsGroup.AUDIO_LANGUAGE)) {
+            params.put("audioLanguage", currentAudioLanguage);
+        }
+    }
+
+    /**
+     * Add per track type download information to the report and reset it for the next VIEW window.
+     * Video segments keep the original (unprefixed) parameter names.
+     *
+     * @param params - map of current params.
+     */
+    private void addThroughputParams(Map<String, String> params) {
+        if (manifestThroughput.getMaxLoadDurationMs() != -1) {
+            params.put("manifestDownloadTime", Float.toString(manifestThroughput.getMaxLoadDurationMs() / MILLISECONDS_MULTIPLIER_FLOAT));
+            params.put("manifestDownloadCount", Integer.toString(manifestThroughput.getLoadCount()));
+        }
+        addSegmentThroughputParams(params, videoThroughput, "segmentDownloadTime", "bandwidth", "segmentCount");
+        addSegmentThroughputParams(params, audioThroughput, "audioSegmentDownloadTime", "audioBandwidth", "audioSegmentCount");
+        addSegmentThroughputParams(params, textThroughput, "textSegmentDownloadTime", "textBandwidth", "textSegmentCount");
+
+        long totalBytesLoaded = manifestThroughput.getBytesLoaded() + videoThroughput.getBytesLoaded()
+                + audioThroughput.getBytesLoaded() + textThroughput.getBytesLoaded();
+        if (totalBytesLoaded > 0 && audioThroughput.getBytesLoaded() > 0) {
+            params.put("audioBytesShare", String.format(Locale.US, "%.3f", audioThroughput.getBytesLoaded() / (totalBytesLoaded * 1.0)));
+        }
+
+        manifestThroughput.reset();
+        videoThroughput.reset();
+        audioThroughput.reset();
+        textThroughput.reset();
+    }
+
+    private void addSegmentThroughputParams(Map<String, String> params, ThroughputCounter throughput, String downloadTimeKey, String bandwidthKey, String countKey) {
+        if (throughput.getMaxLoadDurationMs() == -1) {
+            return;
+        }
+        params.put(downloadTimeKey, Float.toString(throughput.getMaxLoadDurationMs() / MILLISECONDS_MULTIPLIER_FLOAT));
+        if (throughput.hasBandwidth()) {
+            params.put(bandwidthKey, String.format(Locale.US, "%.3f", convertToKbps(throughput.getBandwidthInByteMS())));
+        }
+        params.put(countKey, Integer.toString(throughput.getLoadCount()));
+    }
+
+    private double convertToKbps(double bandwidthInByteMS) {
+
+        return (((bandwidthInByteMS * 8)   // bytes to bits
+                                  / 1024)  // bits  to kbits
+                                  * 1000); // msec  to sec
+    }
+
+
+    /**
+     * Video bitrate reported by the player playback info.
+     *
+     * @param videoBitrate - current video bitrate.
+     * @return - true if the bitrate has changed (FLAVOR_SWITCHED should be sent). Otherwise false.
+     */
+    boolean handlePlaybackInfoBitrate(long videoBitrate) {
+        if (actualBitrate == videoBitrate) {
+            return false;
+        }
+        handleVideoTrackChanged(videoBitrate);
+        return true;
+    }
+
+    /**
+     * @param bitrate - bitrate of the newly selected video track.
+     */
+    void handleVideoTrackChanged(long bitrate) {
+        this.actualBitrate = bitrate;
+        averageBitrateCounter.setBitrate(actualBitrate);
+    }
+
+    void handleAudioLanguage(String language) {
+        currentAudioLanguage = language;
+    }
+
+    void handleCaptionLanguage(String language) {
+        currentCaptionLanguage = language;
+    }
+
+    void handleSegmentDownloadTime(long bytesLoaded, long loadDuration) {
+        videoThroughput.add(bytesLoaded, loadDuration);
+    }
+
+    void handleAudioSegmentDownloadTime(long bytesLoaded, long loadDuration) {
+        audioThroughput.add(bytesLoaded, loadDuration);
+    }
+
+    void handleTextSegmentDownloadTime(long bytesLoaded, long loadDuration) {
+        textThroughput.add(bytesLoaded, loadDuration);
+    }
+
+    void handleManifestDownloadTime(long bytesLoaded, long loadDuration) {
+        manifestThroughput.add(bytesLoaded, loadDuration);
+    }
+
+    /**
+     * @param position       - player position in ms.
+     * @param bufferPosition - player buffered position in ms.
+     * @param duration       - media duration in ms.
+     */
+    void handlePlayheadUpdated(long position, long bufferPosition, long duration) {
+        hasPlayhead = true;
+        playheadPosition = position;
+        playheadBufferPosition = bufferPosition;
+        playheadDuration = duration;
+    }
+
+    void clearPlayhead() {
+        hasPlayhead = false;
+    }
+
+    void handleSequenceId(String sequenceId) {
+        flavorParamsId = sequenceId;
+    }
+
+    /**
+     * Handle player error event.
+     *
+     * @param errorCode        - player error code.
+     * @param errorDetails     - error details, see {@link #buildErrorDetails(String, String, Throwable, String)}.
+     * @param errorFingerprint - error fingerprint, see {@link ErrorFingerprint}.
+     * @param isFirstPlay      - null if play was not requested yet.
+     * @param position         - player position at the moment of the error.
+     */
+    void handlePlayerError(int errorCode, String errorDetails, long errorFingerprint, Boolean isFirstPlay, long position) {
+        this.errorDetails = capUtf8(errorDetails, MAX_ERROR_DETAILS_BYTES);
+        this.errorFingerprint = errorFingerprint;
+        if (isFirstPlay == null) {
+            errorPosition = ErrorPositionType.PrePlay.value;
+        } else {
+            errorPosition = (position > 0) ? ErrorPositionType.MidStream.value : ErrorPositionType.PrePlaying.value;
+        }
+        log.e("Playback ERROR. errorCode : " + errorCode + " errorPosition-Type = " + errorPosition + " position = " + position);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Handle ad error event, or an error of unknown type (errorCode -1, no details).
+     *
+     * @param errorCode        - ad error code.
+     * @param errorDetails     - error details, see {@link #buildErrorDetails(String, String, Throwable, String)}.
+     * @param errorFingerprint - error fingerprint, see {@link ErrorFingerprint}.
+     */
+    void handleAdError(int errorCode, String errorDetails, long errorFingerprint) {
+        this.errorDetails = capUtf8(errorDetails, MAX_ERROR_DETAILS_BYTES);
+        this.errorFingerprint = errorFingerprint;
+        log.e("Playback ERROR. errorCode : " + errorCode + " errorPosition-Type = " + errorPosition);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * @param errorMessage  - error message.
+     * @param errorTypeName - name of the error type, may be null.
+     * @param exception     - error exception, may be null.
+     * @param eventTypeName - name of the error event type, used when there is no exception.
+     * @return - reported errorDetails.
+     */
+    static String buildErrorDetails(String errorMessage, String errorTypeName, Throwable exception, String eventTypeName) {
+        if (exception == null) {
+            return errorMessage + "-" + eventTypeName;
+        }
+
+        String errorCode = (errorTypeName != null) ? errorTypeName + " - " : "";
+        return buildExcptionDetails(errorMessage, errorCode, exception);
+    }
+
+    /**
+     * Short form of the errorDetails of an error reported recently: its first line, up to REPEATED_ERROR_DETAILS_BYTES.
+     * The full details are found by the errorFingerprint of the first report.
+     */
+    static String buildRepeatedErrorDetails(String errorDetails) {
+        if (errorDetails == null) {
+            return null;
+        }
+        int lineEnd = errorDetails.indexOf('\n');
+        return capUtf8(lineEnd != -1 ? errorDetails.substring(0, lineEnd) : errorDetails, REPEATED_ERROR_DETAILS_BYTES);
+    }
+
+    /**
+     * @return - the longest prefix of the value whose UTF-8 encoding fits in maxBytes, not splitting surrogate pairs.
+     */
+    static String capUtf8(String value, int maxBytes) {
+        if (value == null || value.length() * 3 <= maxBytes) {
+            return value;
+        }
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int charBytes;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                charBytes = 4;
+            } else {
+                charBytes = 3;
+            }
+            if (bytes + charBytes > maxBytes) {
+                return value.substring(0, i);
+            }
+            bytes += charBytes;
+            if (charBytes == 4) {
+                i++;
+            }
+        }
+        return value;
+    }
+
+    private static String buildExcptionDetails(String errorMetadata, String errorCode, Throwable playerErrorException) {
+        String exceptionClass = "";
+
+        if (playerErrorException != null && playerErrorException.getCause() != null && playerErrorException.getCause().getClass() != null) {
+            exceptionClass = playerErrorException.getCause().getClass().getName();
+            errorMetadata = (playerErrorException.getCause().toString() != null) ? playerErrorException.getCause().toString() : errorMetadata;
+        } else {
+            if (playerErrorException != null && playerErrorException.getClass() != null) {
+                exceptionClass = playerErrorException.getClass().getName();
+            }
+        }
+
+        LinkedHashSet<String> causeMessages = getExceptionMessageChain(playerErrorException);
+        StringBuilder exceptionCauseBuilder = new StringBuilder();
+        if (playerErrorException != null && causeMessages.isEmpty()) {
+            exceptionCauseBuilder.append(playerErrorException.toString());
+        } else {
+            for (String cause : causeMessages) {
+                exceptionCauseBuilder.append(cause).append("\n");
+            }
+        }
+        return errorCode + exceptionClass + "-" + exceptionCauseBuilder.toString() + "-" + errorMetadata;
+    }
+
+    public static LinkedHashSet<String> getExceptionMessageChain(Throwable throwable) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        while (throwable != null) {
+            if (throwable.getMessage() != null){
+                result.add(throwable.getMessage());
+            }
+            throwable = throwable.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * Handle SourceSelected event. Update current media format
+     * accepted by KAVA.
+     *
+     * @param deliveryType - delivery type of the selected source, see {@link StreamFormat}.
+     */
+    void handleSourceSelected(String deliveryType) {
+        this.deliveryType = deliveryType != null ? deliveryType : StreamFormat.Url.formatName;
+    }
+
+    /**
+     * @return - true if the active network is metered or cellular.
+     */
+    boolean isMeteredNetwork() {
+        return platform.networkInfo.isMeteredNetwork();
+    }
+
+    /**
+     * Checked for every event, so the events are sent again as soon as the network is back.
+     *
+     * @return - true if the events should be summarized instead of sent: the offline summary url is configured
+     * and there is no network.
+     */
+    boolean isOfflineMode() {
+        return pluginConfig != null && pluginConfig.getOfflineSummaryUrl() != null && !platform.networkInfo.isNetworkAvailable();
+    }
+
+    /**
+     * Roll the event up into the offline session summary, instead of collecting all the event data.
+     *
+     * @param event - current Kava event.
+     */
+    void handleOfflineEvent(KavaEvents event) {
+        if (offlineSessionSummary == null) {
+            log.d("Offline playback, session will be summarized");
+            offlineSessionSummary = new OfflineSessionSummary(entryId, partnerId, sessionId, deliveryType);
+        }
+        switch (event) {
+            case VIEW:
+                addViewEventPlayTime();
+                adPlaybackCounter.resetViewEventCounters();
+                totalBufferTimePerViewEvent = 0;
+                break;
+            case PLAY:
+            case RESUME:
+                averageBitrateCounter.resumeCounting();
+                totalBufferTimePerViewEvent = 0;
+                break;
+            case PAUSE:
+                averageBitrateCounter.pauseCounting();
+                break;
+            case ERROR:
+                offlineSessionSummary.setErrorCode(errorCode);
+                errorCode = -1;
+                errorDetails = null;
+                errorFingerprint = ErrorFingerprint.NONE;
+                errorPosition = null;
+                break;
+        }
+
+        offlineSessionSummary.onEvent(event, clock.currentTimeMillis());
+        offlineSessionSummary.setPlayTimeSum(playTimeSum);
+        offlineSessionSummary.setBufferTimeSum(totalBufferTimePerEntry);
+        offlineSessionSummary.setAverageBitrate(averageBitrateCounter.getAverageBitrate(playTimeSum + totalBufferTimePerEntry) / KB_MULTIPLIER);
+        //Session boundaries are the moments the process may go away, so the record is persisted there.
+        if (event == KavaEvents.PAUSE || event == KavaEvents.ERROR || event == KavaEvents.PLAY_REACHED_100_PERCENT) {
+            saveOfflineSessionSummary();
+        }
+    }
+
+    void saveOfflineSessionSummary() {
+        if (offlineSessionSummary != null) {
+            offlineSummaryStore.save(offlineSessionSummary);
+        }
+    }
+
+    OfflineSummaryStore getOfflineSummaryStore() {
+        return offlineSummaryStore;
+    }
+
+    void handlePlaybackSpeed(float rate) {
+        lastKnownPlaybackSpeed = rate;
+    }
+
+    enum ErrorPositionType {
+        PrePlay(3),
+        PrePlaying(1),
+        MidStream(2);
+        
+        private final int value;
+
+        ErrorPositionType(int value) {
+            this.value = value;
+        }
+
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+    public enum StreamFormat {
+        MpegDash("mpegdash"),
+        AppleHttp("applehttp"),
+        Url("url"),
+        UrlDrm("url+drm"),
+        Unknown;
+
+        public String formatName = "";
+
+        StreamFormat(){}
+
+        StreamFormat(String name){
+            this.formatName = name;
+        }
+
+        public static StreamFormat byValue(String value) {
+            for(StreamFormat streamFormat : values()){
+                if(streamFormat.formatName.equals(value)){
+                    return streamFormat;
+                }
+            }
+            return Unknown;
+        }
+    }
+
+    /**
+     * Handle seek event. Update and cache target position.
+     *
+     * @param targetPosition - seek target position in ms.
+     */
+    void handleSeek(long targetPosition) {
+        this.targetSeekPositionInSeconds = targetPosition;
+    }
+
+    /**
+     * Handle player buffering state.
+     */
+    void handleBufferingStart() {
+        lastKnownBufferingTimestamp = clock.currentTimeMillis();
+    }
+
+    /**
+     * Called when player has finish buffering (PlayerState = READY). When player goes into this state, we should collect all the
+     * buffer related information.
+     */
+    void handleBufferingEnd() {
+        if (lastKnownBufferingTimestamp == 0) return;
+        long currentTime = clock.currentTimeMillis();
+        long bufferTime = currentTime - lastKnownBufferingTimestamp;
+        totalBufferTimePerViewEvent += bufferTime;
+        totalBufferTimePerEntry += bufferTime;
+        lastKnownBufferingTimestamp = currentTime;
+    }
+
+    /**
+     * Handles first play.
+     */
+    void handleFirstPlay() {
+        joinTimeStartTimestamp = clock.currentTimeMillis();
+    }
+
+    /**
+     * @param isOverlappingContent - true if the content view timer keeps counting played time during the ad.
+     */
+    void handleAdStarted(boolean isOverlappingContent) {
+        adPlaybackCounter.onAdStarted(clock.currentTimeMillis(), isOverlappingContent);
+    }
+
+    /**
+     * Ad completed, was skipped or failed.
+     */
+    void handleAdEnded() {
+        adPlaybackCounter.onAdEnded(clock.currentTimeMillis());
+    }
+
+    void handleAdBufferingStart() {
+        adPlaybackCounter.onAdBufferStart(clock.currentTimeMillis());
+    }
+
+    void handleAdBufferingEnd() {
+        adPlaybackCounter.onAdBufferEnd(clock.currentTimeMillis());
+    }
+
+    void handleCanPlay() {
+        canPlayTimestamp = clock.currentTimeMillis();
+    }
+
+    void handleLoadedMetaData() {
+        loadedMetaDataTimestamp = clock.currentTimeMillis();
+    }
+
+    /**
+     * Set view session start time.
+     *
+     * @param sessionStartTime - sessionStartTime from server.
+     */
+    void setSessionStartTime(String sessionStartTime) {
+        if (this.sessionStartTime == null && !sessionStartTime.isEmpty()) {
+            this.sessionStartTime = sessionStartTime;
+        }
+    }
+
+    /**
+     * @param serverClockOffset - estimated analytics server clock minus device clock in ms.
+     */
+    void setServerClockOffset(long serverClockOffset) {
+        this.serverClockOffset = serverClockOffset;
+        this.hasServerClockOffset = true;
+    }
+
+    /**
+     * When VIEW event was not delivered for more then 30 seconds, Kava server will reset
+     * VIEW session. So we also have to do the same.
+     */
+    void handleViewEventSessionClosed() {
+        eventIndex = 1;
+        playTimeSum = 0;
+        adPlaybackCounter.resetSums();
+        viewEventPlayedTime = 0;
+        sessionStartTime = null;
+        totalBufferTimePerEntry = 0;
+        totalBufferTimePerViewEvent = 0;
+        if (averageBitrateCounter != null) {
+            averageBitrateCounter.reset();
+        }
+    }
+
+    void handleConnectionAcquired(long connectDurationMs) {
+        maxConnectDurationMs = (connectDurationMs > maxConnectDurationMs) ? connectDurationMs : maxConnectDurationMs;
+    }
+
+    /**
+     * Updates player position based on playbackType. If current playbackType is LIVE or DVR
+     * player position will be calculated based on distance from the live edge. Therefore should be 0 or negative value.
+     * Otherwise it should be just a real current position.
+     *
+     * @param mediaEntryType - {@link KavaMediaEntryType} of the media entry, Dvr stands for live with DVR window.
+     */
+    private String getPlayerPosition(KavaMediaEntryType mediaEntryType) {
+        //When position obtained not from onApplicationPaused state update position/duration.
+        if (!onApplicationPaused) {
+            if (!hasPlayhead) {
+                currentPosition = 0;
+                currentBufferPosition = 0;
+                currentDuration = 0;
+            } else {
+                currentPosition = playheadPosition;
+                currentBufferPosition = playheadBufferPosition;
+                currentDuration = playheadDuration;
+            }
+        }
+
+        long playerPosition = currentPosition;
+        if (mediaEntryType == KavaMediaEntryType.Dvr || mediaEntryType == KavaMediaEntryType.Live) {
+            playerPosition = currentPosition - currentDuration;
+        }
+
+        return playerPosition == 0 ? "0" : Float.toString(playerPosition / MILLISECONDS_MULTIPLIER_FLOAT);
+    }
+
+    /**
+     * Add buffer information to the report.
+     *
+     * @param params - map of current params.
+     */
+    private void addBufferParams(Map<String, String> params) {
+
+        float curBufferTimeInSeconds = totalBufferTimePerViewEvent == 0 ? 0 : totalBufferTimePerViewEvent / MILLISECONDS_MULTIPLIER_FLOAT;
+        float totalBufferTimeInSeconds = totalBufferTimePerEntry == 0 ? 0 : totalBufferTimePerEntry / MILLISECONDS_MULTIPLIER_FLOAT;
+
+        params.put("bufferTime", Float.toString(curBufferTimeInSeconds));
+        params.put("bufferTimeSum", Float.toString(totalBufferTimeInSeconds));
+
+        //View event is sent, so reset totalBufferTimePerViewEvent to 0.
+        totalBufferTimePerViewEvent = 0;
+    }
+
+    /**
+     * Make a decision what playbackType is active now. First we will try to decide it base on
+     * information provided in {@link KavaAnalyticsConfig}. If for some reason there is no relevant information found,
+     * we will rely on player to provide this data.
+     * In case when current event of type ERROR - we will concern it as KavaMediaEntryType.Unknown.
+     *
+     * @return - {@link KavaMediaEntryType} of the media for the moment of sending event.
+     */
+    KavaMediaEntryType getPlaybackType(KavaMediaEntryType mediaEntryType, long playerPosition, long playerDuration) {
+        if (mediaEntryType == KavaMediaEntryType.Dvr) {
+            long distanceFromLive = playerDuration - playerPosition;
+            return (distanceFromLive >= dvrThreshold) ? KavaMediaEntryType.Dvr : KavaMediaEntryType.Live;
+        } else if (isLive || mediaEntryType == KavaMediaEntryType.Live) {
+            return KavaMediaEntryType.Live;
+        }
+        return KavaMediaEntryType.Vod;
+    }
+
+    /**
+     * If provided referrer is null, it will
+     * use the default one of the platform.
+     *
+     * @param referrer - Custom referrer to set, or null if should use default one.
+     */
+    private void generateReferrer(String referrer) {
+        //If not exist use the default one, encoded once per platform.
+        if (referrer == null) {
+            encodedReferrer = platform.encodedDefaultReferrer;
+            return;
+        }
+
+        encodedReferrer = KavaEncoding.base64(referrer);
+    }
+
+    /**
+     * Reset all the values for the default.
+     * Should happen only once per media entry.
+     */
+    private void resetValues() {
+        errorCode = -1;
+        adPlaybackCounter.reset();
+        errorFingerprint = ErrorFingerprint.NONE;
+        actualBitrate = -1;
+        sessionStartTime = null;
+        onApplicationPaused = false;
+        isLive = false;
+        lastKnownBufferingTimestamp = 0;
+        canPlayTimestamp = 0;
+        loadedMetaDataTimestamp = 0;
+        maxConnectDurationMs = -1;
+        manifestThroughput.reset();
+        videoThroughput.reset();
+        audioThroughput.reset();
+        textThroughput.reset();
+        targetBuffer = -1;
+        hasPlayhead = false;
+
+        handleViewEventSessionClosed();
+    }
+
+    /**
+     * @return - eventIndex of the last collected event.
+     */
+    int getLastEventIndex() {
+        return eventIndex - 1;
+    }
+
+    long getActualBitrate() {
+        return actualBitrate;
+    }
+
+    /**
+     * @return - user agent value build from application id + playkit version + systems userAgent
+     */
+    String getUserAgent() {
+        return userAgent;
+    }
+
+    void onApplicationPaused(KavaMediaEntryType mediaEntryType, long position, long bufferedPosition, long duration) {
+        //Player is destroyed during onApplicationPaused call.
+        //So we should update this values before PAUSE event sent.
+        currentDuration = duration;
+        currentBufferPosition = bufferedPosition;
+        currentPosition = position;
+
+        playbackType = getPlaybackType(mediaEntryType, currentPosition, currentDuration);
+        onApplicationPaused = true;
+    }
+
+    void setOnApplicationResumed() {
+        onApplicationPaused = false;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Stable identity of an error: the error code and type, the classes of the exception cause chain and the top
+ * frames of the root cause. The messages are left out, they carry urls, ids and times that differ between
+ * occurrences of the same failure.
+ */
+final class ErrorFingerprint {
+
+    static final long NONE = 0;
+
+    private static final int MAX_CAUSE_DEPTH = 16;
+    private static final int TOP_FRAMES = 3;
+
+    // 64 bit FNV-1a.
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ErrorFingerprint() {
+    }
+
+    /**
+     * @param errorCode     - error code, -1 if unknown.
+     * @param errorTypeName - name of the error type, may be null.
+     * @param exception     - error exception, may be null.
+     * @return - the fingerprint, never NONE.
+     */
+    static long of(int errorCode, String errorTypeName, Throwable exception) {
+        long hash = hashInt(FNV_OFFSET_BASIS, errorCode);
+        hash = hashString(hash, errorTypeName);
+
+        Throwable rootCause = exception;
+        for (int depth = 0; exception != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            hash = hashString(hash, exception.getClass().getName());
+            rootCause = exception;
+            exception = exception.getCause();
+        }
+        if (rootCause != null) {
+            StackTraceElement[] frames = rootCause.getStackTrace();
+            for (int i = 0; i < frames.length && i < TOP_FRAMES; i++) {
+                hash = hashString(hash, frames[i].getClassName());
+                hash = hashString(hash, frames[i].getMethodName());
+                hash = hashInt(hash, frames[i].getLineNumber());
+            }
+        }
+        return hash != NONE ? hash : FNV_OFFSET_BASIS;
+    }
+
+    /**
+     * @return - the fingerprint as 16 hex digits.
+     */
+    static String toHex(long fingerprint) {
+        char[] hex = new char[16];
+        for (int i = hex.length - 1; i >= 0; i--) {
+            hex[i] = HEX_DIGITS[(int) (fingerprint & 0xf)];
+            fingerprint >>>= 4;
+        }
+        return new String(hex);
+    }
+
+    private static long hashString(long hash, String value) {
+        if (value == null) {
+            return hashInt(hash, 0);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // Separator, so ("ab", "c") and ("a", "bc") differ.
+        return (hash ^ 0xffff) * FNV_PRIME;
+    }
+
+    private static long hashInt(long hash, int value) {
+        for (int i = 0; i < 4; i++) {
+            hash = (hash ^ (value & 0xff)) * FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,304 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Pulls sequenceId and timestamp out of the live stream ID3 TEXT frame value,
+ * e.g. {"timestamp":1573049629312,"sequenceId":"32"}, without building a Json object.
+ * A frame arrives with every live segment and its sequenceId rarely changes, so the scan allocates
+ * nothing unless the sequenceId changed or has escapes. Must be used only from the Kava analytics thread.
+ */
+final class Id3TextFrameScanner {
+
+    static final int SEQUENCE_ID_CHANGED = 0;
+    static final int SEQUENCE_ID_UNCHANGED = 1;
+    static final int SEQUENCE_ID_MISSING = 2;
+
+    static final long TIMESTAMP_UNSET = -1;
+
+    private static final String SEQUENCE_ID_KEY = "sequenceId";
+    private static final String TIMESTAMP_KEY = "timestamp";
+    private static final int NOT_FOUND = -1;
+
+    private String sequenceId;
+    private long timestamp = TIMESTAMP_UNSET;
+
+    // Bounds of the top level values of the last parsed frame, [start, end), without the quotes of a String value.
+    private int sequenceIdStart;
+    private int sequenceIdEnd;
+    private boolean isSequenceIdEscaped;
+    private int timestampStart;
+    private int timestampEnd;
+    // Whether the last String skipped had escapes.
+    private boolean isStringEscaped;
+
+    /**
+     * @param frameValue - TEXT frame value.
+     * @return - SEQUENCE_ID_CHANGED, SEQUENCE_ID_UNCHANGED or SEQUENCE_ID_MISSING if the frame is not a Json object
+     * or holds no sequenceId.
+     */
+    int scan(String frameValue) {
+        if (frameValue == null || !parse(frameValue)) {
+            return SEQUENCE_ID_MISSING;
+        }
+
+        if (timestampStart != NOT_FOUND) {
+            long frameTimestamp = parseLong(frameValue, timestampStart, timestampEnd);
+            if (frameTimestamp != TIMESTAMP_UNSET) {
+                timestamp = frameTimestamp;
+            }
+        }
+
+        if (sequenceIdStart == NOT_FOUND || sequenceIdEnd == sequenceIdStart) {
+            return SEQUENCE_ID_MISSING;
+        }
+        if (isSequenceIdEscaped) {
+            String frameSequenceId = unescape(frameValue, sequenceIdStart, sequenceIdEnd);
+            if (frameSequenceId == null) {
+                return SEQUENCE_ID_MISSING;
+            }
+            if (frameSequenceId.equals(sequenceId)) {
+                return SEQUENCE_ID_UNCHANGED;
+            }
+            sequenceId = frameSequenceId;
+            return SEQUENCE_ID_CHANGED;
+        }
+        int length = sequenceIdEnd - sequenceIdStart;
+        if (sequenceId != null && sequenceId.length() == length && frameValue.regionMatches(sequenceIdStart, sequenceId, 0, length)) {
+            return SEQUENCE_ID_UNCHANGED;
+        }
+        sequenceId = frameValue.substring(sequenceIdStart, sequenceIdEnd);
+        return SEQUENCE_ID_CHANGED;
+    }
+
+    /**
+     * Forget the frames of the previous media, so its first frame is reported as SEQUENCE_ID_CHANGED.
+     */
+    void reset() {
+        sequenceId = null;
+        timestamp = TIMESTAMP_UNSET;
+    }
+
+    String getSequenceId() {
+        return sequenceId;
+    }
+
+    /**
+     * @return - server wall clock time of the last frame that carried a timestamp in ms, or TIMESTAMP_UNSET.
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Walk the keys of the frame object and set the bounds of the sequenceId and timestamp values.
+     * Only top level keys count, so a key inside a String or a nested value is not matched. Nested values are
+     * skipped without being validated. A sequenceId that is an object, an array or null is not set.
+     *
+     * @return - false if the frame is not a Json object.
+     */
+    private boolean parse(String json) {
+        sequenceIdStart = NOT_FOUND;
+        timestampStart = NOT_FOUND;
+
+        int index = skipWhitespace(json, 0);
+        if (index >= json.length() || json.charAt(index) != '{') {
+            return false;
+        }
+        index = skipWhitespace(json, index + 1);
+        if (index < json.length() && json.charAt(index) == '}') {
+            return true;
+        }
+
+        while (true) {
+            if (index >= json.length() || json.charAt(index) != '"') {
+                return false;
+            }
+            int keyStart = index + 1;
+            index = skipString(json, keyStart);
+            if (index == NOT_FOUND) {
+                return false;
+            }
+            int keyEnd = index - 1;
+            index = skipWhitespace(json, index);
+            if (index >= json.length() || json.charAt(index) != ':') {
+                return false;
+            }
+
+            int valueIndex = skipWhitespace(json, index + 1);
+            index = skipValue(json, valueIndex);
+            if (index == NOT_FOUND) {
+                return false;
+            }
+            boolean isString = json.charAt(valueIndex) == '"';
+            int valueStart = isString ? valueIndex + 1 : valueIndex;
+            int valueEnd = isString ? index - 1 : index;
+            if (isKey(json, keyStart, keyEnd, SEQUENCE_ID_KEY)) {
+                if (isString || isScalar(json, valueIndex)) {
+                    sequenceIdStart = valueStart;
+                    sequenceIdEnd = valueEnd;
+                    isSequenceIdEscaped = isString && isStringEscaped;
+                } else {
+                    sequenceIdStart = NOT_FOUND;
+                }
+            } else if (isKey(json, keyStart, keyEnd, TIMESTAMP_KEY)) {
+                timestampStart = valueStart;
+                timestampEnd = valueEnd;
+            }
+
+            index = skipWhitespace(json, index);
+            if (index >= json.length()) {
+                return false;
+            }
+            char next = json.charAt(index);
+            if (next == '}') {
+                return true;
+            }
+            if (next != ',') {
+                return false;
+            }
+            index = skipWhitespace(json, index + 1);
+        }
+    }
+
+    private static boolean isKey(String json, int keyStart, int keyEnd, String key) {
+        return keyEnd - keyStart == key.length() && json.regionMatches(keyStart, key, 0, key.length());
+    }
+
+    private static boolean isScalar(String json, int valueIndex) {
+        char first = json.charAt(valueIndex);
+        return first != '{' && first != '[' && !json.startsWith("null", valueIndex);
+    }
+
+    /**
+     * @param start - index after the opening quote.
+     * @return - index after the closing quote, or NOT_FOUND if the String is unterminated.
+     */
+    private int skipString(String json, int start) {
+        isStringEscaped = false;
+        for (int i = start; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                return i + 1;
+            }
+            if (c == '\\') {
+                isStringEscaped = true;
+                i++;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @param start - index of the first character of the value.
+     * @return - index after the value, or NOT_FOUND if there is no value or it is unterminated.
+     */
+    private int skipValue(String json, int start) {
+        if (start >= json.length()) {
+            return NOT_FOUND;
+        }
+        char first = json.charAt(start);
+        if (first == '"') {
+            return skipString(json, start + 1);
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            for (int i = start; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '"') {
+                    i = skipString(json, i + 1);
+                    if (i == NOT_FOUND) {
+                        return NOT_FOUND;
+                    }
+                    i--;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if ((c == '}' || c == ']') && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            return NOT_FOUND;
+        }
+        int end = start;
+        while (end < json.length() && json.charAt(end) != ',' && json.charAt(end) != '}' && json.charAt(end) != ']'
+                && !Character.isWhitespace(json.charAt(end))) {
+            end++;
+        }
+        return end > start ? end : NOT_FOUND;
+    }
+
+    /**
+     * @return - the String value in [start, end) with its escapes resolved, or null if an escape is malformed.
+     */
+    private static String unescape(String json, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = json.charAt(++i);
+            switch (escaped) {
+                case 'u':
+                    if (i + 4 >= end) {
+                        return null;
+                    }
+                    int codeUnit = 0;
+                    for (int j = i + 1; j <= i + 4; j++) {
+                        int digit = Character.digit(json.charAt(j), 16);
+                        if (digit == -1) {
+                            return null;
+                        }
+                        codeUnit = codeUnit * 16 + digit;
+                    }
+                    value.append((char) codeUnit);
+                    i += 4;
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                default:
+                    // \", \\, \/ and the escapes of other characters stand for the character itself.
+                    value.append(escaped);
+                    break;
+            }
+        }
+        return value.toString();
+    }
+
+    private static int skipWhitespace(String json, int index) {
+        while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @return - the non negative decimal number in [start, end), or TIMESTAMP_UNSET if it is not one.
+     */
+    private static long parseLong(String json, int start, int end) {
+        if (end - start > 18) {
+            return TIMESTAMP_UNSET;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char digit = json.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return TIMESTAMP_UNSET;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+}
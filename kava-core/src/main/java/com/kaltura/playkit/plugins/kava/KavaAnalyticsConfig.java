@@ -0,0 +1,541 @@
+/*
+ * ============================================================================
+ * Copyright (C) 2017 Kaltura Inc.
+ * 
+ * Licensed under the AGPLv3 license, unless a different license for a
+ * particular library is specified in the applicable library path.
+ * 
+ * You may obtain a copy of the License at
+ * https://www.gnu.org/licenses/agpl-3.0.html
+ * ============================================================================
+ */
+
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by anton.afanasiev on 04/10/2017.
+ */
+
+public class KavaAnalyticsConfig {
+
+    public static final int DEFAULT_KAVA_PARTNER_ID = 2504201;
+    public static final String DEFAULT_KAVA_ENTRY_ID = "1_3bwzbc9o";
+
+    public static final String KS = "ks";
+    public static final String BASE_URL = "baseUrl";
+    public static final String UICONF_ID = "uiconfId";
+    public static final String PARTNER_ID = "partnerId";
+    public static final String USER_ID = "userId";
+    public static final String CUSTOM_VAR_1 = "customVar1";
+    public static final String CUSTOM_VAR_2 = "customVar2";
+    public static final String CUSTOM_VAR_3 = "customVar3";
+    public static final String APPLICATION_VERSION = "applicationVersion";
+    public static final String PLAY_LIST_ID = "playlistId";
+    public static final String REFERRER = "referrer";
+    public static final String DVR_THRESHOLD = "dvrThreshold";
+    public static final String PLAYBACK_CONTEXT = "playbackContext";
+    public static final String ENTRY_ID = "entryId";
+    public static final String VIRTUAL_EVENT_ID = "virtualEventId";
+    public static final String OFFLINE_SUMMARY_URL = "offlineSummaryUrl";
+    public static final String ATTACH_CLIENT_EVENT_TIME = "attachClientEventTime";
+    public static final String SAMPLING_RATES = "samplingRates";
+    public static final String VIEW_EVENT_INTERVAL = "viewEventInterval";
+    public static final String METERED_VIEW_EVENT_INTERVAL = "meteredViewEventInterval";
+    public static final String VIEW_EVENT_IDLE_TIMEOUT = "viewEventIdleTimeout";
+    public static final String ENABLED_EVENTS = "enabledEvents";
+    public static final String DISABLED_EVENTS = "disabledEvents";
+    public static final String ENABLED_PARAMS_GROUPS = "enabledParamsGroups";
+    public static final String DISABLED_PARAMS_GROUPS = "disabledParamsGroups";
+    public static final String PROGRESS_MILESTONES = "progressMilestones";
+    public static final String PROGRESS_MILESTONES_SECONDS = "progressMilestonesSeconds";
+    public static final String PLAYHEAD_EVALUATION_INTERVAL = "playheadEvaluationInterval";
+    public static final String DEFAULT_BASE_URL = "https://analytics.kaltura.com/api_v3/index.php";
+    public static final long DEFAULT_DVR_THRESHOLD = 2 * 60 * 1000;
+
+    private Integer uiconfId;
+    private Integer partnerId;
+    private Integer virtualEventId;
+
+    private String ks;
+    private String referrer;
+    private String playlistId;
+    private String entryId;
+    private String playbackContext;
+    private String applicationVersion;
+    private String baseUrl = DEFAULT_BASE_URL;
+    private String userId;
+    private String customVar1, customVar2, customVar3;
+    private String offlineSummaryUrl;
+    private boolean attachClientEventTime;
+    private Map<String, Float> samplingRates;
+    private int viewEventInterval = (int) TimeUnit.MILLISECONDS.toSeconds(ViewTimer.TEN_SECONDS_IN_MS);
+    private int meteredViewEventInterval;
+    private int viewEventIdleTimeout = (int) TimeUnit.MILLISECONDS.toSeconds(ViewTimer.MAX_ALLOWED_VIEW_IDLE_TIME);
+    // Null means no restriction.
+    private Set<KavaEvents> enabledEvents;
+    private Set<KavaEvents> disabledEvents;
+    private Set<KavaParamsGroup> enabledParamsGroups;
+    private Set<KavaParamsGroup> disabledParamsGroups;
+
+    private int[] progressMilestones;
+    private int[] progressMilestonesSeconds;
+    private int playheadEvaluationInterval;
+
+    private long dvrThreshold = DEFAULT_DVR_THRESHOLD;
+
+
+    // Expecting here the OVP partner Id even for OTT account
+    public KavaAnalyticsConfig setPartnerId(Integer partnerId) {
+        this.partnerId = partnerId;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setKs(String ks) {
+        this.ks = ks;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setEntryId(String entryId) {
+        this.entryId = entryId;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setDvrThreshold(long dvrThreshold) {
+        this.dvrThreshold = dvrThreshold;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setUiConfId(Integer uiConfId) {
+        this.uiconfId = uiConfId;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setVirtualEventId(Integer virtualEventId) {
+        this.virtualEventId = virtualEventId;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setUserId(String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setCustomVar1(String customVar1) {
+        this.customVar1 = customVar1;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setCustomVar2(String customVar2) {
+        this.customVar2 = customVar2;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setCustomVar3(String customVar3) {
+        this.customVar3 = customVar3;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setReferrer(String referrer) {
+        this.referrer = referrer;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setPlaybackContext(String playbackContext) {
+        this.playbackContext = playbackContext;
+        return this;
+    }
+
+    public KavaAnalyticsConfig setPlaylistId(String playlistId) {
+        this.playlistId = playlistId;
+        return this;
+
+    }
+
+    public KavaAnalyticsConfig setApplicationVersion(String applicationVersion) {
+        this.applicationVersion = applicationVersion;
+        return this;
+
+    }
+
+    /**
+     * Url the offline played sessions summaries are uploaded to (POST of JSON array).
+     * If not set, summaries are kept on the device.
+     */
+    public KavaAnalyticsConfig setOfflineSummaryUrl(String offlineSummaryUrl) {
+        this.offlineSummaryUrl = offlineSummaryUrl;
+        return this;
+    }
+
+    /**
+     * Attach to every event its device time, corrected by the estimated analytics server clock offset.
+     */
+    public KavaAnalyticsConfig setAttachClientEventTime(boolean attachClientEventTime) {
+        this.attachClientEventTime = attachClientEventTime;
+        return this;
+    }
+
+    /**
+     * Report the given events only for a share of the sessions. The decision is a stable hash of the sessionId,
+     * so a session reports all or none of its events of a kind, and sessions sampled at a lower rate are a subset
+     * of the sessions sampled at a higher one. Sampled events carry samplingRate, so the backend can re-weight them.
+     *
+     * @param samplingRate - share of the sessions to report, between 0 and 1. Default is 1.
+     * @param events       - events the rate applies to, e.g. VIEW, BUFFER_START, BUFFER_END, FLAVOR_SWITCHED.
+     */
+    public KavaAnalyticsConfig setSamplingRate(float samplingRate, KavaEvents... events) {
+        if (samplingRates == null) {
+            samplingRates = new HashMap<>();
+        }
+        float rate = Math.max(0f, Math.min(1f, samplingRate));
+        for (KavaEvents event : events) {
+            samplingRates.put(event.name(), rate);
+        }
+        return this;
+    }
+
+    /**
+     * Active playback time between VIEW events, in seconds. Overridden by the trackEvent response.
+     */
+    public KavaAnalyticsConfig setViewEventInterval(int viewEventInterval) {
+        this.viewEventInterval = viewEventInterval;
+        return this;
+    }
+
+    /**
+     * VIEW events interval on metered or cellular networks, in seconds. Bounded by the maxViewEventInterval
+     * of the trackEvent response. If not set, the server bound is used.
+     */
+    public KavaAnalyticsConfig setMeteredViewEventInterval(int meteredViewEventInterval) {
+        this.meteredViewEventInterval = meteredViewEventInterval;
+        return this;
+    }
+
+    /**
+     * Idle time after which the server closes the view session, in seconds. Overridden by the trackEvent response.
+     */
+    public KavaAnalyticsConfig setViewEventIdleTimeout(int viewEventIdleTimeout) {
+        this.viewEventIdleTimeout = viewEventIdleTimeout;
+        return this;
+    }
+
+    /**
+     * Report only the given events. The player listeners that feed only other events are not registered.
+     */
+    public KavaAnalyticsConfig setEnabledEvents(KavaEvents... enabledEvents) {
+        this.enabledEvents = new LinkedHashSet<>(Arrays.asList(enabledEvents));
+        return this;
+    }
+
+    /**
+     * Do not report the given events. The player listeners that feed only these events are not registered.
+     */
+    public KavaAnalyticsConfig setDisabledEvents(KavaEvents... disabledEvents) {
+        this.disabledEvents = new LinkedHashSet<>(Arrays.asList(disabledEvents));
+        return this;
+    }
+
+    /**
+     * Report only the given optional parameter groups.
+     */
+    public KavaAnalyticsConfig setEnabledParamsGroups(KavaParamsGroup... enabledParamsGroups) {
+        this.enabledParamsGroups = new LinkedHashSet<>(Arrays.asList(enabledParamsGroups));
+        return this;
+    }
+
+    /**
+     * Do not report the given optional parameter groups, nor listen to the player events that feed them.
+     */
+    public KavaAnalyticsConfig setDisabledParamsGroups(KavaParamsGroup... disabledParamsGroups) {
+        this.disabledParamsGroups = new LinkedHashSet<>(Arrays.asList(disabledParamsGroups));
+        return this;
+    }
+
+    /**
+     * Progress milestones of VOD playback, in percent of the media duration, e.g. 10, 20, ... 90.
+     * 25, 50 and 75 are always tracked and reported as the PLAY_REACHED events, 100 is reported when the
+     * playback ends. The other milestones are not Kava events, they are posted to the application.
+     *
+     * @param progressMilestones - percents between 1 and 99.
+     */
+    public KavaAnalyticsConfig setProgressMilestones(int... progressMilestones) {
+        this.progressMilestones = progressMilestones;
+        return this;
+    }
+
+    /**
+     * Progress milestones of VOD playback at absolute positions, posted to the application when reached.
+     *
+     * @param progressMilestonesSeconds - positions in seconds.
+     */
+    public KavaAnalyticsConfig setProgressMilestonesSeconds(int... progressMilestonesSeconds) {
+        this.progressMilestonesSeconds = progressMilestonesSeconds;
+        return this;
+    }
+
+    /**
+     * Check the progress milestones only once the playhead moved by the given interval since the last check,
+     * so a milestone may be reported up to that late. Default is 0, every playhead update is checked.
+     *
+     * @param playheadEvaluationInterval - playhead movement in ms.
+     */
+    public KavaAnalyticsConfig setPlayheadEvaluationInterval(int playheadEvaluationInterval) {
+        this.playheadEvaluationInterval = playheadEvaluationInterval;
+        return this;
+    }
+
+    public Integer getUiConfId() {
+        return uiconfId;
+    }
+
+    public Integer getPartnerId() {
+        return partnerId;
+    }
+
+    public Integer getVirtualEventId() {
+        return virtualEventId;
+    }
+
+    public String getKs() {
+        return ks;
+    }
+
+    public String getEntryId() {
+        return entryId;
+    }
+
+    public String getBaseUrl() {
+        if (baseUrl == null) {
+            return DEFAULT_BASE_URL;
+        }
+        return baseUrl;
+    }
+
+    public long getDvrThreshold() {
+        return dvrThreshold;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getCustomVar1() {
+        return customVar1;
+    }
+
+    public String getCustomVar2() {
+        return customVar2;
+    }
+
+    public String getCustomVar3() {
+        return customVar3;
+    }
+
+    public String getPlaybackContext() {
+        return playbackContext;
+    }
+
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public String getApplicationVersion() {
+        return applicationVersion;
+    }
+
+    public String getOfflineSummaryUrl() {
+        return offlineSummaryUrl;
+    }
+
+    public boolean isAttachClientEventTime() {
+        return attachClientEventTime;
+    }
+
+    /**
+     * @param event - Kava event.
+     * @return - share of the sessions the event is reported for.
+     */
+    public float getSamplingRate(KavaEvents event) {
+        if (samplingRates == null) {
+            return 1f;
+        }
+        Float samplingRate = samplingRates.get(event.name());
+        return samplingRate != null ? samplingRate : 1f;
+    }
+
+    public int getViewEventInterval() {
+        return viewEventInterval;
+    }
+
+    public int getMeteredViewEventInterval() {
+        return meteredViewEventInterval;
+    }
+
+    public int getViewEventIdleTimeout() {
+        return viewEventIdleTimeout;
+    }
+
+    public int[] getProgressMilestones() {
+        return progressMilestones;
+    }
+
+    public int[] getProgressMilestonesSeconds() {
+        return progressMilestonesSeconds;
+    }
+
+    public int getPlayheadEvaluationInterval() {
+        return playheadEvaluationInterval;
+    }
+
+    public boolean isEventEnabled(KavaEvents event) {
+        return (enabledEvents == null || enabledEvents.contains(event)) && (disabledEvents == null || !disabledEvents.contains(event));
+    }
+
+    public boolean isParamsGroupEnabled(KavaParamsGroup paramsGroup) {
+        return (enabledParamsGroups == null || enabledParamsGroups.contains(paramsGroup)) && (disabledParamsGroups == null || !disabledParamsGroups.contains(paramsGroup));
+    }
+
+    public String getReferrer() {
+        if (isValidReferrer(referrer)) {
+            return this.referrer;
+        }
+        return null;
+    }
+
+    private boolean isValidReferrer(String referrer) {
+        return referrer != null && (referrer.startsWith("app://") || referrer.startsWith("http://") || referrer.startsWith("https://"));
+    }
+
+    // Raw values for KavaAnalyticsConfigCodec, which binds them as they are in the Json, without the setters' normalization.
+
+    Map<String, Float> getSamplingRates() {
+        return samplingRates;
+    }
+
+    void setSamplingRates(Map<String, Float> samplingRates) {
+        this.samplingRates = samplingRates;
+    }
+
+    Set<KavaEvents> getEnabledEvents() {
+        return enabledEvents;
+    }
+
+    void setEnabledEvents(Set<KavaEvents> enabledEvents) {
+        this.enabledEvents = enabledEvents;
+    }
+
+    Set<KavaEvents> getDisabledEvents() {
+        return disabledEvents;
+    }
+
+    void setDisabledEvents(Set<KavaEvents> disabledEvents) {
+        this.disabledEvents = disabledEvents;
+    }
+
+    Set<KavaParamsGroup> getEnabledParamsGroups() {
+        return enabledParamsGroups;
+    }
+
+    void setEnabledParamsGroups(Set<KavaParamsGroup> enabledParamsGroups) {
+        this.enabledParamsGroups = enabledParamsGroups;
+    }
+
+    Set<KavaParamsGroup> getDisabledParamsGroups() {
+        return disabledParamsGroups;
+    }
+
+    void setDisabledParamsGroups(Set<KavaParamsGroup> disabledParamsGroups) {
+        this.disabledParamsGroups = disabledParamsGroups;
+    }
+
+    String getRawBaseUrl() {
+        return baseUrl;
+    }
+
+    String getRawReferrer() {
+        return referrer;
+    }
+
+    boolean isPartnerIdValid() {
+        return partnerId != null && partnerId > 0;
+    }
+
+    public JsonObject toJson() {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty(PARTNER_ID, partnerId);
+        jsonObject.addProperty(ENTRY_ID, entryId);
+        jsonObject.addProperty(VIRTUAL_EVENT_ID, virtualEventId);
+        jsonObject.addProperty(BASE_URL, baseUrl);
+        jsonObject.addProperty(DVR_THRESHOLD, dvrThreshold);
+
+        jsonObject.addProperty(KS, ks);
+        jsonObject.addProperty(PLAYBACK_CONTEXT, playbackContext);
+        jsonObject.addProperty(REFERRER, referrer);
+        if (uiconfId != null) {
+            jsonObject.addProperty(UICONF_ID, uiconfId);
+        }
+        jsonObject.addProperty(USER_ID, userId);
+        jsonObject.addProperty(CUSTOM_VAR_1, customVar1);
+        jsonObject.addProperty(CUSTOM_VAR_2, customVar2);
+        jsonObject.addProperty(CUSTOM_VAR_3, customVar3);
+        jsonObject.addProperty(PLAY_LIST_ID, playlistId);
+        jsonObject.addProperty(APPLICATION_VERSION, applicationVersion);
+        jsonObject.addProperty(OFFLINE_SUMMARY_URL, offlineSummaryUrl);
+        jsonObject.addProperty(ATTACH_CLIENT_EVENT_TIME, attachClientEventTime);
+        jsonObject.addProperty(VIEW_EVENT_INTERVAL, viewEventInterval);
+        jsonObject.addProperty(METERED_VIEW_EVENT_INTERVAL, meteredViewEventInterval);
+        jsonObject.addProperty(VIEW_EVENT_IDLE_TIMEOUT, viewEventIdleTimeout);
+        addEnumsArray(jsonObject, ENABLED_EVENTS, enabledEvents);
+        addEnumsArray(jsonObject, DISABLED_EVENTS, disabledEvents);
+        addEnumsArray(jsonObject, ENABLED_PARAMS_GROUPS, enabledParamsGroups);
+        addEnumsArray(jsonObject, DISABLED_PARAMS_GROUPS, disabledParamsGroups);
+        addIntArray(jsonObject, PROGRESS_MILESTONES, progressMilestones);
+        addIntArray(jsonObject, PROGRESS_MILESTONES_SECONDS, progressMilestonesSeconds);
+        jsonObject.addProperty(PLAYHEAD_EVALUATION_INTERVAL, playheadEvaluationInterval);
+        if (samplingRates != null) {
+            JsonObject samplingRatesJson = new JsonObject();
+            for (Map.Entry<String, Float> samplingRate : samplingRates.entrySet()) {
+                samplingRatesJson.addProperty(samplingRate.getKey(), samplingRate.getValue());
+            }
+            jsonObject.add(SAMPLING_RATES, samplingRatesJson);
+        }
+
+        return jsonObject;
+    }
+
+    private static void addEnumsArray(JsonObject jsonObject, String key, Set<? extends Enum<?>> values) {
+        if (values == null) {
+            return;
+        }
+        JsonArray jsonArray = new JsonArray();
+        for (Enum<?> value : values) {
+            jsonArray.add(value.name());
+        }
+        jsonObject.add(key, jsonArray);
+    }
+
+    private static void addIntArray(JsonObject jsonObject, String key, int[] values) {
+        if (values == null) {
+            return;
+        }
+        JsonArray jsonArray = new JsonArray();
+        for (int value : values) {
+            jsonArray.add(value);
+        }
+        jsonObject.add(key, jsonArray);
+    }
+}
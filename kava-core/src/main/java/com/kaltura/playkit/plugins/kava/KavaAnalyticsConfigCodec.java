@@ -0,0 +1,410 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming Json codec of {@link KavaAnalyticsConfig}, binding the fields by hand instead of by Gson reflection:
+ * no reflection or Gson instance on the main thread when the config is updated, and nothing for R8 to rename.
+ * Reads exactly what the reflective binding read: the field names as keys, unknown keys skipped, null keeping
+ * the default of primitive fields, and numbers, booleans and Strings converted the same lenient way.
+ * Unknown event and params group names and null entries are dropped, where the reflective binding added null to the set.
+ */
+final class KavaAnalyticsConfigCodec {
+
+    private static final KavaAnalyticsConfigCodec instance = new KavaAnalyticsConfigCodec();
+
+    private KavaAnalyticsConfigCodec() {
+    }
+
+    static KavaAnalyticsConfigCodec getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param json - plugin config Json object.
+     * @return - the bound config.
+     * @throws JsonSyntaxException - if a field has a value of the wrong type.
+     */
+    KavaAnalyticsConfig fromJson(JsonObject json) {
+        return fromJson(json.toString());
+    }
+
+    /**
+     * @param json - plugin config Json.
+     * @return - the bound config, or null if the Json is empty or null.
+     * @throws JsonSyntaxException - if the Json is malformed or a field has a value of the wrong type.
+     */
+    KavaAnalyticsConfig fromJson(String json) {
+        if (json == null || json.trim().isEmpty()) {
+            return null;
+        }
+        JsonReader reader = new JsonReader(new StringReader(json));
+        reader.setLenient(true);
+        try {
+            return read(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * @param reader - reader positioned at the config object.
+     * @return - the bound config, or null if the reader holds null.
+     */
+    KavaAnalyticsConfig read(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        KavaAnalyticsConfig config = new KavaAnalyticsConfig();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL && isPrimitive(name)) {
+                // Primitive fields keep their defaults.
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case KavaAnalyticsConfig.UICONF_ID:
+                    config.setUiConfId(readInteger(reader));
+                    break;
+                case KavaAnalyticsConfig.PARTNER_ID:
+                    config.setPartnerId(readInteger(reader));
+                    break;
+                case KavaAnalyticsConfig.VIRTUAL_EVENT_ID:
+                    config.setVirtualEventId(readInteger(reader));
+                    break;
+                case KavaAnalyticsConfig.KS:
+                    config.setKs(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.REFERRER:
+                    config.setReferrer(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.PLAY_LIST_ID:
+                    config.setPlaylistId(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.ENTRY_ID:
+                    config.setEntryId(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.PLAYBACK_CONTEXT:
+                    config.setPlaybackContext(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.APPLICATION_VERSION:
+                    config.setApplicationVersion(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.BASE_URL:
+                    config.setBaseUrl(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.USER_ID:
+                    config.setUserId(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.CUSTOM_VAR_1:
+                    config.setCustomVar1(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.CUSTOM_VAR_2:
+                    config.setCustomVar2(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.CUSTOM_VAR_3:
+                    config.setCustomVar3(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.OFFLINE_SUMMARY_URL:
+                    config.setOfflineSummaryUrl(readString(reader));
+                    break;
+                case KavaAnalyticsConfig.ATTACH_CLIENT_EVENT_TIME:
+                    config.setAttachClientEventTime(readBoolean(reader));
+                    break;
+                case KavaAnalyticsConfig.SAMPLING_RATES:
+                    config.setSamplingRates(readSamplingRates(reader));
+                    break;
+                case KavaAnalyticsConfig.VIEW_EVENT_INTERVAL:
+                    config.setViewEventInterval(readInt(reader));
+                    break;
+                case KavaAnalyticsConfig.METERED_VIEW_EVENT_INTERVAL:
+                    config.setMeteredViewEventInterval(readInt(reader));
+                    break;
+                case KavaAnalyticsConfig.VIEW_EVENT_IDLE_TIMEOUT:
+                    config.setViewEventIdleTimeout(readInt(reader));
+                    break;
+                case KavaAnalyticsConfig.ENABLED_EVENTS:
+                    config.setEnabledEvents(readEnumSet(reader, KavaEvents.class));
+                    break;
+                case KavaAnalyticsConfig.DISABLED_EVENTS:
+                    config.setDisabledEvents(readEnumSet(reader, KavaEvents.class));
+                    break;
+                case KavaAnalyticsConfig.ENABLED_PARAMS_GROUPS:
+                    config.setEnabledParamsGroups(readEnumSet(reader, KavaParamsGroup.class));
+                    break;
+                case KavaAnalyticsConfig.DISABLED_PARAMS_GROUPS:
+                    config.setDisabledParamsGroups(readEnumSet(reader, KavaParamsGroup.class));
+                    break;
+                case KavaAnalyticsConfig.DVR_THRESHOLD:
+                    config.setDvrThreshold(readLong(reader));
+                    break;
+                case KavaAnalyticsConfig.PROGRESS_MILESTONES:
+                    config.setProgressMilestones(readIntArray(reader));
+                    break;
+                case KavaAnalyticsConfig.PROGRESS_MILESTONES_SECONDS:
+                    config.setProgressMilestonesSeconds(readIntArray(reader));
+                    break;
+                case KavaAnalyticsConfig.PLAYHEAD_EVALUATION_INTERVAL:
+                    config.setPlayheadEvaluationInterval(readInt(reader));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return config;
+    }
+
+    /**
+     * @param config - config to write.
+     * @return - the config Json, with the null fields left out.
+     */
+    String toJson(KavaAnalyticsConfig config) {
+        StringWriter json = new StringWriter();
+        JsonWriter writer = new JsonWriter(json);
+        writer.setSerializeNulls(false);
+        try {
+            write(writer, config);
+        } catch (IOException e) {
+            // StringWriter doesn't throw.
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * @param writer - writer to write the config object to. Null fields are written only if it serializes nulls.
+     * @param config - config to write.
+     */
+    void write(JsonWriter writer, KavaAnalyticsConfig config) throws IOException {
+        writer.beginObject();
+        writer.name(KavaAnalyticsConfig.UICONF_ID).value(config.getUiConfId());
+        writer.name(KavaAnalyticsConfig.PARTNER_ID).value(config.getPartnerId());
+        writer.name(KavaAnalyticsConfig.VIRTUAL_EVENT_ID).value(config.getVirtualEventId());
+        writer.name(KavaAnalyticsConfig.KS).value(config.getKs());
+        writer.name(KavaAnalyticsConfig.REFERRER).value(config.getRawReferrer());
+        writer.name(KavaAnalyticsConfig.PLAY_LIST_ID).value(config.getPlaylistId());
+        writer.name(KavaAnalyticsConfig.ENTRY_ID).value(config.getEntryId());
+        writer.name(KavaAnalyticsConfig.PLAYBACK_CONTEXT).value(config.getPlaybackContext());
+        writer.name(KavaAnalyticsConfig.APPLICATION_VERSION).value(config.getApplicationVersion());
+        writer.name(KavaAnalyticsConfig.BASE_URL).value(config.getRawBaseUrl());
+        writer.name(KavaAnalyticsConfig.USER_ID).value(config.getUserId());
+        writer.name(KavaAnalyticsConfig.CUSTOM_VAR_1).value(config.getCustomVar1());
+        writer.name(KavaAnalyticsConfig.CUSTOM_VAR_2).value(config.getCustomVar2());
+        writer.name(KavaAnalyticsConfig.CUSTOM_VAR_3).value(config.getCustomVar3());
+        writer.name(KavaAnalyticsConfig.OFFLINE_SUMMARY_URL).value(config.getOfflineSummaryUrl());
+        writer.name(KavaAnalyticsConfig.ATTACH_CLIENT_EVENT_TIME).value(config.isAttachClientEventTime());
+        writeSamplingRates(writer, config.getSamplingRates());
+        writer.name(KavaAnalyticsConfig.VIEW_EVENT_INTERVAL).value(config.getViewEventInterval());
+        writer.name(KavaAnalyticsConfig.METERED_VIEW_EVENT_INTERVAL).value(config.getMeteredViewEventInterval());
+        writer.name(KavaAnalyticsConfig.VIEW_EVENT_IDLE_TIMEOUT).value(config.getViewEventIdleTimeout());
+        writeEnumSet(writer, KavaAnalyticsConfig.ENABLED_EVENTS, config.getEnabledEvents());
+        writeEnumSet(writer, KavaAnalyticsConfig.DISABLED_EVENTS, config.getDisabledEvents());
+        writeEnumSet(writer, KavaAnalyticsConfig.ENABLED_PARAMS_GROUPS, config.getEnabledParamsGroups());
+        writeEnumSet(writer, KavaAnalyticsConfig.DISABLED_PARAMS_GROUPS, config.getDisabledParamsGroups());
+        writer.name(KavaAnalyticsConfig.DVR_THRESHOLD).value(config.getDvrThreshold());
+        writeIntArray(writer, KavaAnalyticsConfig.PROGRESS_MILESTONES, config.getProgressMilestones());
+        writeIntArray(writer, KavaAnalyticsConfig.PROGRESS_MILESTONES_SECONDS, config.getProgressMilestonesSeconds());
+        writer.name(KavaAnalyticsConfig.PLAYHEAD_EVALUATION_INTERVAL).value(config.getPlayheadEvaluationInterval());
+        writer.endObject();
+    }
+
+    private static boolean isPrimitive(String name) {
+        switch (name) {
+            case KavaAnalyticsConfig.ATTACH_CLIENT_EVENT_TIME:
+            case KavaAnalyticsConfig.VIEW_EVENT_INTERVAL:
+            case KavaAnalyticsConfig.METERED_VIEW_EVENT_INTERVAL:
+            case KavaAnalyticsConfig.VIEW_EVENT_IDLE_TIMEOUT:
+            case KavaAnalyticsConfig.DVR_THRESHOLD:
+            case KavaAnalyticsConfig.PLAYHEAD_EVALUATION_INTERVAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Integer readInteger(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return readInt(reader);
+    }
+
+    /**
+     * Numbers are read as the Json tree reads them, the plugin config arrives as a JsonObject:
+     * a non integral number is truncated, a non integral String is an error.
+     */
+    private static int readInt(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return new BigDecimal(reader.nextString()).intValue();
+        }
+        return reader.nextInt();
+    }
+
+    private static long readLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return new BigDecimal(reader.nextString()).longValue();
+        }
+        return reader.nextLong();
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) {
+            return Boolean.toString(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    private static boolean readBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.STRING) {
+            return Boolean.parseBoolean(reader.nextString());
+        }
+        return reader.nextBoolean();
+    }
+
+    private static Float readFloat(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return (float) reader.nextDouble();
+    }
+
+    private static Map<String, Float> readSamplingRates(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        Map<String, Float> samplingRates = new LinkedHashMap<>();
+        if (token == JsonToken.BEGIN_ARRAY) {
+            // Gson's array of [key, value] pairs map form.
+            reader.beginArray();
+            while (reader.hasNext()) {
+                reader.beginArray();
+                putSamplingRate(samplingRates, readString(reader), readFloat(reader));
+                reader.endArray();
+            }
+            reader.endArray();
+        } else {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                putSamplingRate(samplingRates, reader.nextName(), readFloat(reader));
+            }
+            reader.endObject();
+        }
+        return samplingRates;
+    }
+
+    private static void putSamplingRate(Map<String, Float> samplingRates, String event, Float samplingRate) {
+        if (samplingRates.containsKey(event)) {
+            throw new JsonSyntaxException("duplicate key: " + event);
+        }
+        samplingRates.put(event, samplingRate);
+    }
+
+    private static <E extends Enum<E>> Set<E> readEnumSet(JsonReader reader, Class<E> enumClass) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        Set<E> values = new LinkedHashSet<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = readString(reader);
+            E value = name != null ? findEnumConstant(enumClass, name) : null;
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        reader.endArray();
+        return values;
+    }
+
+    private static int[] readIntArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        int[] values = new int[8];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = readInt(reader);
+        }
+        reader.endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    private static <E extends Enum<E>> E findEnumConstant(Class<E> enumClass, String name) {
+        try {
+            return Enum.valueOf(enumClass, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeSamplingRates(JsonWriter writer, Map<String, Float> samplingRates) throws IOException {
+        if (samplingRates == null) {
+            return;
+        }
+        writer.name(KavaAnalyticsConfig.SAMPLING_RATES).beginObject();
+        for (Map.Entry<String, Float> samplingRate : samplingRates.entrySet()) {
+            writer.name(samplingRate.getKey()).value(samplingRate.getValue());
+        }
+        writer.endObject();
+    }
+
+    private static void writeIntArray(JsonWriter writer, String name, int[] values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        writer.name(name).beginArray();
+        for (int value : values) {
+            writer.value(value);
+        }
+        writer.endArray();
+    }
+
+    private static void writeEnumSet(JsonWriter writer, String name, Set<? extends Enum<?>> values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        writer.name(name).beginArray();
+        for (Enum<?> value : values) {
+            writer.value(value.name());
+        }
+        writer.endArray();
+    }
+}
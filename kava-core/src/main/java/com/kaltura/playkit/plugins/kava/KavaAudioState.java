@@ -0,0 +1,16 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Device sound state reported as VIEW soundMode.
+ */
+interface KavaAudioState {
+
+    int SOUND_MODE_UNKNOWN = 0;
+    int SOUND_MODE_OFF = 1;
+    int SOUND_MODE_ON = 2;
+
+    /**
+     * @return - one of the SOUND_MODE_ constants.
+     */
+    int getSoundMode();
+}
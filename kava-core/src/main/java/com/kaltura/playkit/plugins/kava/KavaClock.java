@@ -0,0 +1,31 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time of the Kava state machine.
+ */
+interface KavaClock {
+
+    KavaClock SYSTEM = new KavaClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtimeMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+    };
+
+    /**
+     * @return - wall clock time in ms.
+     */
+    long currentTimeMillis();
+
+    /**
+     * @return - monotonic time in ms, use only for measuring intervals.
+     */
+    long elapsedRealtimeMs();
+}
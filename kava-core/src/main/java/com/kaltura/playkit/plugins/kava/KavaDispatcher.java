@@ -0,0 +1,338 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide dispatcher all the Kava plugin instances register with. Owns the single outgoing
+ * queue and transport, so the cost of analytics grows with the amount of events and not with the
+ * amount of players on the screen. VIEW events are held for a short window, letting the VIEW events
+ * of all the players ride the same flush.
+ * While the application is in the background the window is skipped, and the event reports the server has not
+ * confirmed within {@link #PENDING_FLUSH_BUDGET_MS} are persisted and sent again when the application is resumed.
+ * A report older than {@link #MAX_PENDING_REQUEST_AGE_MS}, sent {@link #MAX_REQUEST_ATTEMPTS} times or rejected
+ * with a 4xx status code is dropped instead.
+ * Must be used only from the Kava analytics thread ({@link KavaScheduler}).
+ */
+final class KavaDispatcher {
+
+    private static final KavaLog log = KavaLog.get(KavaDispatcher.class.getSimpleName());
+
+    static final long VIEW_EVENTS_FLUSH_WINDOW_MS = 1000;
+    // An error repeating within the window, in any player, is reported in a short form.
+    static final long REPORTED_ERRORS_WINDOW_MS = TimeUnit.MINUTES.toMillis(10);
+    // Time the requests flushed on backgrounding get to complete before the unconfirmed ones are left for the next resume.
+    static final long PENDING_FLUSH_BUDGET_MS = 2000;
+    // An unconfirmed event report is given up after this many attempts, or once its view session idled out.
+    static final int MAX_REQUEST_ATTEMPTS = 3;
+    static final long MAX_PENDING_REQUEST_AGE_MS = ViewTimer.MAX_ALLOWED_VIEW_IDLE_TIME;
+
+    private static final KavaDispatcher instance = new KavaDispatcher();
+
+    private final Set<KavaSession> players = new HashSet<>();
+    private final ArrayDeque<KavaRequest> outgoingQueue = new ArrayDeque<>();
+    private final KavaMetrics metrics = new KavaMetrics();
+    private final ClockOffsetEstimator clockOffsetEstimator = new ClockOffsetEstimator();
+    private final KavaFlightRecorder flightRecorder = new KavaFlightRecorder(KavaFlightRecorder.DEFAULT_CAPACITY);
+    private final ReportedErrors reportedErrors = new ReportedErrors(REPORTED_ERRORS_WINDOW_MS);
+    // Event reports sent and not confirmed by the server yet, oldest first.
+    private final List<KavaRequest> unconfirmedRequests = new ArrayList<>();
+    private final Runnable flushTask = this::flush;
+    private final Runnable pendingFlushDeadlineTask = this::onPendingFlushDeadline;
+    private final KavaRequest.OnCompletion resentRequestCompletion = (request, isSuccess, response) ->
+            metrics.onRequestCompleted(request.event, isSuccess, request.getLatency(), response != null ? response.length() : 0);
+
+    private KavaHttpClient httpClient;
+    private PendingRequestStore pendingRequestStore;
+    private ScheduledFuture<?> scheduledFlush;
+    private long scheduledFlushTimestamp;
+    private ScheduledFuture<?> pendingFlushDeadline;
+    private boolean isInBackground;
+    private String preconnectedUrl;
+
+    private KavaDispatcher() {
+    }
+
+    static KavaDispatcher getInstance() {
+        return instance;
+    }
+
+    /**
+     * @param httpClient - transport of all the requests. Set once by the platform adapter.
+     */
+    void setHttpClient(KavaHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    boolean hasHttpClient() {
+        return httpClient != null;
+    }
+
+    /**
+     * Resolve the analytics host and open the transport connection ahead of the first report, so the IMPRESSION
+     * goes out over a warm connection. The request is not a report, it is not queued nor counted in the metrics.
+     *
+     * @param baseUrl   - analytics endpoint.
+     * @param userAgent - User-Agent header of the reports.
+     */
+    void preconnect(String baseUrl, String userAgent) {
+        if (httpClient == null || baseUrl == null || baseUrl.equals(preconnectedUrl)) {
+            return;
+        }
+        preconnectedUrl = baseUrl;
+        final long startTimestamp = KavaScheduler.elapsedRealtimeMs();
+        httpClient.execute(KavaRequestFactory.preconnect(baseUrl, userAgent, (request, isSuccess, response) ->
+                log.d("Kava preconnect to " + baseUrl + " done in " + (request.completedTimestamp - startTimestamp) + " ms")));
+    }
+
+    /**
+     * @param player   - registered session.
+     * @param filesDir - private directory of the application, the first one given holds the pending requests.
+     */
+    void register(KavaSession player, File filesDir) {
+        players.add(player);
+        log.d("Registered Kava players: " + players.size());
+        if (pendingRequestStore == null && filesDir != null) {
+            pendingRequestStore = new PendingRequestStore(filesDir);
+            // Reports left by a previous process that was killed in the background.
+            resendPendingRequests();
+        }
+    }
+
+    void unregister(KavaSession player) {
+        players.remove(player);
+        if (players.isEmpty()) {
+            flush();
+        }
+    }
+
+    /**
+     * Queue the request for sending.
+     *
+     * @param request      - request to send.
+     * @param canBeDelayed - true if the request may wait for the next flush window (VIEW events).
+     */
+    void send(KavaRequest request, boolean canBeDelayed) {
+        request.queuedTimestamp = KavaScheduler.elapsedRealtimeMs();
+        outgoingQueue.offer(request);
+        metrics.onRequestQueued();
+        scheduleFlush(canBeDelayed && !isInBackground ? VIEW_EVENTS_FLUSH_WINDOW_MS : 0);
+    }
+
+    /**
+     * Application went to the background: send everything now, including the held VIEW events, and keep
+     * sending without the window until it is resumed. Whatever is not confirmed within the budget is persisted.
+     */
+    void onApplicationPaused() {
+        isInBackground = true;
+        flushPending();
+    }
+
+    /**
+     * Application is back in the foreground: send again the event reports that did not make it.
+     */
+    void onApplicationResumed() {
+        isInBackground = false;
+        if (pendingFlushDeadline != null) {
+            pendingFlushDeadline.cancel(false);
+            pendingFlushDeadline = null;
+        }
+        resendPendingRequests();
+    }
+
+    /**
+     * Send all the queued requests now and persist the unconfirmed event reports right away, so they survive the
+     * process being killed. They are persisted again when the budget expires, without the ones confirmed by then.
+     */
+    void flushPending() {
+        sendQueuedRequests();
+        persistPendingRequests();
+        if (pendingFlushDeadline == null) {
+            pendingFlushDeadline = KavaScheduler.schedule(pendingFlushDeadlineTask, PENDING_FLUSH_BUDGET_MS);
+        }
+    }
+
+    int getQueueSize() {
+        return outgoingQueue.size();
+    }
+
+    KavaMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Add a server time sample from a completed trackEvent request.
+     *
+     * @param request         - completed request.
+     * @param serverTimestamp - server wall clock time from the response in ms.
+     */
+    void onServerTime(KavaRequest request, long serverTimestamp) {
+        long roundTripTime = request.getLatency();
+        clockOffsetEstimator.addSample(roundTripTime, request.completedClientTimestamp, serverTimestamp);
+        metrics.onClockEstimate(roundTripTime, clockOffsetEstimator.getMinRoundTripTime(), clockOffsetEstimator.getClockOffset());
+    }
+
+    ClockOffsetEstimator getClockOffsetEstimator() {
+        return clockOffsetEstimator;
+    }
+
+    KavaFlightRecorder getFlightRecorder() {
+        return flightRecorder;
+    }
+
+    ReportedErrors getReportedErrors() {
+        return reportedErrors;
+    }
+
+    /**
+     * Hand all the queued requests to the transport.
+     */
+    void flush() {
+        if (sendQueuedRequests() && isInBackground) {
+            persistPendingRequests();
+        }
+    }
+
+    /**
+     * @return - true if any request was handed to the transport.
+     */
+    private boolean sendQueuedRequests() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+
+        if (outgoingQueue.isEmpty() || httpClient == null) {
+            return false;
+        }
+
+        if (!isInBackground) {
+            removeCompletedRequests(false);
+        }
+        KavaRequest request;
+        while ((request = outgoingQueue.poll()) != null) {
+            request.sentTimestamp = KavaScheduler.elapsedRealtimeMs();
+            request.attempts++;
+            metrics.onRequestSent(request.event, request.getRequestSize());
+            if (request.event != null) {
+                if (unconfirmedRequests.size() == PendingRequestStore.MAX_PENDING_REQUESTS) {
+                    unconfirmedRequests.remove(0);
+                }
+                unconfirmedRequests.add(request);
+            }
+            httpClient.execute(request);
+        }
+        return true;
+    }
+
+    private void onPendingFlushDeadline() {
+        pendingFlushDeadline = null;
+        int pendingCount = persistPendingRequests();
+        if (pendingCount > 0) {
+            log.d("Kava requests not confirmed within the flush budget: " + pendingCount);
+        }
+    }
+
+    /**
+     * @return - amount of the persisted event reports.
+     */
+    private int persistPendingRequests() {
+        if (pendingRequestStore == null) {
+            return 0;
+        }
+        removeCompletedRequests(true);
+        long now = KavaScheduler.currentTimeMillis();
+        List<KavaRequest> pendingRequests = new ArrayList<>();
+        for (KavaRequest request : unconfirmedRequests) {
+            if (!isExpired(request, now)) {
+                pendingRequests.add(request);
+            }
+        }
+        for (KavaRequest request : outgoingQueue) {
+            if (request.event != null && !isExpired(request, now)) {
+                pendingRequests.add(request);
+            }
+        }
+        pendingRequestStore.save(pendingRequests);
+        return pendingRequests.size();
+    }
+
+    private void resendPendingRequests() {
+        if (pendingRequestStore == null) {
+            return;
+        }
+        List<KavaRequest> pendingRequests = pendingRequestStore.load(resentRequestCompletion);
+        pendingRequestStore.clear();
+        long now = KavaScheduler.currentTimeMillis();
+        for (KavaRequest request : pendingRequests) {
+            // Reports of this process that are still in flight or succeeded after they were persisted are not sent twice.
+            if (isInFlightOrConfirmed(request.url)) {
+                continue;
+            }
+            if (isExpired(request, now)) {
+                log.d("Dropping expired Kava " + request.event + " report after " + request.attempts + " attempts");
+                continue;
+            }
+            metrics.onRequestRetried(request.event);
+            send(request, false);
+        }
+        removeCompletedRequests(false);
+    }
+
+    /**
+     * Completion fields are written on the transport thread, a request completing meanwhile is just kept for now.
+     *
+     * @param keepFailed - true to keep the failed requests for persisting, except the ones the server rejected.
+     */
+    private void removeCompletedRequests(boolean keepFailed) {
+        Iterator<KavaRequest> iterator = unconfirmedRequests.iterator();
+        while (iterator.hasNext()) {
+            KavaRequest request = iterator.next();
+            if (request.completedTimestamp > 0 && (request.isSuccess || !keepFailed || request.isRejected())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param now - wall clock time in ms.
+     * @return - true if the event report is not worth sending again.
+     */
+    private static boolean isExpired(KavaRequest request, long now) {
+        return request.attempts >= MAX_REQUEST_ATTEMPTS || now - request.createdClientTimestamp > MAX_PENDING_REQUEST_AGE_MS;
+    }
+
+    private boolean isInFlightOrConfirmed(String url) {
+        for (KavaRequest request : unconfirmedRequests) {
+            if (url.equals(request.url) && (request.completedTimestamp == 0 || request.isSuccess)) {
+                return true;
+            }
+        }
+        for (KavaRequest request : outgoingQueue) {
+            if (url.equals(request.url)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleFlush(long delayMs) {
+        long flushTimestamp = KavaScheduler.elapsedRealtimeMs() + delayMs;
+        if (scheduledFlush != null) {
+            if (scheduledFlushTimestamp <= flushTimestamp) {
+                // Already flushing earlier, the request will ride along.
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlushTimestamp = flushTimestamp;
+        scheduledFlush = KavaScheduler.schedule(flushTask, delayMs);
+    }
+}
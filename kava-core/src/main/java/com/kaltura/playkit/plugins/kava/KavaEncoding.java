@@ -0,0 +1,73 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.nio.charset.Charset;
+
+/**
+ * Platform independent encodings of the reported values.
+ */
+final class KavaEncoding {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private KavaEncoding() {
+    }
+
+    /**
+     * @return - standard padded Base64 of the UTF-8 bytes of the value, without line breaks.
+     */
+    static String base64(String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        StringBuilder encoded = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            int remaining = bytes.length - i;
+            int chunk = (bytes[i] & 0xff) << 16;
+            if (remaining > 1) {
+                chunk |= (bytes[i + 1] & 0xff) << 8;
+            }
+            if (remaining > 2) {
+                chunk |= bytes[i + 2] & 0xff;
+            }
+            encoded.append(BASE64_ALPHABET[(chunk >> 18) & 0x3f]);
+            encoded.append(BASE64_ALPHABET[(chunk >> 12) & 0x3f]);
+            encoded.append(remaining > 1 ? BASE64_ALPHABET[(chunk >> 6) & 0x3f] : '=');
+            encoded.append(remaining > 2 ? BASE64_ALPHABET[chunk & 0x3f] : '=');
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Percent encode the UTF-8 bytes of the value into the builder, leaving the same characters
+     * unencoded as android.net.Uri.encode(): letters, digits and "_-!.~'()*".
+     *
+     * @param builder - builder to append to.
+     * @param value   - value to encode, null is appended as "null".
+     */
+    static void appendPercentEncoded(StringBuilder builder, String value) {
+        if (value == null) {
+            builder.append("null");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (isUnreserved(c)) {
+                builder.append(c);
+                continue;
+            }
+            int end = i + 1;
+            while (end < value.length() && !isUnreserved(value.charAt(end))) {
+                end++;
+            }
+            byte[] bytes = value.substring(i, end).getBytes(UTF_8);
+            for (byte b : bytes) {
+                builder.append('%').append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            i = end - 1;
+        }
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "_-!.~'()*".indexOf(c) != -1;
+    }
+}
@@ -0,0 +1,41 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serial event loop of a single plugin instance, executed on the Kava analytics thread ({@link KavaScheduler}).
+ * Any thread may post into it without locking; all the posted events run one by one and in posting order,
+ * so the state they touch is confined to the analytics thread and needs no synchronization.
+ */
+class KavaEventLoop {
+
+    private static final KavaLog log = KavaLog.get(KavaEventLoop.class.getSimpleName());
+
+    private final ConcurrentLinkedQueue<Runnable> events = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isDrainScheduled = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+
+    /**
+     * @param event - event handler. Should capture only immutable values.
+     */
+    void post(Runnable event) {
+        events.offer(event);
+        if (isDrainScheduled.compareAndSet(false, true)) {
+            KavaScheduler.execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        // Must be cleared before polling, otherwise an event posted during the last poll could be left behind.
+        isDrainScheduled.set(false);
+        Runnable event;
+        while ((event = events.poll()) != null) {
+            try {
+                event.run();
+            } catch (RuntimeException e) {
+                log.e("Failed to handle Kava event: " + e.getMessage());
+            }
+        }
+    }
+}
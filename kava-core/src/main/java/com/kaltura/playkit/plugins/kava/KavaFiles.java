@@ -0,0 +1,71 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * File IO shared by the Kava stores.
+ */
+final class KavaFiles {
+
+    private static final KavaLog log = KavaLog.get(KavaFiles.class.getSimpleName());
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private KavaFiles() {
+    }
+
+    /**
+     * @return - the UTF-8 content of the file.
+     */
+    static String readFile(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return new String(content.toByteArray(), UTF_8);
+        } finally {
+            closeQuietly(inputStream, file.getName());
+        }
+    }
+
+    /**
+     * Write (or overwrite) the file and fsync it.
+     *
+     * @param file    - file to write.
+     * @param content - UTF-8 content.
+     */
+    static void writeFile(File file, String content) throws IOException {
+        FileOutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(content.getBytes(UTF_8));
+            outputStream.getFD().sync();
+        } finally {
+            closeQuietly(outputStream, file.getName());
+        }
+    }
+
+    /**
+     * @param closeable - file to close, or null.
+     * @param name      - file name for the log.
+     */
+    static void closeQuietly(Closeable closeable, String name) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.w("Failed to close " + name + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Locale;
+
+/**
+ * Fixed size, preallocated ring buffer of the recent Kava events and their delivery status.
+ * Recording is a handful of primitive writes, so it is always on. The content is turned into text
+ * only when {@link #dump()} is called on demand.
+ * Records are written only from the Kava analytics thread, dump from any other thread is best effort.
+ */
+class KavaFlightRecorder {
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    static final byte STATUS_CREATED = 1;
+    static final byte STATUS_SUCCEEDED = 2;
+    static final byte STATUS_FAILED = 3;
+    static final byte STATUS_OFFLINE = 4;
+
+    private final int capacity;
+    private final int[] playerTags;
+    private final int[] eventTypes;
+    private final int[] eventIndexes;
+    private final long[] timestamps;
+    private final long[] positions;
+    private final long[] values;
+    private final byte[] statuses;
+
+    private volatile long recordsCount;
+
+    KavaFlightRecorder(int capacity) {
+        this.capacity = capacity;
+        playerTags = new int[capacity];
+        eventTypes = new int[capacity];
+        eventIndexes = new int[capacity];
+        timestamps = new long[capacity];
+        positions = new long[capacity];
+        values = new long[capacity];
+        statuses = new byte[capacity];
+    }
+
+    /**
+     * @param playerTag  - id of the reporting player instance.
+     * @param event      - Kava event.
+     * @param eventIndex - index of the event in the view session.
+     * @param position   - player position in ms.
+     * @param value      - event numeric value. Bitrate for created events, latency in ms for delivered ones.
+     * @param status     - one of the STATUS_ constants.
+     */
+    void record(int playerTag, KavaEvents event, int eventIndex, long position, long value, byte status) {
+        long count = recordsCount;
+        int slot = (int) (count % capacity);
+        playerTags[slot] = playerTag;
+        eventTypes[slot] = event.getValue();
+        eventIndexes[slot] = eventIndex;
+        timestamps[slot] = KavaScheduler.elapsedRealtimeMs();
+        positions[slot] = position;
+        values[slot] = value;
+        statuses[slot] = status;
+        recordsCount = count + 1;
+    }
+
+    /**
+     * @return - readable dump of the records, oldest first.
+     */
+    String dump() {
+        long count = recordsCount;
+        long first = Math.max(0, count - capacity);
+        StringBuilder dump = new StringBuilder("Kava flight recorder, ").append(count - first).append(" records (player/time/type/index/position/value/status):\n");
+        for (long i = first; i < count; i++) {
+            int slot = (int) (i % capacity);
+            dump.append(String.format(Locale.US, "%d %d %d %d %d %d %s%n", playerTags[slot], timestamps[slot], eventTypes[slot],
+                    eventIndexes[slot], positions[slot], values[slot], getStatusName(statuses[slot])));
+        }
+        return dump.toString();
+    }
+
+    private static String getStatusName(byte status) {
+        switch (status) {
+            case STATUS_CREATED:
+                return "created";
+            case STATUS_SUCCEEDED:
+                return "succeeded";
+            case STATUS_FAILED:
+                return "failed";
+            case STATUS_OFFLINE:
+                return "offline";
+            default:
+                return "unknown";
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Transport the {@link KavaDispatcher} hands the requests to.
+ */
+interface KavaHttpClient {
+
+    /**
+     * Send the request asynchronously and call {@link KavaRequest#complete(boolean, String)} when done,
+     * on any thread.
+     *
+     * @param request - request to send.
+     */
+    void execute(KavaRequest request);
+}
@@ -0,0 +1,53 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Logger of the platform independent Kava code. Messages are handed to the {@link Sink} installed by the
+ * platform adapter, by default only warnings and errors are printed to stderr.
+ */
+final class KavaLog {
+
+    static final int VERBOSE = 2;
+    static final int DEBUG = 3;
+    static final int WARN = 5;
+    static final int ERROR = 6;
+
+    interface Sink {
+        void log(int level, String tag, String message);
+    }
+
+    private static volatile Sink sink = (level, tag, message) -> {
+        if (level >= WARN) {
+            System.err.println(tag + ": " + message);
+        }
+    };
+
+    private final String tag;
+
+    private KavaLog(String tag) {
+        this.tag = tag;
+    }
+
+    static KavaLog get(String tag) {
+        return new KavaLog(tag);
+    }
+
+    static void setSink(Sink sink) {
+        KavaLog.sink = sink;
+    }
+
+    void v(String message) {
+        sink.log(VERBOSE, tag, message);
+    }
+
+    void d(String message) {
+        sink.log(DEBUG, tag, message);
+    }
+
+    void w(String message) {
+        sink.log(WARN, tag, message);
+    }
+
+    void e(String message) {
+        sink.log(ERROR, tag, message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Media entry values the Kava state machine needs, copied from the player media config.
+ */
+class KavaMedia {
+
+    final String id;
+    final Map<String, String> metadata;
+    final KavaMediaEntryType mediaEntryType;
+
+    /**
+     * @param id             - media entry id.
+     * @param metadata       - media entry metadata, may be null.
+     * @param mediaEntryType - type of the media entry. Dvr stands for a live entry with DVR window.
+     */
+    KavaMedia(String id, Map<String, String> metadata, KavaMediaEntryType mediaEntryType) {
+        this.id = id;
+        this.metadata = metadata != null ? metadata : Collections.<String, String>emptyMap();
+        this.mediaEntryType = mediaEntryType;
+    }
+
+    boolean isLiveEntry() {
+        return mediaEntryType == KavaMediaEntryType.Live || mediaEntryType == KavaMediaEntryType.Dvr;
+    }
+}
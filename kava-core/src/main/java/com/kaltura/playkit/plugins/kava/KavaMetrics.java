@@ -0,0 +1,200 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process wide counters of the Kava delivery pipeline. All the updates are single lock-free atomic operations,
+ * so they can be kept on in production. Obtained by KavaAnalyticsPlugin.getMetrics().
+ */
+public class KavaMetrics {
+
+    /**
+     * Upper bounds (inclusive) of the send latency histogram buckets in ms. The last bucket counts everything above.
+     */
+    public static final long[] LATENCY_BUCKETS_MS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private static final int EVENT_TYPES_COUNT = KavaEvents.values().length;
+
+    private final AtomicLongArray createdEvents = new AtomicLongArray(EVENT_TYPES_COUNT);
+    private final AtomicLongArray sentEvents = new AtomicLongArray(EVENT_TYPES_COUNT);
+    private final AtomicLongArray succeededEvents = new AtomicLongArray(EVENT_TYPES_COUNT);
+    private final AtomicLongArray failedEvents = new AtomicLongArray(EVENT_TYPES_COUNT);
+    private final AtomicLongArray retriedEvents = new AtomicLongArray(EVENT_TYPES_COUNT);
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MS.length + 1);
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+
+    private volatile long lastRoundTripTime = -1;
+    private volatile long minRoundTripTime = -1;
+    private volatile long serverClockOffset;
+    private volatile boolean hasServerClockOffset;
+
+    KavaMetrics() {
+    }
+
+    void onEventCreated(KavaEvents event) {
+        createdEvents.incrementAndGet(event.ordinal());
+    }
+
+    void onRequestQueued() {
+        queueDepth.incrementAndGet();
+    }
+
+    void onRequestSent(KavaEvents event, long bytes) {
+        queueDepth.decrementAndGet();
+        inFlightRequests.incrementAndGet();
+        bytesSent.addAndGet(bytes);
+        if (event != null) {
+            sentEvents.incrementAndGet(event.ordinal());
+        }
+    }
+
+    void onRequestCompleted(KavaEvents event, boolean isSuccess, long latencyMs, long bytes) {
+        inFlightRequests.decrementAndGet();
+        bytesReceived.addAndGet(bytes);
+        latencyHistogram.incrementAndGet(getLatencyBucket(latencyMs));
+        if (event != null) {
+            (isSuccess ? succeededEvents : failedEvents).incrementAndGet(event.ordinal());
+        }
+    }
+
+    void onClockEstimate(long roundTripTime, long minRoundTripTime, long serverClockOffset) {
+        this.lastRoundTripTime = roundTripTime;
+        this.minRoundTripTime = minRoundTripTime;
+        this.serverClockOffset = serverClockOffset;
+        this.hasServerClockOffset = true;
+    }
+
+    void onRequestRetried(KavaEvents event) {
+        if (event != null) {
+            retriedEvents.incrementAndGet(event.ordinal());
+        }
+    }
+
+    private static int getLatencyBucket(long latencyMs) {
+        for (int i = 0; i < LATENCY_BUCKETS_MS.length; i++) {
+            if (latencyMs <= LATENCY_BUCKETS_MS[i]) {
+                return i;
+            }
+        }
+        return LATENCY_BUCKETS_MS.length;
+    }
+
+    public long getCreatedCount(KavaEvents event) {
+        return createdEvents.get(event.ordinal());
+    }
+
+    public long getSentCount(KavaEvents event) {
+        return sentEvents.get(event.ordinal());
+    }
+
+    public long getSucceededCount(KavaEvents event) {
+        return succeededEvents.get(event.ordinal());
+    }
+
+    public long getFailedCount(KavaEvents event) {
+        return failedEvents.get(event.ordinal());
+    }
+
+    public long getRetriedCount(KavaEvents event) {
+        return retriedEvents.get(event.ordinal());
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return - amount of requests waiting in the outgoing queue.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return - amount of requests sent and not completed yet.
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /**
+     * @return - copy of the latency histogram, bucket i counts the requests with latency up to
+     * {@link #LATENCY_BUCKETS_MS}[i], the last one counts all the slower requests.
+     */
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[latencyHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return - round trip time of the last trackEvent request in ms, or -1 if unknown.
+     */
+    public long getLastRoundTripTime() {
+        return lastRoundTripTime;
+    }
+
+    /**
+     * @return - lowest round trip time among the recent trackEvent requests in ms, or -1 if unknown.
+     */
+    public long getMinRoundTripTime() {
+        return minRoundTripTime;
+    }
+
+    /**
+     * @return - estimated analytics server clock minus device clock in ms. Valid only if {@link #hasServerClockOffset()}.
+     */
+    public long getServerClockOffset() {
+        return serverClockOffset;
+    }
+
+    public boolean hasServerClockOffset() {
+        return hasServerClockOffset;
+    }
+
+    public long getTotalCreatedCount() {
+        return sum(createdEvents);
+    }
+
+    public long getTotalSucceededCount() {
+        return sum(succeededEvents);
+    }
+
+    public long getTotalFailedCount() {
+        return sum(failedEvents);
+    }
+
+    private static long sum(AtomicLongArray counters) {
+        long sum = 0;
+        for (int i = 0; i < counters.length(); i++) {
+            sum += counters.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return "KavaMetrics{" +
+                "created=" + getTotalCreatedCount() +
+                ", succeeded=" + getTotalSucceededCount() +
+                ", failed=" + getTotalFailedCount() +
+                ", bytesSent=" + getBytesSent() +
+                ", bytesReceived=" + getBytesReceived() +
+                ", queueDepth=" + getQueueDepth() +
+                ", inFlight=" + getInFlightRequests() +
+                ", minRtt=" + getMinRoundTripTime() +
+                ", clockOffset=" + getServerClockOffset() +
+                '}';
+    }
+}
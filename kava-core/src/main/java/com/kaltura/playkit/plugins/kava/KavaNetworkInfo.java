@@ -0,0 +1,19 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * State of the device network, as far as the reports need it.
+ */
+interface KavaNetworkInfo {
+
+    /**
+     * @return - reported networkConnectionType, e.g. "WIFI" or "4G".
+     */
+    String getNetworkClass();
+
+    boolean isNetworkAvailable();
+
+    /**
+     * @return - true if the active network is metered or cellular.
+     */
+    boolean isMeteredNetwork();
+}
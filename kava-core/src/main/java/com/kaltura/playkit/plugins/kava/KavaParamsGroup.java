@@ -0,0 +1,16 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Optional groups of reported parameters, that can be turned off in {@link KavaAnalyticsConfig}
+ * together with the player listeners that feed them.
+ */
+
+public enum KavaParamsGroup {
+    SOUND_MODE, // VIEW soundMode.
+    SEGMENT_DOWNLOAD, // VIEW segment/manifest download params. Fed by bytesLoaded.
+    SEQUENCE_ID, // VIEW flavorParamsId of live streams. Fed by metadataAvailable.
+    NETWORK, // VIEW networkConnectionType and networkConnectionOverhead. Fed by connectionAcquired.
+    AUDIO_LANGUAGE, // VIEW audioLanguage.
+    PLAYHEAD, // position of all the events and VIEW forwardBufferHealth. Fed by playheadUpdated.
+    ADS // PLAY adJoinTime and contentJoinTime, VIEW ad play and buffer time. Fed by the ad events, which also keep the ad time out of the content time.
+}
@@ -0,0 +1,39 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.File;
+
+/**
+ * Everything the Kava state machine needs from the platform it runs on.
+ */
+class KavaPlatform {
+
+    final KavaClock clock;
+    final KavaNetworkInfo networkInfo;
+    final KavaAudioState audioState;
+    final String applicationId;
+    final String userAgent;
+    final String clientTag;
+    final File filesDir;
+    // Base64 of "app://" + applicationId, reported when the config has no referrer.
+    final String encodedDefaultReferrer;
+
+    /**
+     * @param clock         - time source.
+     * @param networkInfo   - device network state.
+     * @param audioState    - device sound state.
+     * @param applicationId - reported application (package name).
+     * @param userAgent     - User-Agent header of the reports.
+     * @param clientTag     - reported clientVer.
+     * @param filesDir      - private directory for the persisted session state and offline summaries.
+     */
+    KavaPlatform(KavaClock clock, KavaNetworkInfo networkInfo, KavaAudioState audioState, String applicationId, String userAgent, String clientTag, File filesDir) {
+        this.clock = clock;
+        this.networkInfo = networkInfo;
+        this.audioState = audioState;
+        this.applicationId = applicationId;
+        this.userAgent = userAgent;
+        this.clientTag = clientTag;
+        this.filesDir = filesDir;
+        this.encodedDefaultReferrer = KavaEncoding.base64("app://" + applicationId);
+    }
+}
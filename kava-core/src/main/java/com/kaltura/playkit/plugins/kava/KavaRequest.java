@@ -0,0 +1,114 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request travelling through the {@link KavaDispatcher}, together with its delivery timestamps.
+ */
+class KavaRequest {
+
+    static final String METHOD_GET = "GET";
+    static final String METHOD_POST = "POST";
+    static final String METHOD_HEAD = "HEAD";
+    static final int STATUS_CODE_UNKNOWN = 0;
+
+    final KavaEvents event;
+    final int eventIndex;
+    final String method;
+    final String url;
+    final String body;
+    final Map<String, String> headers = new LinkedHashMap<>();
+
+    private final OnCompletion onCompletion;
+
+    // Wall clock time the request was created in ms, kept when an event report is persisted and sent again.
+    long createdClientTimestamp;
+    // Times the request was handed to the transport, kept when an event report is persisted and sent again.
+    int attempts;
+
+    // Monotonic timestamps in ms, 0 until reached.
+    volatile long queuedTimestamp;
+    volatile long sentTimestamp;
+    volatile long completedTimestamp;
+    // Wall clock time of the completion in ms.
+    volatile long completedClientTimestamp;
+    volatile boolean isSuccess;
+    volatile int statusCode = STATUS_CODE_UNKNOWN;
+
+    interface OnCompletion {
+
+        /**
+         * Called on the transport thread, right after the completion timestamp was taken.
+         *
+         * @param isSuccess - true if the server accepted the request.
+         * @param response  - response body, null if there is none.
+         */
+        void onComplete(KavaRequest request, boolean isSuccess, String response);
+    }
+
+    /**
+     * @param event        - reported Kava event, null if the request is not a Kava event report.
+     * @param eventIndex   - index of the reported event in its view session, -1 if not an event report.
+     * @param method       - METHOD_GET, METHOD_POST or METHOD_HEAD.
+     * @param url          - full request url.
+     * @param body         - request body, null for GET.
+     * @param onCompletion - completion listener.
+     */
+    KavaRequest(KavaEvents event, int eventIndex, String method, String url, String body, OnCompletion onCompletion) {
+        this.event = event;
+        this.eventIndex = eventIndex;
+        this.method = method;
+        this.url = url;
+        this.body = body;
+        this.onCompletion = onCompletion;
+        this.createdClientTimestamp = KavaScheduler.currentTimeMillis();
+    }
+
+    /**
+     * Called by the {@link KavaHttpClient} when the request is done, if it can't tell the HTTP status code.
+     *
+     * @param isSuccess - true if the server accepted the request.
+     * @param response  - response body, null if there is none.
+     */
+    void complete(boolean isSuccess, String response) {
+        complete(isSuccess, STATUS_CODE_UNKNOWN, response);
+    }
+
+    /**
+     * Called by the {@link KavaHttpClient} when the request is done.
+     *
+     * @param isSuccess  - true if the server accepted the request.
+     * @param statusCode - HTTP status code, STATUS_CODE_UNKNOWN if there was no response.
+     * @param response   - response body, null if there is none.
+     */
+    void complete(boolean isSuccess, int statusCode, String response) {
+        this.isSuccess = isSuccess;
+        this.statusCode = statusCode;
+        completedTimestamp = KavaScheduler.elapsedRealtimeMs();
+        completedClientTimestamp = KavaScheduler.currentTimeMillis();
+        onCompletion.onComplete(this, isSuccess, response);
+    }
+
+    /**
+     * @return - true if the server rejected the request itself (4xx), sending it again would fail the same way.
+     */
+    boolean isRejected() {
+        return statusCode >= 400 && statusCode < 500;
+    }
+
+    long getRequestSize() {
+        return (url != null ? url.length() : 0) + (body != null ? body.length() : 0);
+    }
+
+    long getLatency() {
+        return (sentTimestamp > 0 && completedTimestamp >= sentTimestamp) ? completedTimestamp - sentTimestamp : 0;
+    }
+
+    /**
+     * @return - time from queueing the request in the dispatcher to its completion in ms, including the flush window.
+     */
+    long getEndToEndLatency() {
+        return (queuedTimestamp > 0 && completedTimestamp >= queuedTimestamp) ? completedTimestamp - queuedTimestamp : 0;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * ============================================================================
+ * Copyright (C) 2017 Kaltura Inc.
+ * 
+ * Licensed under the AGPLv3 license, unless a different license for a
+ * particular library is specified in the applicable library path.
+ * 
+ * You may obtain a copy of the License at
+ * https://www.gnu.org/licenses/agpl-3.0.html
+ * ============================================================================
+ */
+
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Map;
+
+/**
+ * Builds the {@link KavaRequest}s of the Kava reports. The public {@code KavaService} of the plugin
+ * keeps the netkit based API for the integrators that call it directly.
+ */
+final class KavaRequestFactory {
+
+    private KavaRequestFactory() {
+    }
+
+    static KavaRequest sendAnalyticsEvent(String baseUrl, String userAgent, Map<String, String> params, KavaEvents event, int eventIndex, KavaRequest.OnCompletion onCompletion) {
+        KavaRequest request = new KavaRequest(event, eventIndex, KavaRequest.METHOD_GET, buildUrlWithParams(baseUrl, params), null, onCompletion);
+        request.headers.put("User-Agent", userAgent);
+        return request;
+    }
+
+    static KavaRequest sendOfflineSummaries(String url, String userAgent, String summariesJson, KavaRequest.OnCompletion onCompletion) {
+        KavaRequest request = new KavaRequest(null, -1, KavaRequest.METHOD_POST, url, summariesJson, onCompletion);
+        request.headers.put("User-Agent", userAgent);
+        request.headers.put("Content-Type", "application/json");
+        return request;
+    }
+
+    /**
+     * Request that only opens the connection to the analytics host, the response is ignored.
+     */
+    static KavaRequest preconnect(String baseUrl, String userAgent, KavaRequest.OnCompletion onCompletion) {
+        KavaRequest request = new KavaRequest(null, -1, KavaRequest.METHOD_HEAD, baseUrl, null, onCompletion);
+        request.headers.put("User-Agent", userAgent);
+        return request;
+    }
+
+    static String buildUrlWithParams(String baseUrl, Map<String, String> params) {
+        StringBuilder url = new StringBuilder(baseUrl.length() + params.size() * 24);
+        url.append(baseUrl);
+        boolean hasQuery = baseUrl.indexOf('?') != -1;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            url.append(hasQuery ? '&' : '?');
+            hasQuery = true;
+            KavaEncoding.appendPercentEncoded(url, entry.getKey());
+            url.append('=');
+            KavaEncoding.appendPercentEncoded(url, entry.getValue());
+        }
+        return url.toString();
+    }
+}
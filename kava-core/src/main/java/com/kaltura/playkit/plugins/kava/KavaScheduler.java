@@ -0,0 +1,100 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide single thread scheduler shared by all the Kava plugin instances.
+ * Tasks are scheduled for their exact deadline, so an idle player costs no wakeups at all.
+ * This is also the Kava analytics thread - all the plugin state is owned and mutated only by it.
+ */
+final class KavaScheduler {
+
+    private static final String THREAD_NAME = "KavaAnalytics";
+
+    /**
+     * Executor of the analytics thread tasks. Replaced only by the JVM tooling, to run the sessions
+     * under a virtual clock.
+     */
+    interface Executor {
+
+        void execute(Runnable task);
+
+        ScheduledFuture<?> schedule(Runnable task, long delayMs);
+    }
+
+    private static volatile Executor executor = createExecutor();
+    private static volatile KavaClock clock = KavaClock.SYSTEM;
+
+    private KavaScheduler() {
+    }
+
+    private static Executor createExecutor() {
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        };
+        final ScheduledThreadPoolExecutor threadPoolExecutor = new ScheduledThreadPoolExecutor(1, threadFactory);
+        //The VIEW timer and the dispatcher flushes cancel their pending tasks often, drop them from the queue right away.
+        try {
+            threadPoolExecutor.setRemoveOnCancelPolicy(true);
+        } catch (NoSuchMethodError e) {
+            //Android before API 21, the cancelled tasks stay queued until their delay ends.
+        }
+        return new Executor() {
+            @Override
+            public void execute(Runnable task) {
+                threadPoolExecutor.execute(task);
+            }
+
+            @Override
+            public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+                return threadPoolExecutor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            }
+        };
+    }
+
+    /**
+     * Must be called before any Kava session is created.
+     *
+     * @param executor - executor of the analytics thread tasks.
+     * @param clock    - time source of the scheduler.
+     */
+    static void setExecutor(Executor executor, KavaClock clock) {
+        KavaScheduler.executor = executor;
+        KavaScheduler.clock = clock;
+    }
+
+    /**
+     * @param task - task to run on the scheduler thread as soon as possible.
+     */
+    static void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * @param task    - task to run on the scheduler thread.
+     * @param delayMs - delay from now in ms, negative values are treated as 0.
+     * @return - future that can be used to cancel the task.
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return executor.schedule(task, Math.max(0, delayMs));
+    }
+
+    /**
+     * @return - monotonic time in ms. Not related to the wall clock, use only for measuring intervals.
+     */
+    static long elapsedRealtimeMs() {
+        return clock.elapsedRealtimeMs();
+    }
+
+    /**
+     * @return - wall clock time in ms.
+     */
+    static long currentTimeMillis() {
+        return clock.currentTimeMillis();
+    }
+}
@@ -0,0 +1,1028 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kava state machine of a single player, free of any player or Android dependency.
+ * The player adapter translates the player events into the calls below. All the calls
+ * must be made on the analytics thread, through the {@link KavaEventLoop} of the session.
+ */
+class KavaSession {
+
+    private static final KavaLog log = KavaLog.get(KavaSession.class.getSimpleName());
+    private static final long MIN_VIEW_EVENT_INTERVAL_MS = 1000;
+    static final long POSITION_UNSET = -1;
+
+    static final int SEGMENT_VIDEO = 0;
+    static final int SEGMENT_AUDIO = 1;
+    static final int SEGMENT_TEXT = 2;
+    static final int SEGMENT_MANIFEST = 3;
+
+    interface Listener {
+
+        /**
+         * Called when the server accepted or rejected the report of the event.
+         *
+         * @param eventName - name of the reported Kava event.
+         */
+        void onAnalyticsReport(String eventName);
+
+        /**
+         * Called after every VIEW event report.
+         *
+         * @param metrics - process wide counters of the Kava delivery pipeline.
+         */
+        void onMetricsReport(KavaMetrics metrics);
+
+        /**
+         * Called when the playback reached a configured progress milestone that is not a Kava event.
+         *
+         * @param milestone - percent of the duration, or position in seconds.
+         * @param isPercent - true if the milestone is in percent of the duration.
+         */
+        void onProgressMilestone(int milestone, boolean isPercent);
+    }
+
+    private final KavaDispatcher dispatcher;
+    private final KavaEventLoop eventLoop;
+    private final Listener listener;
+    private final DataHandler dataHandler;
+    private final DecimalFormat decimalFormat;
+    private final Id3TextFrameScanner id3TextFrameScanner = new Id3TextFrameScanner();
+    private final ReportedErrors reportedErrors = new ReportedErrors(Long.MAX_VALUE);
+    private KavaAnalyticsConfig pluginConfig;
+    private KavaMedia media;
+    private KavaTraceWriter traceWriter;
+
+    private boolean hasPlayhead;
+    private long playheadPosition;
+    private long playheadDuration;
+    private ProgressMilestones progressMilestones = new ProgressMilestones(null, null);
+    private int playheadEvaluationInterval;
+    private long lastEvaluatedPosition = POSITION_UNSET;
+    private boolean playReached100;
+
+    private boolean isAutoPlay;
+    private boolean isImpressionSent;
+    private boolean isBuffering;
+    // Content buffering that started or went on behind an ad, not counted until the ad ends.
+    private boolean isBufferingBehindAd;
+    private boolean isBufferingStart;
+    private boolean isAdPlaying;
+    private boolean isEnded = false;
+    private boolean isPaused = true;
+    private Boolean isFirstPlay;
+    private boolean isFatalError;
+    private boolean isOfflineUploadInProgress;
+    private boolean isLiveMedia;
+
+    private ViewTimer viewTimer;
+    // VIEW event timings from the trackEvent response in ms, 0 if the server did not specify them.
+    private long serverViewEventInterval;
+    private long serverMaxViewEventInterval;
+    private long serverViewEventIdleTimeout;
+    private long viewEventIdleTimeout = ViewTimer.MAX_ALLOWED_VIEW_IDLE_TIME;
+    private final ViewTimer.ViewEventTrigger viewEventTrigger = initViewTrigger();
+    private long applicationBackgroundTimeStamp;
+
+    /**
+     * @param platform   - platform the session runs on.
+     * @param dispatcher - process wide dispatcher of the reports.
+     * @param eventLoop  - event loop the session calls are made on.
+     * @param listener   - report listener.
+     */
+    KavaSession(KavaPlatform platform, KavaDispatcher dispatcher, KavaEventLoop eventLoop, Listener listener) {
+        this.dispatcher = dispatcher;
+        this.eventLoop = eventLoop;
+        this.listener = listener;
+        this.dataHandler = new DataHandler(platform);
+        decimalFormat = new DecimalFormat("#");
+        decimalFormat.setMaximumFractionDigits(3);
+        eventLoop.post(() -> dispatcher.register(this, platform.filesDir));
+    }
+
+    /**
+     * Record all the following session calls to a {@link KavaTrace} file.
+     *
+     * @param traceWriter - trace writer, closed when the session is destroyed.
+     */
+    void setTraceWriter(KavaTraceWriter traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    void onUpdateConfig(KavaAnalyticsConfig pluginConfig) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.CONFIG).putString(KavaAnalyticsConfigCodec.getInstance().toJson(pluginConfig));
+        }
+        this.pluginConfig = pluginConfig;
+        if (!progressMilestones.isSameConfig(pluginConfig.getProgressMilestones(), pluginConfig.getProgressMilestonesSeconds())) {
+            ProgressMilestones updatedMilestones = new ProgressMilestones(pluginConfig.getProgressMilestones(), pluginConfig.getProgressMilestonesSeconds());
+            updatedMilestones.carryOver(progressMilestones, lastEvaluatedPosition);
+            progressMilestones = updatedMilestones;
+        }
+        playheadEvaluationInterval = pluginConfig.getPlayheadEvaluationInterval();
+        dataHandler.onUpdateConfig(pluginConfig);
+        updateViewEventTimings();
+    }
+
+    /**
+     * @param media        - new media entry.
+     * @param sessionId    - player session id.
+     * @param targetBuffer - max player buffer in seconds, or -1 if not available.
+     */
+    void onUpdateMedia(KavaMedia media, String sessionId, double targetBuffer) {
+        if (traceWriter != null) {
+            traceMedia(media, sessionId, targetBuffer);
+        }
+        this.media = media;
+        isLiveMedia = false;
+        clearViewTimer();
+        viewTimer = new ViewTimer();
+        viewTimer.setViewEventTrigger(viewEventTrigger);
+        updateViewEventTimings();
+        dataHandler.onUpdateMedia(populateEntryId(), sessionId, targetBuffer);
+        //Errors of the previous sessions are deduplicated by the dispatcher, for its window only.
+        reportedErrors.clear();
+        resetFlags();
+    }
+
+    void onBuffering() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.BUFFERING);
+        }
+        //Content buffering behind an ad is not seen by the user.
+        if (isAdPlaying) {
+            isBufferingBehindAd = true;
+            return;
+        }
+        startBuffering();
+    }
+
+    void onReady() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.READY);
+        }
+        if (isBufferingBehindAd) {
+            // Its BUFFERING was not counted.
+            isBufferingBehindAd = false;
+            return;
+        }
+        isBuffering = false;
+        dataHandler.handleBufferingEnd();
+        if (isBufferingStart) {
+            sendAnalyticsEvent(KavaEvents.BUFFER_END);
+            isBufferingStart = false;
+        }
+    }
+
+    /**
+     * @param isLive - true if the player reports the media as live.
+     */
+    void onCanPlay(boolean isLive) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.CAN_PLAY).putBoolean(isLive);
+        }
+        isLiveMedia = isLive;
+        if (isFirstPlay == null || isFirstPlay) {
+            dataHandler.handleCanPlay();
+        }
+    }
+
+    void onLoadedMetadata() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.LOADED_METADATA);
+        }
+        if (!isImpressionSent) {
+            sendAnalyticsEvent(KavaEvents.IMPRESSION);
+            dataHandler.handleLoadedMetaData();
+            if (isAutoPlay) {
+                sendAnalyticsEvent(KavaEvents.PLAY_REQUEST);
+                isAutoPlay = false;
+            }
+            isImpressionSent = true;
+        }
+    }
+
+    void onPlay() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PLAY);
+        }
+        if (isFirstPlay == null) {
+            dataHandler.handleFirstPlay();
+        }
+
+        if (isImpressionSent && (isFirstPlay == null || !isPaused)) {
+            sendAnalyticsEvent(KavaEvents.PLAY_REQUEST);
+        } else {
+            isAutoPlay = true;
+        }
+        if (isFirstPlay == null) {
+            isFirstPlay = true;
+        }
+    }
+
+    void onPause() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PAUSE);
+        }
+        setIsPaused(true);
+        sendAnalyticsEvent(KavaEvents.PAUSE);
+    }
+
+    void onPlaybackRateChanged(float rate) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PLAYBACK_RATE).putFloat(rate);
+        }
+        dataHandler.handlePlaybackSpeed(rate);
+        sendAnalyticsEvent(KavaEvents.SPEED);
+    }
+
+    void onPlaying() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PLAYING);
+        }
+        if (isAdPlaying) {
+            // Content is back, the end of the ad was missed.
+            endAd();
+        }
+        if (isFirstPlay == null || isFirstPlay) {
+            isFirstPlay = false;
+            sendAnalyticsEvent(KavaEvents.PLAY);
+            sendAnalyticsEvent(KavaEvents.VIEW);
+            startViewTimer();
+        } else {
+            if (isPaused && !isEnded) {
+                sendAnalyticsEvent(KavaEvents.RESUME);
+            }
+        }
+        isEnded = false; // needed in order to prevent sending RESUME event after REPLAY.
+        setIsPaused(false);
+    }
+
+    /**
+     * @param targetPosition - seek target position in ms.
+     */
+    void onSeeking(long targetPosition) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.SEEKING).putLong(targetPosition);
+        }
+        if ((isFirstPlay == null || isFirstPlay) && isLive()) {
+            return;
+        }
+        dataHandler.handleSeek(targetPosition);
+        sendAnalyticsEvent(KavaEvents.SEEK);
+    }
+
+    void onReplay() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.REPLAY);
+        }
+        sendAnalyticsEvent(KavaEvents.REPLAY);
+    }
+
+    void onEnded() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.ENDED);
+        }
+        if (!isLive()) {
+            maybeSentPlayerReachedEvent(true);
+            if (!playReached100) {
+                playReached100 = true;
+                sendAnalyticsEvent(KavaEvents.PLAY_REACHED_100_PERCENT);
+            }
+        }
+
+        isEnded = true;
+        setIsPaused(true);
+    }
+
+    /**
+     * First frame of an ad. Until the ad ends its time is kept out of the content join, buffer and play time.
+     */
+    void onAdStarted() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AD_STARTED);
+        }
+        // The ad covers the content, its buffering is over for the user.
+        if (isBuffering) {
+            isBuffering = false;
+            isBufferingBehindAd = true;
+            dataHandler.handleBufferingEnd();
+        }
+        if (isBufferingStart) {
+            sendAnalyticsEvent(KavaEvents.BUFFER_END);
+            isBufferingStart = false;
+        }
+        isAdPlaying = true;
+        dataHandler.handleAdStarted(!isPaused);
+    }
+
+    /**
+     * Ad completed or was skipped.
+     */
+    void onAdCompleted() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AD_COMPLETED);
+        }
+        endAd();
+    }
+
+    void onAdBufferStart() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AD_BUFFER_START);
+        }
+        if (isAdPlaying) {
+            dataHandler.handleAdBufferingStart();
+        }
+    }
+
+    void onAdBufferEnd() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AD_BUFFER_END);
+        }
+        if (isAdPlaying) {
+            dataHandler.handleAdBufferingEnd();
+        }
+    }
+
+    /**
+     * Ad error. Reported by the ads plugin, the content playback goes on, so it is not a Kava ERROR.
+     */
+    void onAdError() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AD_ERROR);
+        }
+        endAd();
+    }
+
+    private void endAd() {
+        if (isAdPlaying) {
+            isAdPlaying = false;
+            dataHandler.handleAdEnded();
+        }
+        // The content is still buffering, now in front of the user.
+        if (isBufferingBehindAd) {
+            isBufferingBehindAd = false;
+            startBuffering();
+        }
+    }
+
+    private void startBuffering() {
+        isBuffering = true;
+        //We should start count buffering time only after IMPRESSION was sent.
+        if (isImpressionSent) {
+            dataHandler.handleBufferingStart();
+            sendAnalyticsEvent(KavaEvents.BUFFER_START);
+            isBufferingStart = true;
+        }
+    }
+
+    /**
+     * @param videoBitrate - video bitrate reported by the player playback info.
+     */
+    void onPlaybackInfoBitrate(long videoBitrate) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PLAYBACK_INFO).putLong(videoBitrate);
+        }
+        if (dataHandler.handlePlaybackInfoBitrate(videoBitrate)) {
+            sendAnalyticsEvent(KavaEvents.FLAVOR_SWITCHED);
+        }
+    }
+
+    void onVideoTrackChanged(long bitrate) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.VIDEO_TRACK_CHANGED).putLong(bitrate);
+        }
+        dataHandler.handleVideoTrackChanged(bitrate);
+        sendAnalyticsEvent(KavaEvents.SOURCE_SELECTED);
+    }
+
+    void onAudioTrackChanged(String language) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.AUDIO_TRACK_CHANGED).putString(language);
+        }
+        dataHandler.handleAudioLanguage(language);
+        sendAnalyticsEvent(KavaEvents.AUDIO_SELECTED);
+    }
+
+    void onTextTrackChanged(String language) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.TEXT_TRACK_CHANGED).putString(language);
+        }
+        dataHandler.handleCaptionLanguage(language);
+        sendAnalyticsEvent(KavaEvents.CAPTIONS);
+    }
+
+    /**
+     * @param deliveryType  - delivery type of the selected source, see {@link DataHandler.StreamFormat}.
+     * @param isLocalSource - true if the selected source is a local file, kept in the trace only: the session is
+     *                      summarized by the network state, not by the source.
+     */
+    void onSourceSelected(String deliveryType, boolean isLocalSource) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.SOURCE_SELECTED).putString(deliveryType).putBoolean(isLocalSource);
+        }
+        dataHandler.handleSourceSelected(deliveryType);
+    }
+
+    /**
+     * @param audioLanguage   - language of the default audio track, null if there is none.
+     * @param captionLanguage - language of the default text track, null if there is none.
+     */
+    void onTracksAvailable(String audioLanguage, String captionLanguage) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.TRACKS_AVAILABLE).putString(audioLanguage).putString(captionLanguage);
+        }
+        if (audioLanguage != null) {
+            dataHandler.handleAudioLanguage(audioLanguage);
+        }
+        if (captionLanguage != null) {
+            dataHandler.handleCaptionLanguage(captionLanguage);
+        }
+    }
+
+    /**
+     * @param segmentType  - one of the SEGMENT_ constants.
+     * @param bytesLoaded  - size of the loaded segment.
+     * @param loadDuration - load time of the segment in ms.
+     */
+    void onBytesLoaded(int segmentType, long bytesLoaded, long loadDuration) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.BYTES_LOADED).putLong(segmentType).putLong(bytesLoaded).putLong(loadDuration);
+        }
+        switch (segmentType) {
+            case SEGMENT_VIDEO:
+                dataHandler.handleSegmentDownloadTime(bytesLoaded, loadDuration);
+                break;
+            case SEGMENT_AUDIO:
+                dataHandler.handleAudioSegmentDownloadTime(bytesLoaded, loadDuration);
+                break;
+            case SEGMENT_TEXT:
+                dataHandler.handleTextSegmentDownloadTime(bytesLoaded, loadDuration);
+                break;
+            case SEGMENT_MANIFEST:
+                dataHandler.handleManifestDownloadTime(bytesLoaded, loadDuration);
+                break;
+        }
+    }
+
+    /**
+     * @param frameValue - value of the live stream ID3 TEXT frame, e.g. {"timestamp":1573049629312,"sequenceId":"32"}.
+     */
+    void onId3TextFrame(String frameValue) {
+        if (frameValue == null) {
+            return;
+        }
+        switch (id3TextFrameScanner.scan(frameValue)) {
+            case Id3TextFrameScanner.SEQUENCE_ID_CHANGED:
+                onSequenceId(id3TextFrameScanner.getSequenceId());
+                break;
+            case Id3TextFrameScanner.SEQUENCE_ID_MISSING:
+                log.e("Failed to parse the sequenceId from TEXT ID3 frame");
+                break;
+            default:
+                // Same sequenceId as the previous segment, nothing to report.
+                break;
+        }
+    }
+
+    void onSequenceId(String sequenceId) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.SEQUENCE_ID).putString(sequenceId);
+        }
+        dataHandler.handleSequenceId(sequenceId);
+    }
+
+    void onConnectionAcquired(long connectDurationMs) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.CONNECTION_ACQUIRED).putLong(connectDurationMs);
+        }
+        dataHandler.handleConnectionAcquired(connectDurationMs);
+    }
+
+    /**
+     * An error already reported by this session, or recently by any session, is reported with the short form
+     * of its errorDetails.
+     *
+     * @param errorCode        - error code.
+     * @param errorDetails     - error details, see {@link DataHandler#buildErrorDetails(String, String, Throwable, String)}.
+     * @param errorFingerprint - error fingerprint, see {@link ErrorFingerprint}, or ErrorFingerprint.NONE.
+     * @param isPlayerError    - true for player errors, false for ad errors and errors of unknown type.
+     * @param position         - player position at the moment of the error.
+     */
+    void onError(int errorCode, String errorDetails, long errorFingerprint, boolean isPlayerError, long position) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.ERROR).putLong(errorCode).putString(errorDetails).putLong(errorFingerprint).putBoolean(isPlayerError).putLong(position);
+        }
+        if (errorFingerprint != ErrorFingerprint.NONE) {
+            long now = KavaScheduler.elapsedRealtimeMs();
+            ReportedErrors recentErrors = dispatcher.getReportedErrors();
+            if (reportedErrors.isReported(errorFingerprint, now) || recentErrors.isReported(errorFingerprint, now)) {
+                errorDetails = DataHandler.buildRepeatedErrorDetails(errorDetails);
+            }
+            reportedErrors.onReported(errorFingerprint, now);
+            recentErrors.onReported(errorFingerprint, now);
+        }
+        if (isPlayerError) {
+            dataHandler.handlePlayerError(errorCode, errorDetails, errorFingerprint, isFirstPlay, position);
+        } else {
+            dataHandler.handleAdError(errorCode, errorDetails, errorFingerprint);
+        }
+        sendAnalyticsEvent(KavaEvents.ERROR);
+        if (viewTimer != null) {
+            viewTimer.setViewEventTrigger(null);
+            viewTimer.stop();
+        }
+    }
+
+    /**
+     * @param position       - player position in ms.
+     * @param bufferPosition - player buffered position in ms.
+     * @param duration       - media duration in ms.
+     */
+    void onPlayheadUpdated(long position, long bufferPosition, long duration) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.PLAYHEAD_UPDATED).putLong(position).putLong(bufferPosition).putLong(duration);
+        }
+        hasPlayhead = true;
+        playheadPosition = position;
+        playheadDuration = duration;
+        dataHandler.handlePlayheadUpdated(position, bufferPosition, duration);
+        if (!isLive()) {
+            maybeSentPlayerReachedEvent(false);
+        }
+    }
+
+    /**
+     * Player is destroyed during onApplicationPaused call, so its values are read by the adapter right away.
+     * The time played since the last VIEW event is reported now, so it rides the background flush together with
+     * the PAUSE event instead of waiting in the view timer of a process that may not be resumed.
+     */
+    void onApplicationPaused(long backgroundTimeStamp, long position, long bufferedPosition, long duration) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.APPLICATION_PAUSED).putLong(position).putLong(bufferedPosition).putLong(duration);
+            traceWriter.flush();
+        }
+        applicationBackgroundTimeStamp = backgroundTimeStamp;
+        dataHandler.onApplicationPaused(getMediaEntryType(), position, bufferedPosition, duration);
+        dataHandler.saveOfflineSessionSummary();
+        if (viewTimer != null) {
+            long playedTime = viewTimer.takePlayedTime();
+            if (playedTime > 0) {
+                viewEventTrigger.onTriggerViewEvent(playedTime);
+            }
+            viewTimer.setViewEventTrigger(null);
+            viewTimer.stop();
+        }
+        dispatcher.onApplicationPaused();
+    }
+
+    void onApplicationResumed(long foregroundTimeStamp) {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.APPLICATION_RESUMED);
+        }
+        long currentTimeInSeconds = foregroundTimeStamp - applicationBackgroundTimeStamp;
+        if (currentTimeInSeconds >= viewEventIdleTimeout) {
+            dataHandler.handleViewEventSessionClosed();
+        }
+        dataHandler.setOnApplicationResumed();
+        startViewTimer();
+        dispatcher.onApplicationResumed();
+    }
+
+    void destroy() {
+        if (traceWriter != null) {
+            traceWriter.record(KavaTrace.DESTROY);
+            traceWriter.close();
+            traceWriter = null;
+        }
+        clearViewTimer();
+        dataHandler.clearSessionState();
+        dataHandler.saveOfflineSessionSummary();
+        dispatcher.unregister(this);
+        dispatcher.flushPending();
+    }
+
+    private void traceMedia(KavaMedia media, String sessionId, double targetBuffer) {
+        traceWriter.record(KavaTrace.MEDIA).putBoolean(media != null);
+        if (media != null) {
+            traceWriter.putString(media.id).putLong(media.metadata.size());
+            for (Map.Entry<String, String> entry : media.metadata.entrySet()) {
+                traceWriter.putString(entry.getKey()).putString(entry.getValue());
+            }
+            KavaMediaEntryType mediaEntryType = media.mediaEntryType != null ? media.mediaEntryType : KavaMediaEntryType.Unknown;
+            traceWriter.putLong(mediaEntryType.ordinal());
+        }
+        traceWriter.putString(sessionId).putDouble(targetBuffer);
+    }
+
+    private void startViewTimer() {
+        if (viewTimer != null) {
+            viewTimer.setViewEventTrigger(viewEventTrigger);
+            viewTimer.start();
+        }
+    }
+
+    private void clearViewTimer() {
+        if (viewTimer != null) {
+            viewTimer.setViewEventTrigger(null);
+            viewTimer.stop();
+            viewTimer = null;
+        }
+    }
+
+    private KavaMediaEntryType getMediaEntryType() {
+        return media != null ? media.mediaEntryType : KavaMediaEntryType.Unknown;
+    }
+
+    private boolean isLive() {
+        return isLiveMedia || (media != null && media.isLiveEntry());
+    }
+
+    private void sendAnalyticsEvent(final KavaEvents event) {
+
+        if (isInputInvalid())
+            return;
+
+        if (isFatalError) {
+            return;
+        }
+        if (event == KavaEvents.ERROR) {
+            isFatalError = true;
+        }
+
+        if (dataHandler.isOfflineMode()) {
+            dataHandler.handleOfflineEvent(event);
+            recordFlightEvent(event, -1, dataHandler.getActualBitrate(), KavaFlightRecorder.STATUS_OFFLINE);
+            return;
+        }
+
+        if (!dataHandler.isSampled(event)) {
+            dataHandler.handleUnsampledEvent(event);
+            return;
+        }
+
+        if (event == KavaEvents.IMPRESSION) {
+            maybeUploadOfflineSummaries();
+        }
+
+        Map<String, String> params = dataHandler.collectData(event, getMediaEntryType(), isLiveMedia);
+        dispatcher.getMetrics().onEventCreated(event);
+        int eventIndex = dataHandler.getLastEventIndex();
+        recordFlightEvent(event, eventIndex, dataHandler.getActualBitrate(), KavaFlightRecorder.STATUS_CREATED);
+
+        KavaRequest request = KavaRequestFactory.sendAnalyticsEvent(pluginConfig.getBaseUrl(), dataHandler.getUserAgent(), params, event, eventIndex, (kavaRequest, isSuccess, response) -> {
+            onRequestCompleted(kavaRequest, isSuccess, response);
+            eventLoop.post(() -> handleEventResponse(kavaRequest, isSuccess, response));
+        });
+        dispatcher.send(request, event == KavaEvents.VIEW);
+    }
+
+    private void recordFlightEvent(KavaEvents event, int eventIndex, long value, byte status) {
+        long position = hasPlayhead ? playheadPosition : POSITION_UNSET;
+        dispatcher.getFlightRecorder().record(System.identityHashCode(this), event, eventIndex, position, value, status);
+    }
+
+    private void onRequestCompleted(KavaRequest request, boolean isSuccess, String response) {
+        long responseSize = response != null ? response.length() : 0;
+        dispatcher.getMetrics().onRequestCompleted(request.event, isSuccess, request.getLatency(), responseSize);
+    }
+
+    /**
+     * Upload in one request the summaries of all the sessions that were played offline.
+     */
+    private void maybeUploadOfflineSummaries() {
+        String offlineSummaryUrl = pluginConfig.getOfflineSummaryUrl();
+        if (isOfflineUploadInProgress || offlineSummaryUrl == null) {
+            return;
+        }
+
+        final OfflineSummaryStore offlineSummaryStore = dataHandler.getOfflineSummaryStore();
+        final File[] pendingSummaries = offlineSummaryStore.listPending();
+        if (pendingSummaries.length == 0) {
+            return;
+        }
+
+        isOfflineUploadInProgress = true;
+        KavaRequest request = KavaRequestFactory.sendOfflineSummaries(offlineSummaryUrl, dataHandler.getUserAgent(), offlineSummaryStore.toJsonArray(pendingSummaries), (kavaRequest, isSuccess, response) -> {
+            onRequestCompleted(kavaRequest, isSuccess, response);
+            eventLoop.post(() -> {
+                isOfflineUploadInProgress = false;
+                if (isSuccess) {
+                    log.d("Uploaded offline session summaries: " + pendingSummaries.length);
+                    offlineSummaryStore.delete(pendingSummaries);
+                }
+            });
+        });
+        dispatcher.send(request, false);
+    }
+
+    private void handleEventResponse(KavaRequest request, boolean isSuccess, String response) {
+        KavaEvents event = request.event;
+        log.d("onComplete: " + event.name());
+        recordFlightEvent(event, request.eventIndex, request.getLatency(), isSuccess ? KavaFlightRecorder.STATUS_SUCCEEDED : KavaFlightRecorder.STATUS_FAILED);
+        if (response == null) {
+            log.w("Kava event response is null");
+            return;
+        }
+
+        JsonObject jsonObject = parseResponse(response);
+        if (jsonObject != null) {
+            //If response is in Json format, handle it and update required values.
+            double serverTime = optDouble(jsonObject, "time");
+            updateServerClockOffset(request, serverTime);
+            dataHandler.setSessionStartTime(decimalFormat.format(serverTime));
+            if (viewTimer != null) {
+                viewTimer.setViewEventsEnabled(optBoolean(jsonObject, "viewEventsEnabled", true));
+            }
+            updateServerViewEventTimings(jsonObject);
+        } else {
+            //Otherwise we will treat response as String format.
+            dataHandler.setSessionStartTime(response);
+            try {
+                updateServerClockOffset(request, Double.parseDouble(response));
+            } catch (NumberFormatException formatException) {
+                log.w("Kava event response has no server time");
+            }
+        }
+
+        listener.onAnalyticsReport(event.name());
+        if (event == KavaEvents.VIEW) {
+            listener.onMetricsReport(dispatcher.getMetrics());
+        }
+    }
+
+    /**
+     * @param response - trackEvent response body.
+     * @return - response Json object, or null if the response is in plain String format.
+     */
+    static JsonObject parseResponse(String response) {
+        try {
+            JsonElement responseJson = JsonParser.parseString(response);
+            return responseJson.isJsonObject() ? responseJson.getAsJsonObject() : null;
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    static double optDouble(JsonObject jsonObject, String key) {
+        JsonElement element = jsonObject.get(key);
+        try {
+            return (element != null && element.isJsonPrimitive()) ? element.getAsDouble() : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static int optInt(JsonObject jsonObject, String key, int fallback) {
+        JsonElement element = jsonObject.get(key);
+        try {
+            return (element != null && element.isJsonPrimitive()) ? element.getAsInt() : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    static boolean optBoolean(JsonObject jsonObject, String key, boolean fallback) {
+        JsonElement element = jsonObject.get(key);
+        return (element != null && element.isJsonPrimitive()) ? element.getAsBoolean() : fallback;
+    }
+
+    /**
+     * @param request    - completed request.
+     * @param serverTime - server time from the response, in seconds.
+     */
+    private void updateServerClockOffset(KavaRequest request, double serverTime) {
+        if (Double.isNaN(serverTime) || serverTime <= 0) {
+            return;
+        }
+        dispatcher.onServerTime(request, (long) (serverTime * DataHandler.MILLISECONDS_MULTIPLIER_FLOAT));
+        dataHandler.setServerClockOffset(dispatcher.getClockOffsetEstimator().getClockOffset());
+    }
+
+    private void updateServerViewEventTimings(JsonObject response) {
+        long viewEventInterval = TimeUnit.SECONDS.toMillis(optInt(response, "viewEventInterval", 0));
+        long maxViewEventInterval = TimeUnit.SECONDS.toMillis(optInt(response, "maxViewEventInterval", 0));
+        long viewEventIdleTimeout = TimeUnit.SECONDS.toMillis(optInt(response, "viewEventIdleTimeout", 0));
+        if (viewEventInterval != serverViewEventInterval || maxViewEventInterval != serverMaxViewEventInterval || viewEventIdleTimeout != serverViewEventIdleTimeout) {
+            serverViewEventInterval = viewEventInterval;
+            serverMaxViewEventInterval = maxViewEventInterval;
+            serverViewEventIdleTimeout = viewEventIdleTimeout;
+            updateViewEventTimings();
+        }
+    }
+
+    /**
+     * Apply the VIEW event interval and idle timeout. Server values take precedence over the config ones.
+     * On metered or cellular networks the interval is stretched, up to the server maxViewEventInterval.
+     */
+    private void updateViewEventTimings() {
+        if (pluginConfig == null) {
+            return;
+        }
+
+        viewEventIdleTimeout = serverViewEventIdleTimeout > 0 ? serverViewEventIdleTimeout : TimeUnit.SECONDS.toMillis(pluginConfig.getViewEventIdleTimeout());
+        long viewEventInterval = serverViewEventInterval > 0 ? serverViewEventInterval : TimeUnit.SECONDS.toMillis(pluginConfig.getViewEventInterval());
+        if (dataHandler.isMeteredNetwork()) {
+            long meteredViewEventInterval = pluginConfig.getMeteredViewEventInterval() > 0 ? TimeUnit.SECONDS.toMillis(pluginConfig.getMeteredViewEventInterval()) : serverMaxViewEventInterval;
+            if (serverMaxViewEventInterval > 0) {
+                meteredViewEventInterval = Math.min(meteredViewEventInterval, serverMaxViewEventInterval);
+            }
+            viewEventInterval = Math.max(viewEventInterval, meteredViewEventInterval);
+        }
+        // Next VIEW event must reach the server well before it closes the session as idle.
+        viewEventInterval = Math.max(MIN_VIEW_EVENT_INTERVAL_MS, Math.min(viewEventInterval, viewEventIdleTimeout / 2));
+
+        dataHandler.setViewEventIdleTimeout(viewEventIdleTimeout);
+        if (viewTimer != null) {
+            viewTimer.setViewEventInterval(viewEventInterval);
+            viewTimer.setIdleTimeout(viewEventIdleTimeout);
+        }
+    }
+
+    private boolean isInputInvalid() {
+        if (media == null) {
+            return true;
+        }
+
+        if (!isValidEntryId()) {
+            if (pluginConfig.getPartnerId() == null && pluginConfig.getEntryId() == null) {
+                pluginConfig.setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID);
+                pluginConfig.setEntryId(KavaAnalyticsConfig.DEFAULT_KAVA_ENTRY_ID);
+                dataHandler.updatePartnerAndEntryId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID, KavaAnalyticsConfig.DEFAULT_KAVA_ENTRY_ID);
+            } else {
+                return true;
+            }
+        }
+
+        if (!pluginConfig.isPartnerIdValid()) {
+            int ovpPartnerId = getOvpPartnerId();
+            String entryId = populateEntryId();
+            if (ovpPartnerId > 0 && !isEmpty(entryId)) {
+                log.d("Getting ovpPartnerId from metadata");
+                pluginConfig.setPartnerId(ovpPartnerId);
+                pluginConfig.setEntryId(entryId);
+                dataHandler.updatePartnerAndEntryId(ovpPartnerId, entryId);
+                return false;
+            }
+
+            log.w("Can not send analytics event. Mandatory field partnerId is missing");
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isValidEntryId() {
+
+        if (media == null) {
+            return false;
+        }
+
+        boolean mediaEntryValid = true;
+        if (media.id == null) {
+            log.w("Can not send analytics event. Mandatory field entryId is missing");
+            mediaEntryValid = false;
+        } else {
+            // for OTT assetId is not valid for Kava
+            mediaEntryValid = !isDigitsOnly(media.id);
+        }
+
+        boolean metadataVaild = true;
+        if ((pluginConfig == null || isEmpty(pluginConfig.getEntryId())) && !isEntryIdInMetadata()) {
+            log.w("Can not send analytics event. Mandatory field entryId is missing");
+            metadataVaild = false;
+        }
+
+        return mediaEntryValid || metadataVaild;
+    }
+
+    private boolean isEntryIdInMetadata() {
+        return media != null && !isEmpty(media.metadata.get("entryId"));
+    }
+
+    private String populateEntryId() {
+
+        String kavaEntryId = null;
+        if (pluginConfig != null && pluginConfig.getEntryId() != null) {
+            kavaEntryId = pluginConfig.getEntryId();
+        } else if (media != null && media.metadata.containsKey("entryId")) {
+            kavaEntryId = media.metadata.get("entryId");
+        } else if (media != null) {
+            kavaEntryId = media.id;
+        }
+        return kavaEntryId;
+    }
+
+    private int getOvpPartnerId() {
+        if (media == null) {
+            return 0;
+        }
+
+        String partnerId = media.metadata.get("kavaPartnerId");
+        return (!isEmpty(partnerId) && isDigitsOnly(partnerId)) ? Integer.parseInt(partnerId) : 0;
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.length() == 0;
+    }
+
+    /**
+     * Same as android.text.TextUtils.isDigitsOnly(), true for an empty string.
+     */
+    private static boolean isDigitsOnly(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param isEnded - true to check the milestones regardless of the playhead evaluation interval.
+     */
+    private void maybeSentPlayerReachedEvent(boolean isEnded) {
+        if (!hasPlayhead || playheadPosition < 0) {
+            return;
+        }
+        if (!isEnded && playheadEvaluationInterval > 0 && lastEvaluatedPosition != POSITION_UNSET
+                && playheadPosition >= lastEvaluatedPosition && playheadPosition - lastEvaluatedPosition < playheadEvaluationInterval) {
+            return;
+        }
+        lastEvaluatedPosition = playheadPosition;
+
+        progressMilestones.setDuration(playheadDuration);
+        if (!progressMilestones.isDue(playheadPosition)) {
+            return;
+        }
+        int milestone;
+        while ((milestone = progressMilestones.poll(playheadPosition)) != ProgressMilestones.NONE) {
+            KavaEvents event = progressMilestones.getEvent(milestone);
+            if (event != null) {
+                sendAnalyticsEvent(event);
+            } else {
+                listener.onProgressMilestone(progressMilestones.getValue(milestone), progressMilestones.isPercent(milestone));
+            }
+        }
+    }
+
+    private void setIsPaused(boolean isPaused) {
+        this.isPaused = isPaused;
+        if (viewTimer != null) {
+            if (isPaused) {
+                viewTimer.pause();
+            } else {
+                viewTimer.resume();
+            }
+        }
+    }
+
+    private void resetFlags() {
+        setIsPaused(true);
+        isEnded = false;
+        isFirstPlay = null;
+        isLiveMedia = false;
+        isFatalError = false;
+        isImpressionSent = false;
+        isBuffering = false;
+        isBufferingBehindAd = false;
+        isBufferingStart = false;
+        isAdPlaying = false;
+        id3TextFrameScanner.reset();
+        progressMilestones.reset();
+        lastEvaluatedPosition = POSITION_UNSET;
+        playReached100 = false;
+        hasPlayhead = false;
+        dataHandler.clearPlayhead();
+    }
+
+    private ViewTimer.ViewEventTrigger initViewTrigger() {
+        return new ViewTimer.ViewEventTrigger() {
+            @Override
+            public void onTriggerViewEvent(long playedTime) {
+                //When we send VIEW event, while player is buffering we should
+                //manually update buffer time. So we will simulate handleBufferEnd()
+                if (isBuffering) {
+                    dataHandler.handleBufferingEnd();
+                }
+                dataHandler.handleViewEventPlayedTime(playedTime);
+                sendAnalyticsEvent(KavaEvents.VIEW);
+                //Network type may have changed since the last VIEW event.
+                updateViewEventTimings();
+            }
+
+            @Override
+            public void onResetViewEvent() {
+                dataHandler.handleViewEventSessionClosed();
+            }
+        };
+    }
+}
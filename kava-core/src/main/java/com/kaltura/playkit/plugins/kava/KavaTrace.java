@@ -0,0 +1,71 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Trace file format of the player events a {@link KavaSession} consumes, written by {@link KavaTraceWriter}.
+ * <p>
+ * The file starts with MAGIC and VERSION (4 bytes each), followed by the records. Every record is the
+ * record type byte, the time passed since the previous record in ms and the arguments of the session call,
+ * in the order of the call parameters. Integers are zigzag varints, floats and doubles are their raw bits,
+ * booleans a single byte and strings a presence byte followed by modified UTF-8 (DataOutput.writeUTF).
+ */
+final class KavaTrace {
+
+    static final int MAGIC = 0x4B565452; // "KVTR"
+    // Version 2 added the error fingerprint to ERROR, version 3 the ad records.
+    static final int VERSION = 3;
+
+    static final String FILE_EXTENSION = ".kvtrace";
+
+    // KavaAnalyticsConfig as Json.
+    static final byte CONFIG = 1;
+    // Has media, then if present media id, metadata size and key/value pairs, KavaMediaEntryType ordinal. Then sessionId, targetBuffer.
+    static final byte MEDIA = 2;
+    static final byte BUFFERING = 3;
+    static final byte READY = 4;
+    // isLive.
+    static final byte CAN_PLAY = 5;
+    static final byte LOADED_METADATA = 6;
+    static final byte PLAY = 7;
+    static final byte PAUSE = 8;
+    // Playback rate.
+    static final byte PLAYBACK_RATE = 9;
+    static final byte PLAYING = 10;
+    // Target position.
+    static final byte SEEKING = 11;
+    static final byte REPLAY = 12;
+    static final byte ENDED = 13;
+    // Delivery type, isLocalSource.
+    static final byte SOURCE_SELECTED = 14;
+    // Video bitrate.
+    static final byte PLAYBACK_INFO = 15;
+    // Default audio language, default caption language.
+    static final byte TRACKS_AVAILABLE = 16;
+    // Bitrate.
+    static final byte VIDEO_TRACK_CHANGED = 17;
+    // Language.
+    static final byte AUDIO_TRACK_CHANGED = 18;
+    // Language.
+    static final byte TEXT_TRACK_CHANGED = 19;
+    // Segment type, bytes loaded, load duration.
+    static final byte BYTES_LOADED = 20;
+    // Sequence id.
+    static final byte SEQUENCE_ID = 21;
+    // Connect duration.
+    static final byte CONNECTION_ACQUIRED = 22;
+    // Error code, error details, error fingerprint, isPlayerError, position.
+    static final byte ERROR = 23;
+    // Position, buffer position, duration.
+    static final byte PLAYHEAD_UPDATED = 24;
+    // Position, buffered position, duration.
+    static final byte APPLICATION_PAUSED = 25;
+    static final byte APPLICATION_RESUMED = 26;
+    static final byte DESTROY = 27;
+    static final byte AD_STARTED = 28;
+    static final byte AD_COMPLETED = 29;
+    static final byte AD_BUFFER_START = 30;
+    static final byte AD_BUFFER_END = 31;
+    static final byte AD_ERROR = 32;
+
+    private KavaTrace() {
+    }
+}
@@ -0,0 +1,159 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the player events a {@link KavaSession} consumes to a {@link KavaTrace} file, so a problem session
+ * can be replayed off the device. Any write failure stops the trace, never the session.
+ * Must be used only from the Kava analytics thread.
+ */
+class KavaTraceWriter {
+
+    private static final KavaLog log = KavaLog.get(KavaTraceWriter.class.getSimpleName());
+
+    private final KavaClock clock;
+    private final File file;
+    private DataOutputStream output;
+    private long lastRecordTimestamp;
+
+    /**
+     * @param clock - time source of the record timestamps.
+     * @param file  - trace file, overwritten if exists.
+     */
+    KavaTraceWriter(KavaClock clock, File file) {
+        this.clock = clock;
+        this.file = file;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            output.writeInt(KavaTrace.MAGIC);
+            output.writeInt(KavaTrace.VERSION);
+            lastRecordTimestamp = clock.elapsedRealtimeMs();
+        } catch (IOException e) {
+            onWriteFailed(e);
+        }
+    }
+
+    /**
+     * Start a new record, its arguments are appended with the put methods.
+     *
+     * @param type - one of the {@link KavaTrace} record types.
+     */
+    KavaTraceWriter record(byte type) {
+        long now = clock.elapsedRealtimeMs();
+        long elapsed = Math.max(0, now - lastRecordTimestamp);
+        lastRecordTimestamp = now;
+        if (output != null) {
+            try {
+                output.writeByte(type);
+                writeVarLong(elapsed);
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    KavaTraceWriter putLong(long value) {
+        if (output != null) {
+            try {
+                writeVarLong(value);
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    KavaTraceWriter putBoolean(boolean value) {
+        if (output != null) {
+            try {
+                output.writeBoolean(value);
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    KavaTraceWriter putFloat(float value) {
+        if (output != null) {
+            try {
+                output.writeFloat(value);
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    KavaTraceWriter putDouble(double value) {
+        if (output != null) {
+            try {
+                output.writeDouble(value);
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param value - string, may be null.
+     */
+    KavaTraceWriter putString(String value) {
+        if (output != null) {
+            try {
+                output.writeBoolean(value != null);
+                if (value != null) {
+                    output.writeUTF(value);
+                }
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Push the buffered records to the file, the process may be killed at any moment after this point.
+     */
+    void flush() {
+        if (output != null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                onWriteFailed(e);
+            }
+        }
+    }
+
+    void close() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                log.w("Failed to close Kava trace " + file.getName() + ": " + e.getMessage());
+            }
+            output = null;
+        }
+    }
+
+    // Zigzag, so the small negative values (unset positions, error codes) stay short.
+    private void writeVarLong(long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            output.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        output.writeByte((int) zigzag);
+    }
+
+    private void onWriteFailed(IOException e) {
+        log.w("Kava trace " + file.getName() + " stopped: " + e.getMessage());
+        close();
+    }
+}
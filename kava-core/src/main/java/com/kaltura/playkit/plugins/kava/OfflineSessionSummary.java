@@ -0,0 +1,112 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Compact roll up of a view session that was played without reporting (downloaded media or no network).
+ * One summary is kept per entry session and uploaded later instead of replaying every single event.
+ */
+class OfflineSessionSummary {
+
+    final String entryId;
+    final String partnerId;
+    final String sessionId;
+    final String deliveryType;
+
+    private long startTimestamp;
+    private long lastEventTimestamp;
+    private long playTimeSum;
+    private long bufferTimeSum;
+    private long averageBitrate;
+    private int maxPlayReachedPercent;
+    private int eventsCount;
+    private int bufferCount;
+    private int seekCount;
+    private int pauseCount;
+    private int errorCode = -1;
+
+    OfflineSessionSummary(String entryId, String partnerId, String sessionId, String deliveryType) {
+        this.entryId = entryId;
+        this.partnerId = partnerId;
+        this.sessionId = sessionId;
+        this.deliveryType = deliveryType;
+    }
+
+    /**
+     * @param event     - reported Kava event.
+     * @param timestamp - wall clock time of the event in ms.
+     */
+    void onEvent(KavaEvents event, long timestamp) {
+        if (eventsCount == 0) {
+            startTimestamp = timestamp;
+        }
+        lastEventTimestamp = timestamp;
+        eventsCount++;
+
+        switch (event) {
+            case BUFFER_START:
+                bufferCount++;
+                break;
+            case SEEK:
+                seekCount++;
+                break;
+            case PAUSE:
+                pauseCount++;
+                break;
+            case PLAY_REACHED_25_PERCENT:
+                maxPlayReachedPercent = Math.max(maxPlayReachedPercent, 25);
+                break;
+            case PLAY_REACHED_50_PERCENT:
+                maxPlayReachedPercent = Math.max(maxPlayReachedPercent, 50);
+                break;
+            case PLAY_REACHED_75_PERCENT:
+                maxPlayReachedPercent = Math.max(maxPlayReachedPercent, 75);
+                break;
+            case PLAY_REACHED_100_PERCENT:
+                maxPlayReachedPercent = 100;
+                break;
+        }
+    }
+
+    void setPlayTimeSum(long playTimeSum) {
+        this.playTimeSum = playTimeSum;
+    }
+
+    void setBufferTimeSum(long bufferTimeSum) {
+        this.bufferTimeSum = bufferTimeSum;
+    }
+
+    void setAverageBitrate(long averageBitrate) {
+        this.averageBitrate = averageBitrate;
+    }
+
+    void setErrorCode(int errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    boolean isEmpty() {
+        return eventsCount == 0;
+    }
+
+    JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("entryId", entryId);
+        json.addProperty("partnerId", partnerId);
+        json.addProperty("sessionId", sessionId);
+        json.addProperty("deliveryType", deliveryType);
+        json.addProperty("startTime", startTimestamp);
+        json.addProperty("endTime", lastEventTimestamp);
+        json.addProperty("eventsCount", eventsCount);
+        json.addProperty("playTimeSum", playTimeSum / 1000f);
+        json.addProperty("bufferTimeSum", bufferTimeSum / 1000f);
+        json.addProperty("bufferCount", bufferCount);
+        json.addProperty("seekCount", seekCount);
+        json.addProperty("pauseCount", pauseCount);
+        json.addProperty("maxPlayReached", maxPlayReachedPercent);
+        json.addProperty("averageBitrate", averageBitrate);
+        if (errorCode != -1) {
+            json.addProperty("errorCode", errorCode);
+        }
+        return json;
+    }
+}
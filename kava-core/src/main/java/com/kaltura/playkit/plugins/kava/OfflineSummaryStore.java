@@ -0,0 +1,96 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds one record per offline session summary until it is uploaded.
+ * Must be used only from the Kava analytics thread.
+ */
+class OfflineSummaryStore {
+
+    private static final KavaLog log = KavaLog.get(OfflineSummaryStore.class.getSimpleName());
+
+    private static final String DIRECTORY_NAME = "kava_offline";
+    private static final String FILE_SUFFIX = ".summary";
+
+    static final int MAX_PENDING_SUMMARIES = 100;
+
+    private final File directory;
+
+    OfflineSummaryStore(File filesDir) {
+        this.directory = new File(filesDir, DIRECTORY_NAME);
+    }
+
+    /**
+     * Write (or overwrite) the summary record of the session.
+     *
+     * @param summary - session summary.
+     */
+    void save(OfflineSessionSummary summary) {
+        if (summary.isEmpty() || (!directory.exists() && !directory.mkdirs())) {
+            return;
+        }
+
+        File file = new File(directory, Integer.toHexString(String.valueOf(summary.sessionId + summary.entryId).hashCode()) + FILE_SUFFIX);
+        try {
+            KavaFiles.writeFile(file, summary.toJson().toString());
+        } catch (IOException e) {
+            log.w("Failed to save offline session summary: " + e.getMessage());
+        }
+        trim();
+    }
+
+    /**
+     * @return - all the records waiting for upload, oldest first.
+     */
+    File[] listPending() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (first, second) -> {
+            long firstModified = first.lastModified();
+            long secondModified = second.lastModified();
+            return firstModified < secondModified ? -1 : (firstModified == secondModified ? 0 : 1);
+        });
+        return files;
+    }
+
+    /**
+     * @param files - records to read.
+     * @return - JSON array of all the readable records.
+     */
+    String toJsonArray(File[] files) {
+        JsonArray summaries = new JsonArray();
+        for (File file : files) {
+            try {
+                summaries.add(JsonParser.parseString(KavaFiles.readFile(file)).getAsJsonObject());
+            } catch (IOException | JsonParseException | IllegalStateException e) {
+                log.w("Dropping unreadable offline session summary: " + e.getMessage());
+                delete(new File[]{file});
+            }
+        }
+        return summaries.toString();
+    }
+
+    void delete(File[] files) {
+        for (File file : files) {
+            if (!file.delete()) {
+                log.w("Failed to delete offline session summary " + file.getName());
+            }
+        }
+    }
+
+    private void trim() {
+        File[] files = listPending();
+        if (files.length > MAX_PENDING_SUMMARIES) {
+            delete(Arrays.copyOf(files, files.length - MAX_PENDING_SUMMARIES));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the Kava event reports that were not confirmed by the server when the application went to the background,
+ * so they can be sent again once it is resumed or started again.
+ * The records are written to a temporary file that replaces the previous one, so a process killed during a write
+ * leaves the previous snapshot intact.
+ * Must be used only from the Kava analytics thread.
+ */
+class PendingRequestStore {
+
+    private static final KavaLog log = KavaLog.get(PendingRequestStore.class.getSimpleName());
+
+    private static final String DIRECTORY_NAME = "kava_pending";
+    private static final String FILE_NAME = "requests.json";
+    private static final String TEMP_FILE_NAME = "requests.tmp";
+
+    static final int MAX_PENDING_REQUESTS = 100;
+
+    private final File directory;
+    private final File file;
+    private boolean hasPendingRequests;
+
+    PendingRequestStore(File filesDir) {
+        this.directory = new File(filesDir, DIRECTORY_NAME);
+        this.file = new File(directory, FILE_NAME);
+        this.hasPendingRequests = file.exists();
+    }
+
+    /**
+     * Replace the stored records, or delete them if there are none.
+     *
+     * @param requests - event reports not confirmed yet, oldest first.
+     */
+    void save(List<KavaRequest> requests) {
+        if (requests.isEmpty()) {
+            clear();
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+
+        JsonArray records = new JsonArray();
+        for (int i = Math.max(0, requests.size() - MAX_PENDING_REQUESTS); i < requests.size(); i++) {
+            KavaRequest request = requests.get(i);
+            JsonObject record = new JsonObject();
+            record.addProperty("event", request.event.name());
+            record.addProperty("url", request.url);
+            record.addProperty("userAgent", request.headers.get("User-Agent"));
+            record.addProperty("createdTimestamp", request.createdClientTimestamp);
+            record.addProperty("attempts", request.attempts);
+            records.add(record);
+        }
+
+        File tempFile = new File(directory, TEMP_FILE_NAME);
+        try {
+            KavaFiles.writeFile(tempFile, records.toString());
+        } catch (IOException e) {
+            log.w("Failed to save pending Kava requests: " + e.getMessage());
+            return;
+        }
+        if (tempFile.renameTo(file)) {
+            hasPendingRequests = true;
+        } else {
+            log.w("Failed to replace pending Kava requests file");
+        }
+    }
+
+    /**
+     * @param onCompletion - completion listener of the rebuilt requests.
+     * @return - the stored event reports, oldest first. Unreadable records are dropped.
+     */
+    List<KavaRequest> load(KavaRequest.OnCompletion onCompletion) {
+        List<KavaRequest> requests = new ArrayList<>();
+        if (!hasPendingRequests) {
+            return requests;
+        }
+        JsonArray records;
+        try {
+            records = JsonParser.parseString(KavaFiles.readFile(file)).getAsJsonArray();
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            log.w("Dropping unreadable pending Kava requests: " + e.getMessage());
+            return requests;
+        }
+        for (JsonElement element : records) {
+            KavaRequest request = element.isJsonObject() ? readRecord(element.getAsJsonObject(), onCompletion) : null;
+            if (request == null) {
+                log.w("Dropping unreadable pending Kava request: " + element);
+                continue;
+            }
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * @return - the rebuilt request, or null if a field is missing or has a value of the wrong type.
+     */
+    private static KavaRequest readRecord(JsonObject record, KavaRequest.OnCompletion onCompletion) {
+        JsonPrimitive event = getPrimitive(record, "event");
+        JsonPrimitive url = getPrimitive(record, "url");
+        JsonPrimitive createdTimestamp = getPrimitive(record, "createdTimestamp");
+        JsonPrimitive attempts = getPrimitive(record, "attempts");
+        if (event == null || url == null || createdTimestamp == null || !createdTimestamp.isNumber() || attempts == null || !attempts.isNumber()) {
+            return null;
+        }
+        KavaEvents kavaEvent;
+        try {
+            kavaEvent = KavaEvents.valueOf(event.getAsString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        KavaRequest request = new KavaRequest(kavaEvent, -1, KavaRequest.METHOD_GET, url.getAsString(), null, onCompletion);
+        request.createdClientTimestamp = createdTimestamp.getAsLong();
+        request.attempts = attempts.getAsInt();
+        JsonPrimitive userAgent = getPrimitive(record, "userAgent");
+        if (userAgent != null) {
+            request.headers.put("User-Agent", userAgent.getAsString());
+        }
+        return request;
+    }
+
+    private static JsonPrimitive getPrimitive(JsonObject record, String name) {
+        JsonElement value = record.get(name);
+        return value != null && value.isJsonPrimitive() ? value.getAsJsonPrimitive() : null;
+    }
+
+    void clear() {
+        if (hasPendingRequests && file.exists() && !file.delete()) {
+            log.w("Failed to delete pending Kava requests file");
+            return;
+        }
+        hasPendingRequests = false;
+    }
+}
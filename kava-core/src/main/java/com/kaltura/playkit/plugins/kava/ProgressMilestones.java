@@ -0,0 +1,218 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Arrays;
+
+/**
+ * Progress milestones of a VOD playback. The thresholds are computed in ms once per media duration and
+ * kept sorted, so a playhead update costs a single comparison with the next pending threshold.
+ * Must be used only from the Kava analytics thread.
+ */
+final class ProgressMilestones {
+
+    static final int NONE = -1;
+
+    private static final int[] REPORTED_PERCENTS = {25, 50, 75};
+    private static final KavaEvents[] REPORTED_EVENTS = {KavaEvents.PLAY_REACHED_25_PERCENT, KavaEvents.PLAY_REACHED_50_PERCENT, KavaEvents.PLAY_REACHED_75_PERCENT};
+
+    private final int[] configPercents;
+    private final int[] configSeconds;
+
+    // Milestone definitions, the percent milestones first.
+    private final int[] values;
+    private final int percentsCount;
+    private final boolean[] isReached;
+
+    // Milestone indexes sorted by threshold.
+    private final int[] order;
+    private final long[] thresholdsMs;
+    private long durationMs = -1;
+    private int next;
+    private long nextThresholdMs = Long.MAX_VALUE;
+
+    /**
+     * @param percents - extra milestones in percent of the duration, or null.
+     * @param seconds  - milestones at absolute positions in seconds, or null.
+     */
+    ProgressMilestones(int[] percents, int[] seconds) {
+        this.configPercents = percents;
+        this.configSeconds = seconds;
+
+        int[] percentValues = distinct(REPORTED_PERCENTS, percents, 1, 99);
+        int[] secondValues = distinct(null, seconds, 1, Integer.MAX_VALUE);
+        percentsCount = percentValues.length;
+        values = Arrays.copyOf(percentValues, percentValues.length + secondValues.length);
+        System.arraycopy(secondValues, 0, values, percentsCount, secondValues.length);
+        isReached = new boolean[values.length];
+        order = new int[values.length];
+        thresholdsMs = new long[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+    }
+
+    /**
+     * @return - true if the milestones were built from the same config values.
+     */
+    boolean isSameConfig(int[] percents, int[] seconds) {
+        return Arrays.equals(configPercents, percents) && Arrays.equals(configSeconds, seconds);
+    }
+
+    /**
+     * Carry the progress of the milestones this config replaces over, so a config update during the playback
+     * doesn't report them again: the milestones reached before, and the new ones at or before the position,
+     * are marked as reported without being returned by {@link #poll(long)}.
+     *
+     * @param previous   - milestones of the previous config.
+     * @param positionMs - last evaluated playhead position in ms, or less than 0 if there is none.
+     */
+    void carryOver(ProgressMilestones previous, long positionMs) {
+        for (int i = 0; i < values.length; i++) {
+            int previousMilestone = previous.indexOf(values[i], isPercent(i));
+            if (previousMilestone != NONE && previous.isReached[previousMilestone]) {
+                isReached[i] = true;
+            }
+        }
+        if (previous.durationMs == -1 || positionMs < 0) {
+            return;
+        }
+        setDuration(previous.durationMs);
+        while (poll(positionMs) != NONE) {
+            // Marked as reported.
+        }
+    }
+
+    /**
+     * Compute the thresholds of the duration, if it changed. The percent milestones are pending until the duration is known.
+     *
+     * @param durationMs - media duration in ms, 0 or less if not known yet.
+     */
+    void setDuration(long durationMs) {
+        if (durationMs == this.durationMs) {
+            return;
+        }
+        this.durationMs = durationMs;
+        for (int i = 0; i < values.length; i++) {
+            if (i >= percentsCount) {
+                thresholdsMs[i] = values[i] * 1000L;
+            } else if (durationMs > 0) {
+                thresholdsMs[i] = durationMs * values[i] / 100;
+            } else {
+                thresholdsMs[i] = Long.MAX_VALUE;
+            }
+        }
+        // Insertion sort, there are a few milestones and they are mostly sorted already.
+        for (int i = 1; i < order.length; i++) {
+            int milestone = order[i];
+            int j = i - 1;
+            while (j >= 0 && thresholdsMs[order[j]] > thresholdsMs[milestone]) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = milestone;
+        }
+        next = 0;
+        updateNextThreshold();
+    }
+
+    /**
+     * @return - true if the position reached a pending milestone.
+     */
+    boolean isDue(long positionMs) {
+        return positionMs >= nextThresholdMs;
+    }
+
+    /**
+     * Mark the next reached milestone as reported.
+     *
+     * @param positionMs - playhead position in ms.
+     * @return - index of the milestone, or NONE if no pending milestone was reached.
+     */
+    int poll(long positionMs) {
+        if (positionMs < nextThresholdMs) {
+            return NONE;
+        }
+        int milestone = order[next];
+        isReached[milestone] = true;
+        next++;
+        updateNextThreshold();
+        return milestone;
+    }
+
+    /**
+     * @return - the Kava event of the milestone, or null if it is reported only to the application.
+     */
+    KavaEvents getEvent(int milestone) {
+        if (milestone >= percentsCount) {
+            return null;
+        }
+        for (int i = 0; i < REPORTED_PERCENTS.length; i++) {
+            if (REPORTED_PERCENTS[i] == values[milestone]) {
+                return REPORTED_EVENTS[i];
+            }
+        }
+        return null;
+    }
+
+    int getValue(int milestone) {
+        return values[milestone];
+    }
+
+    boolean isPercent(int milestone) {
+        return milestone < percentsCount;
+    }
+
+    /**
+     * Mark all the milestones as pending, for a new media.
+     */
+    void reset() {
+        Arrays.fill(isReached, false);
+        durationMs = -1;
+        next = 0;
+        nextThresholdMs = Long.MAX_VALUE;
+    }
+
+    private int indexOf(int value, boolean isPercent) {
+        int start = isPercent ? 0 : percentsCount;
+        int end = isPercent ? percentsCount : values.length;
+        for (int i = start; i < end; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private void updateNextThreshold() {
+        while (next < order.length && isReached[order[next]]) {
+            next++;
+        }
+        nextThresholdMs = next < order.length ? thresholdsMs[order[next]] : Long.MAX_VALUE;
+    }
+
+    private static int[] distinct(int[] required, int[] extra, int min, int max) {
+        int[] merged = new int[(required != null ? required.length : 0) + (extra != null ? extra.length : 0)];
+        int count = 0;
+        if (required != null) {
+            for (int value : required) {
+                merged[count++] = value;
+            }
+        }
+        if (extra != null) {
+            for (int value : extra) {
+                if (value >= min && value <= max && indexOf(merged, count, value) == -1) {
+                    merged[count++] = value;
+                }
+            }
+        }
+        return Arrays.copyOf(merged, count);
+    }
+
+    private static int indexOf(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
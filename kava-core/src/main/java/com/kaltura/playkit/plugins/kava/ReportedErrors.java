@@ -0,0 +1,66 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * The last reported error fingerprints, see {@link ErrorFingerprint}, so a failure repeating within the window
+ * is reported in a short form. Holds a fixed number of fingerprints, the oldest report is forgotten first.
+ * Must be used only from the Kava analytics thread.
+ */
+class ReportedErrors {
+
+    private static final int CAPACITY = 32;
+
+    private final long windowMs;
+    private final long[] fingerprints = new long[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+    private int count;
+    private int next;
+
+    /**
+     * @param windowMs - time a report is remembered for, Long.MAX_VALUE to remember it until it is pushed out.
+     */
+    ReportedErrors(long windowMs) {
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * @param fingerprint - error fingerprint.
+     * @param nowMs       - current monotonic time in ms.
+     * @return - true if the error was reported within the window.
+     */
+    boolean isReported(long fingerprint, long nowMs) {
+        int index = indexOf(fingerprint);
+        return index != -1 && nowMs - timestamps[index] < windowMs;
+    }
+
+    /**
+     * @param fingerprint - reported error fingerprint.
+     * @param nowMs       - current monotonic time in ms.
+     */
+    void onReported(long fingerprint, long nowMs) {
+        int index = indexOf(fingerprint);
+        if (index == -1) {
+            index = next;
+            next = (next + 1) % CAPACITY;
+            count = Math.min(count + 1, CAPACITY);
+            fingerprints[index] = fingerprint;
+        }
+        timestamps[index] = nowMs;
+    }
+
+    /**
+     * Forgets all the reports.
+     */
+    void clear() {
+        count = 0;
+        next = 0;
+    }
+
+    private int indexOf(long fingerprint) {
+        for (int i = 0; i < count; i++) {
+            if (fingerprints[i] == fingerprint) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,232 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Persists the in progress Kava view session state of a single entry, so a session can be continued
+ * after the process was killed.
+ * The file holds two fixed size slots that are written alternately, each one protected by CRC32.
+ * A torn write can damage only the slot being written, the other one still holds the previous snapshot.
+ * Must be used only from the Kava analytics thread.
+ */
+class SessionStateStore {
+
+    private static final KavaLog log = KavaLog.get(SessionStateStore.class.getSimpleName());
+
+    private static final String DIRECTORY_NAME = "kava";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x4B415641; // "KAVA"
+    private static final int VERSION = 1;
+    private static final int SLOT_SIZE = 512;
+    private static final int SLOTS_COUNT = 2;
+
+    private static final int MAX_SESSION_START_TIME_BYTES = 32;
+    private static final int MAX_SESSION_ID_BYTES = 96;
+    private static final int MAX_ENTRY_ID_BYTES = 64;
+    static final int MAX_BITRATES = 16;
+
+    private final File directory;
+    private final ByteBuffer slotBuffer = ByteBuffer.allocate(SLOT_SIZE);
+    private final CRC32 crc32 = new CRC32();
+    private long lastSequence;
+
+    /**
+     * Snapshot of the session state. Plain holder, reused between writes.
+     */
+    static class SessionState {
+        long savedAtTimestamp;
+        String entryId;
+        String sessionId;
+        String sessionStartTime;
+        int eventIndex;
+        long playTimeSum;
+        long totalBufferTimePerEntry;
+        int bitratesCount;
+        final long[] bitrates = new long[MAX_BITRATES];
+        final long[] bitratePlayTimes = new long[MAX_BITRATES];
+    }
+
+    SessionStateStore(File filesDir) {
+        this.directory = new File(filesDir, DIRECTORY_NAME);
+    }
+
+    /**
+     * Write the snapshot and fsync it.
+     *
+     * @param state - state to persist.
+     */
+    void save(SessionState state) {
+        if (state.entryId == null || state.sessionId == null) {
+            return;
+        }
+
+        slotBuffer.clear();
+        slotBuffer.putInt(MAGIC);
+        slotBuffer.putInt(VERSION);
+        slotBuffer.putLong(++lastSequence);
+        slotBuffer.putLong(state.savedAtTimestamp);
+        slotBuffer.putInt(state.eventIndex);
+        slotBuffer.putLong(state.playTimeSum);
+        slotBuffer.putLong(state.totalBufferTimePerEntry);
+        if (!putString(state.sessionStartTime, MAX_SESSION_START_TIME_BYTES)
+                || !putString(state.sessionId, MAX_SESSION_ID_BYTES)
+                || !putString(state.entryId, MAX_ENTRY_ID_BYTES)) {
+            log.w("Session state is too big to be persisted");
+            return;
+        }
+        int bitratesCount = Math.min(state.bitratesCount, MAX_BITRATES);
+        slotBuffer.putInt(bitratesCount);
+        for (int i = 0; i < MAX_BITRATES; i++) {
+            slotBuffer.putLong(i < bitratesCount ? state.bitrates[i] : 0);
+            slotBuffer.putLong(i < bitratesCount ? state.bitratePlayTimes[i] : 0);
+        }
+        crc32.reset();
+        crc32.update(slotBuffer.array(), 0, slotBuffer.position());
+        slotBuffer.putInt((int) crc32.getValue());
+        slotBuffer.position(0);
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            log.w("Failed to create session state directory");
+            return;
+        }
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(getFile(state.entryId), "rw");
+            FileChannel channel = file.getChannel();
+            channel.write(slotBuffer, (lastSequence % SLOTS_COUNT) * SLOT_SIZE);
+            channel.force(false);
+        } catch (IOException e) {
+            log.w("Failed to persist session state: " + e.getMessage());
+        } finally {
+            KavaFiles.closeQuietly(file, "session state file");
+        }
+    }
+
+    /**
+     * Read the latest valid snapshot of the entry.
+     *
+     * @param entryId - entry to restore.
+     * @param state   - holder to fill.
+     * @return - true if a valid snapshot of this entry was found.
+     */
+    boolean load(String entryId, SessionState state) {
+        File stateFile = getFile(entryId);
+        if (entryId == null || !stateFile.exists()) {
+            return false;
+        }
+
+        long bestSequence = 0;
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(stateFile, "r");
+            FileChannel channel = file.getChannel();
+            for (int slot = 0; slot < SLOTS_COUNT; slot++) {
+                slotBuffer.clear();
+                if (channel.read(slotBuffer, slot * SLOT_SIZE) < SLOT_SIZE) {
+                    continue;
+                }
+                slotBuffer.flip();
+                long sequence = readSlotSequence();
+                if (sequence > bestSequence && readSlot(entryId, state)) {
+                    bestSequence = sequence;
+                }
+            }
+        } catch (IOException e) {
+            log.w("Failed to read session state: " + e.getMessage());
+            return false;
+        } finally {
+            KavaFiles.closeQuietly(file, "session state file");
+        }
+
+        lastSequence = Math.max(lastSequence, bestSequence);
+        return bestSequence > 0;
+    }
+
+    void clear(String entryId) {
+        if (entryId != null && getFile(entryId).delete()) {
+            log.d("Session state cleared");
+        }
+    }
+
+    private long readSlotSequence() {
+        if (slotBuffer.getInt(0) != MAGIC || slotBuffer.getInt(4) != VERSION) {
+            return 0;
+        }
+        return slotBuffer.getLong(8);
+    }
+
+    private boolean readSlot(String entryId, SessionState state) {
+        slotBuffer.position(16);
+        long savedAtTimestamp = slotBuffer.getLong();
+        int eventIndex = slotBuffer.getInt();
+        long playTimeSum = slotBuffer.getLong();
+        long totalBufferTimePerEntry = slotBuffer.getLong();
+        String sessionStartTime = getString(MAX_SESSION_START_TIME_BYTES);
+        String sessionId = getString(MAX_SESSION_ID_BYTES);
+        String slotEntryId = getString(MAX_ENTRY_ID_BYTES);
+        if (sessionId == null || !entryId.equals(slotEntryId)) {
+            return false;
+        }
+        int bitratesCount = slotBuffer.getInt();
+        if (bitratesCount < 0 || bitratesCount > MAX_BITRATES) {
+            return false;
+        }
+        int bitratesPosition = slotBuffer.position();
+        slotBuffer.position(bitratesPosition + MAX_BITRATES * 16);
+
+        int crcPosition = slotBuffer.position();
+        crc32.reset();
+        crc32.update(slotBuffer.array(), 0, crcPosition);
+        if (slotBuffer.getInt() != (int) crc32.getValue()) {
+            return false;
+        }
+
+        state.savedAtTimestamp = savedAtTimestamp;
+        state.entryId = slotEntryId;
+        state.sessionId = sessionId;
+        state.sessionStartTime = sessionStartTime;
+        state.eventIndex = eventIndex;
+        state.playTimeSum = playTimeSum;
+        state.totalBufferTimePerEntry = totalBufferTimePerEntry;
+        state.bitratesCount = bitratesCount;
+        slotBuffer.position(bitratesPosition);
+        for (int i = 0; i < bitratesCount; i++) {
+            state.bitrates[i] = slotBuffer.getLong();
+            state.bitratePlayTimes[i] = slotBuffer.getLong();
+        }
+        return true;
+    }
+
+    private boolean putString(String value, int maxBytes) {
+        byte[] bytes = value != null ? value.getBytes(UTF_8) : new byte[0];
+        if (bytes.length > maxBytes) {
+            return false;
+        }
+        slotBuffer.putShort((short) (value != null ? bytes.length : -1));
+        slotBuffer.put(bytes);
+        slotBuffer.position(slotBuffer.position() + maxBytes - bytes.length);
+        return true;
+    }
+
+    private String getString(int maxBytes) {
+        int length = slotBuffer.getShort();
+        int start = slotBuffer.position();
+        slotBuffer.position(start + maxBytes);
+        if (length < 0 || length > maxBytes) {
+            return null;
+        }
+        return new String(slotBuffer.array(), start, length, UTF_8);
+    }
+
+    private File getFile(String entryId) {
+        return new File(directory, "session_" + Integer.toHexString(String.valueOf(entryId).hashCode()) + ".state");
+    }
+}
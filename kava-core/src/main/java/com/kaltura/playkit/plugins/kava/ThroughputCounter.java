@@ -0,0 +1,57 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Accumulates download statistics (bytes, load time and count) of a single track type
+ * between two VIEW events.
+ */
+class ThroughputCounter {
+
+    private long bytesLoaded;
+    private long loadDurationMs;
+    private long maxLoadDurationMs = -1;
+    private int loadCount;
+
+    void add(long bytesLoaded, long loadDurationMs) {
+        this.bytesLoaded += bytesLoaded;
+        this.loadDurationMs += loadDurationMs;
+        this.maxLoadDurationMs = Math.max(loadDurationMs, maxLoadDurationMs);
+        loadCount++;
+    }
+
+    long getBytesLoaded() {
+        return bytesLoaded;
+    }
+
+    long getLoadDurationMs() {
+        return loadDurationMs;
+    }
+
+    /**
+     * @return - longest single load in ms, or -1 if nothing was loaded since the last reset.
+     */
+    long getMaxLoadDurationMs() {
+        return maxLoadDurationMs;
+    }
+
+    int getLoadCount() {
+        return loadCount;
+    }
+
+    boolean hasBandwidth() {
+        return bytesLoaded > 0 && loadDurationMs > 0;
+    }
+
+    /**
+     * @return - average throughput in bytes per millisecond.
+     */
+    double getBandwidthInByteMS() {
+        return bytesLoaded / (loadDurationMs * 1.0);
+    }
+
+    void reset() {
+        bytesLoaded = 0;
+        loadDurationMs = 0;
+        maxLoadDurationMs = -1;
+        loadCount = 0;
+    }
+}
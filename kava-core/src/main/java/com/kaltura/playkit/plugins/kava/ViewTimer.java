@@ -0,0 +1,198 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Created by anton.afanasiev on 19/02/2018.
+ *
+ * Must be used only from the Kava analytics thread ({@link KavaScheduler}), deadlines are delivered on it as well.
+ */
+class ViewTimer {
+    private static final KavaLog log = KavaLog.get("ViewTimer");
+
+    static final int TEN_SECONDS_IN_MS = 10000;
+    static final long MAX_ALLOWED_VIEW_IDLE_TIME = 30000;
+
+    // Active playback time between VIEW events and idle time after which the server closes the session, in ms.
+    private long viewEventInterval = TEN_SECONDS_IN_MS;
+    private long idleTimeout = MAX_ALLOWED_VIEW_IDLE_TIME;
+
+    // Active playback and idle time accumulated since the last VIEW/reset, in ms.
+    private long viewEventPlayedTime;
+    private long viewEventIdleTime;
+    // Monotonic timestamp from which the current played/idle period is counted.
+    private long periodStartTimestamp;
+
+    private boolean isStarted;
+    private boolean isPaused;
+    private boolean viewEventsEnabled = true;
+
+    private ScheduledFuture<?> nextDeadline;
+    private ViewEventTrigger viewEventTrigger;
+
+    interface ViewEventTrigger {
+
+        /**
+         * Called when VIEW event should be sent.
+         *
+         * @param playedTime - active playback time the VIEW event accounts for, in ms.
+         */
+        void onTriggerViewEvent(long playedTime);
+
+        /**
+         * Called when VIEW event was not sent for the idle timeout.
+         */
+        void onResetViewEvent();
+    }
+
+    void start() {
+        log.d("Kava - StartTimer");
+        stop();
+        isStarted = true;
+        periodStartTimestamp = KavaScheduler.elapsedRealtimeMs();
+        scheduleNextDeadline();
+    }
+
+    void stop() {
+        if (!isStarted) {
+            return;
+        }
+
+        updateCounters();
+        isStarted = false;
+        cancelNextDeadline();
+    }
+
+    void pause() {
+        updateCounters();
+        isPaused = true;
+        scheduleNextDeadline();
+    }
+
+    void resume() {
+        updateCounters();
+        isPaused = false;
+        scheduleNextDeadline();
+    }
+
+    /**
+     * Take the played time that was not reported by a VIEW event yet, to report it ahead of the interval.
+     *
+     * @return - played time since the last VIEW event in ms, 0 if the view events are stopped or disabled.
+     */
+    long takePlayedTime() {
+        if (!isStarted || !viewEventsEnabled) {
+            return 0;
+        }
+        updateCounters();
+        long playedTime = viewEventPlayedTime;
+        viewEventPlayedTime = 0;
+        viewEventIdleTime = 0;
+        scheduleNextDeadline();
+        return playedTime;
+    }
+
+    void setViewEventTrigger(ViewEventTrigger viewEventTrigger) {
+        this.viewEventTrigger = viewEventTrigger;
+    }
+
+    void setViewEventsEnabled(boolean viewEventsEnabled) {
+        if (this.viewEventsEnabled != viewEventsEnabled) {
+            resetCounters();
+            this.viewEventsEnabled = viewEventsEnabled;
+            periodStartTimestamp = KavaScheduler.elapsedRealtimeMs();
+            scheduleNextDeadline();
+        }
+    }
+
+    /**
+     * @param viewEventInterval - active playback time between VIEW events, in ms.
+     */
+    void setViewEventInterval(long viewEventInterval) {
+        if (this.viewEventInterval != viewEventInterval) {
+            updateCounters();
+            this.viewEventInterval = viewEventInterval;
+            scheduleNextDeadline();
+        }
+    }
+
+    /**
+     * @param idleTimeout - idle time after which the view session is closed, in ms.
+     */
+    void setIdleTimeout(long idleTimeout) {
+        if (this.idleTimeout != idleTimeout) {
+            updateCounters();
+            this.idleTimeout = idleTimeout;
+            scheduleNextDeadline();
+        }
+    }
+
+    long getViewEventInterval() {
+        return viewEventInterval;
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    private void onDeadline() {
+        if (!isStarted || !viewEventsEnabled) {
+            return;
+        }
+
+        updateCounters();
+        if (isPaused && viewEventIdleTime >= idleTimeout) {
+            resetCounters();
+            scheduleNextDeadline();
+            if (viewEventTrigger != null) {
+                viewEventTrigger.onResetViewEvent();
+            }
+        } else if (!isPaused && viewEventPlayedTime >= viewEventInterval) {
+            // Keep the overshoot, so late deadlines don't accumulate into a drift.
+            long carriedPlayedTime = Math.min(viewEventPlayedTime - viewEventInterval, viewEventInterval - 1);
+            long playedTime = viewEventPlayedTime - carriedPlayedTime;
+            viewEventPlayedTime = carriedPlayedTime;
+            viewEventIdleTime = 0;
+            scheduleNextDeadline();
+            if (viewEventTrigger != null) {
+                viewEventTrigger.onTriggerViewEvent(playedTime);
+            }
+        } else {
+            scheduleNextDeadline();
+        }
+    }
+
+    private void updateCounters() {
+        long now = KavaScheduler.elapsedRealtimeMs();
+        if (isStarted && viewEventsEnabled) {
+            if (isPaused) {
+                viewEventIdleTime += now - periodStartTimestamp;
+            } else {
+                viewEventPlayedTime += now - periodStartTimestamp;
+            }
+        }
+        periodStartTimestamp = now;
+    }
+
+    private void scheduleNextDeadline() {
+        cancelNextDeadline();
+        if (!isStarted || !viewEventsEnabled) {
+            return;
+        }
+
+        long delay = isPaused ? idleTimeout - viewEventIdleTime : viewEventInterval - viewEventPlayedTime;
+        nextDeadline = KavaScheduler.schedule(this::onDeadline, Math.max(0, delay));
+    }
+
+    private void cancelNextDeadline() {
+        if (nextDeadline != null) {
+            nextDeadline.cancel(false);
+            nextDeadline = null;
+        }
+    }
+
+    private void resetCounters() {
+        viewEventIdleTime = 0;
+        viewEventPlayedTime = 0;
+    }
+}
@@ -0,0 +1,121 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class Id3TextFrameScannerTest {
+
+    private final Id3TextFrameScanner scanner = new Id3TextFrameScanner();
+
+    @Test
+    public void reportsChangedSequenceId() {
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}"));
+        assertEquals("32", scanner.getSequenceId());
+        assertEquals(1573049629312L, scanner.getTimestamp());
+
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"timestamp\":1573049633312,\"sequenceId\":\"33\"}"));
+        assertEquals("33", scanner.getSequenceId());
+        assertEquals(1573049633312L, scanner.getTimestamp());
+    }
+
+    @Test
+    public void reportsUnchangedSequenceId() {
+        scanner.scan("{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}");
+
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_UNCHANGED, scanner.scan(" { \"sequenceId\" : \"32\" , \"timestamp\" : 1573049633312 } "));
+        assertEquals("32", scanner.getSequenceId());
+        assertEquals(1573049633312L, scanner.getTimestamp());
+    }
+
+    @Test
+    public void reportsSequenceIdOfNextMediaAfterReset() {
+        scanner.scan("{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}");
+        scanner.reset();
+
+        assertNull(scanner.getSequenceId());
+        assertEquals(Id3TextFrameScanner.TIMESTAMP_UNSET, scanner.getTimestamp());
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"timestamp\":1573049633312,\"sequenceId\":\"32\"}"));
+        assertEquals("32", scanner.getSequenceId());
+    }
+
+    @Test
+    public void reportsMissingSequenceId() {
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan(null));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"timestamp\":1573049629312}"));
+        assertEquals(1573049629312L, scanner.getTimestamp());
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"sequenceId\":\"\"}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"sequenceId\":null}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"sequenceId\":{\"id\":\"32\"}}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"sequenceId\":[\"32\"]}"));
+        assertNull(scanner.getSequenceId());
+    }
+
+    @Test
+    public void matchesOnlyTopLevelKeys() {
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"comment\":\"\\\"sequenceId\\\":\\\"7\\\"\"}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"comment\":\"sequenceId\"}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"meta\":{\"sequenceId\":\"7\",\"timestamp\":5}}"));
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan("{\"xsequenceId\":\"7\",\"sequenceIds\":\"8\"}"));
+        assertEquals(Id3TextFrameScanner.TIMESTAMP_UNSET, scanner.getTimestamp());
+
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED,
+                scanner.scan("{\"comment\":\"a \\\"sequenceId\\\":\\\"7\\\" \\\\\",\"meta\":{\"sequenceId\":\"8\"},\"sequenceId\":\"32\"}"));
+        assertEquals("32", scanner.getSequenceId());
+    }
+
+    @Test
+    public void readsEscapedAndUnquotedValues() {
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"sequenceId\":\"3\\\"2\\\\\"}"));
+        assertEquals("3\"2\\", scanner.getSequenceId());
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_UNCHANGED, scanner.scan("{\"sequenceId\":\"3\\u00222\\\\\"}"));
+
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"sequenceId\":32}"));
+        assertEquals("32", scanner.getSequenceId());
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_UNCHANGED, scanner.scan("{\"sequenceId\":\"32\"}"));
+
+        // The last of duplicate keys wins.
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_CHANGED, scanner.scan("{\"sequenceId\":\"32\",\"sequenceId\":\"33\"}"));
+        assertEquals("33", scanner.getSequenceId());
+    }
+
+    @Test
+    public void ignoresMalformedFrames() {
+        scanner.scan("{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}");
+
+        String[] malformedFrames = {
+                "",
+                "sequenceId",
+                "[\"sequenceId\",\"33\"]",
+                "{\"sequenceId\":\"33\"",
+                "{\"sequenceId\":\"33}",
+                "{\"sequenceId\" \"33\"}",
+                "{\"sequenceId\":}",
+                "{\"sequenceId\":\"33\" \"timestamp\":1}",
+                "{sequenceId:\"33\"}",
+                "{\"timestamp\":1573049633312,\"meta\":{\"a\":[1,2},\"sequenceId\":\"33\"",
+                "{\"sequenceId\":\"3\\u00g3\"}",
+        };
+        for (String frame : malformedFrames) {
+            assertEquals(frame, Id3TextFrameScanner.SEQUENCE_ID_MISSING, scanner.scan(frame));
+        }
+        assertEquals("32", scanner.getSequenceId());
+        assertEquals(1573049629312L, scanner.getTimestamp());
+        assertEquals(Id3TextFrameScanner.SEQUENCE_ID_UNCHANGED, scanner.scan("{\"sequenceId\":\"32\"}"));
+    }
+
+    @Test
+    public void ignoresInvalidTimestamps() {
+        scanner.scan("{\"timestamp\":1573049629312,\"sequenceId\":\"32\"}");
+
+        scanner.scan("{\"timestamp\":-5,\"sequenceId\":\"32\"}");
+        scanner.scan("{\"timestamp\":\"soon\",\"sequenceId\":\"32\"}");
+        scanner.scan("{\"timestamp\":1.5e12,\"sequenceId\":\"32\"}");
+        assertEquals(1573049629312L, scanner.getTimestamp());
+
+        scanner.scan("{\"timestamp\":\"1573049633312\",\"sequenceId\":\"32\"}");
+        assertEquals(1573049633312L, scanner.getTimestamp());
+    }
+}
@@ -0,0 +1,179 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Parity of {@link KavaAnalyticsConfigCodec} with the Gson reflective binding it replaced: the same plugin config
+ * Json object is bound through both, and the bound configs are compared field by field.
+ */
+public class KavaAnalyticsConfigCodecTest {
+
+    private final Gson gson = new Gson();
+    private final KavaAnalyticsConfigCodec codec = KavaAnalyticsConfigCodec.getInstance();
+
+    @Test
+    public void bindsAllFields() {
+        assertParity("{'uiconfId': 123, 'partnerId': 2504201, 'virtualEventId': 7, 'ks': 'djJ8MjUwNDIwMXw', "
+                + "'referrer': 'app://com.kaltura.player', 'playlistId': '0_pl', 'entryId': '1_3bwzbc9o', "
+                + "'playbackContext': 'context', 'applicationVersion': '4.1.0', 'baseUrl': 'https://analytics.example.com/api_v3/index.php', "
+                + "'userId': 'user', 'customVar1': 'var1', 'customVar2': 'var2', 'customVar3': 'var3', "
+                + "'offlineSummaryUrl': 'https://summary.example.com', 'attachClientEventTime': true, "
+                + "'samplingRates': {'VIEW': 0.5, 'PLAY': 1}, 'viewEventInterval': 30, 'meteredViewEventInterval': 60, "
+                + "'viewEventIdleTimeout': 45, 'enabledEvents': ['PLAY', 'VIEW'], 'disabledEvents': ['SEEK'], "
+                + "'enabledParamsGroups': ['NETWORK', 'ADS'], 'disabledParamsGroups': ['SOUND_MODE'], 'dvrThreshold': 60000, "
+                + "'progressMilestones': [10, 20, 90], 'progressMilestonesSeconds': [30, 120], 'playheadEvaluationInterval': 500}");
+    }
+
+    @Test
+    public void skipsUnknownFields() {
+        assertParity("{'partnerId': 1, 'unknown': {'nested': [1, {'deeper': null}], 'flag': true}, 'other': 'value', "
+                + "'list': [1, 'two', null], 'entryId': '1_abc'}");
+    }
+
+    @Test
+    public void bindsNulls() {
+        // Null keeps the default of the primitive fields, and of baseUrl.
+        assertParity("{'uiconfId': null, 'partnerId': null, 'virtualEventId': null, 'ks': null, 'referrer': null, "
+                + "'playlistId': null, 'entryId': null, 'playbackContext': null, 'applicationVersion': null, 'baseUrl': null, "
+                + "'userId': null, 'customVar1': null, 'customVar2': null, 'customVar3': null, 'offlineSummaryUrl': null, "
+                + "'attachClientEventTime': null, 'samplingRates': null, 'viewEventInterval': null, 'meteredViewEventInterval': null, "
+                + "'viewEventIdleTimeout': null, 'enabledEvents': null, 'disabledEvents': null, 'enabledParamsGroups': null, "
+                + "'disabledParamsGroups': null, 'dvrThreshold': null, 'progressMilestones': null, 'progressMilestonesSeconds': null, "
+                + "'playheadEvaluationInterval': null}");
+        assertParity("{'samplingRates': {'VIEW': null}, 'progressMilestones': [10], 'enabledParamsGroups': []}");
+    }
+
+    @Test
+    public void bindsNumbersAsStrings() {
+        assertParity("{'uiconfId': '123', 'partnerId': '2504201', 'virtualEventId': '7', 'attachClientEventTime': 'true', "
+                + "'samplingRates': {'VIEW': '0.25'}, 'viewEventInterval': '30', 'meteredViewEventInterval': '60', "
+                + "'viewEventIdleTimeout': '45', 'dvrThreshold': '60000', 'progressMilestones': ['10', '20'], "
+                + "'progressMilestonesSeconds': ['30'], 'playheadEvaluationInterval': '500'}");
+    }
+
+    @Test
+    public void bindsScalarsAsStrings() {
+        assertParity("{'entryId': 123, 'ks': 1.5, 'userId': false, 'attachClientEventTime': 'yes', 'playlistId': 12345678901234567890}");
+    }
+
+    @Test
+    public void truncatesNonIntegralNumbers() {
+        assertParity("{'partnerId': 12.7, 'viewEventInterval': 30.9, 'dvrThreshold': 1.5e4, 'progressMilestones': [25.5, 50]}");
+    }
+
+    @Test
+    public void bindsNestedParams() {
+        assertParity("{'samplingRates': {'VIEW': 0.1, 'PLAY': 0.9, 'ERROR': 0}, 'enabledEvents': ['VIEW', 'PLAY', 'VIEW'], "
+                + "'disabledParamsGroups': [], 'progressMilestones': [], 'progressMilestonesSeconds': [1, 2, 3, 4, 5, 6, 7, 8, 9, 10]}");
+        // Gson's array of [key, value] pairs form of a map.
+        assertParity("{'samplingRates': [['VIEW', 0.1], ['PLAY', 0.9]]}");
+    }
+
+    @Test
+    public void rejectsWhatReflectionRejects() {
+        assertBothReject("{'partnerId': {}}");
+        assertBothReject("{'partnerId': 'abc'}");
+        assertBothReject("{'viewEventInterval': '1.5'}");
+        assertBothReject("{'entryId': ['1_abc']}");
+        assertBothReject("{'enabledEvents': 'PLAY'}");
+        assertBothReject("{'progressMilestones': [10, null]}");
+    }
+
+    @Test
+    public void dropsUnknownEnumNames() {
+        JsonObject json = JsonParser.parseString("{'enabledEvents': ['PLAY', 'NOT_AN_EVENT', null], 'disabledParamsGroups': ['NOT_A_GROUP']}").getAsJsonObject();
+        KavaAnalyticsConfig reflectiveConfig = gson.fromJson(json, KavaAnalyticsConfig.class);
+        KavaAnalyticsConfig config = codec.fromJson(json);
+
+        // The reflective binding added null for the unknown names and the null entries.
+        assertTrue(reflectiveConfig.getEnabledEvents().contains(null));
+        assertEquals(1, config.getEnabledEvents().size());
+        assertTrue(config.isEventEnabled(KavaEvents.PLAY));
+        assertFalse(config.isEventEnabled(KavaEvents.VIEW));
+        assertTrue(config.getDisabledParamsGroups().isEmpty());
+    }
+
+    @Test
+    public void bindsEmptyAndNullJson() {
+        assertNull(codec.fromJson(""));
+        assertNull(codec.fromJson(" \n"));
+        assertNull(codec.fromJson("null"));
+        assertNull(codec.fromJson((String) null));
+        assertParity("{}");
+    }
+
+    @Test
+    public void roundTripsToJson() {
+        KavaAnalyticsConfig config = new KavaAnalyticsConfig()
+                .setPartnerId(2504201)
+                .setUiConfId(123)
+                .setEntryId("1_3bwzbc9o")
+                .setKs("djJ8MjUwNDIwMXw")
+                .setReferrer("app://com.kaltura.player")
+                .setBaseUrl("https://analytics.example.com/api_v3/index.php")
+                .setUserId("user \"quoted\" \\ \u00e9")
+                .setCustomVar2("var2")
+                .setAttachClientEventTime(true)
+                .setSamplingRate(0.5f, KavaEvents.VIEW, KavaEvents.PLAY)
+                .setViewEventInterval(30)
+                .setMeteredViewEventInterval(60)
+                .setEnabledEvents(KavaEvents.PLAY, KavaEvents.VIEW)
+                .setDisabledParamsGroups(KavaParamsGroup.SOUND_MODE)
+                .setDvrThreshold(60000)
+                .setProgressMilestones(10, 20, 90)
+                .setPlayheadEvaluationInterval(500);
+        String json = codec.toJson(config);
+
+        assertEquals(gson.toJson(config), gson.toJson(codec.fromJson(json)));
+        assertParity(json);
+        assertParity(codec.toJson(new KavaAnalyticsConfig()));
+        assertEquals(gson.toJson(new KavaAnalyticsConfig()), gson.toJson(codec.fromJson(codec.toJson(new KavaAnalyticsConfig()))));
+    }
+
+    private void assertParity(String json) {
+        JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
+        KavaAnalyticsConfig reflectiveConfig = gson.fromJson(jsonObject, KavaAnalyticsConfig.class);
+        KavaAnalyticsConfig config = codec.fromJson(jsonObject);
+
+        assertEquals(json, gson.toJson(reflectiveConfig), gson.toJson(config));
+        assertTrue(json, Arrays.equals(reflectiveConfig.getProgressMilestones(), config.getProgressMilestones()));
+        assertEquals(json, reflectiveConfig.getBaseUrl(), config.getBaseUrl());
+        assertEquals(json, reflectiveConfig.getReferrer(), config.getReferrer());
+        for (KavaEvents event : KavaEvents.values()) {
+            assertEquals(json, reflectiveConfig.isEventEnabled(event), config.isEventEnabled(event));
+            assertEquals(json, reflectiveConfig.getSamplingRate(event), config.getSamplingRate(event), 0);
+        }
+        for (KavaParamsGroup paramsGroup : KavaParamsGroup.values()) {
+            assertEquals(json, reflectiveConfig.isParamsGroupEnabled(paramsGroup), config.isParamsGroupEnabled(paramsGroup));
+        }
+    }
+
+    private void assertBothReject(String json) {
+        JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
+        try {
+            gson.fromJson(jsonObject, KavaAnalyticsConfig.class);
+            fail("Reflection bound " + json);
+        } catch (JsonSyntaxException | IllegalArgumentException | IllegalStateException expected) {
+            // Rejected.
+        }
+        try {
+            codec.fromJson(jsonObject);
+            fail("Codec bound " + json);
+        } catch (JsonSyntaxException expected) {
+            // Rejected.
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Transport answering every request like the analytics server, after a fixed latency of virtual time.
+ */
+final class FakeKavaHttpClient implements KavaHttpClient {
+
+    private final VirtualTimeExecutor executor;
+    private final long latencyMs;
+    private final KavaRequestListener listener;
+
+    /**
+     * @param executor  - virtual time the responses are scheduled on.
+     * @param latencyMs - time from sending a request to its response, in ms.
+     * @param listener  - listener of the sent requests, may be null.
+     */
+    FakeKavaHttpClient(VirtualTimeExecutor executor, long latencyMs, KavaRequestListener listener) {
+        this.executor = executor;
+        this.latencyMs = latencyMs;
+        this.listener = listener;
+    }
+
+    @Override
+    public void execute(KavaRequest request) {
+        if (listener != null) {
+            listener.onRequest(request);
+        }
+        executor.schedule(() -> request.complete(true, buildResponse(executor.currentTimeMillis())), latencyMs);
+    }
+
+    /**
+     * @param serverTime - server wall clock time in ms.
+     * @return - trackEvent response body.
+     */
+    static String buildResponse(long serverTime) {
+        return String.format(Locale.US, "{\"time\":%.3f,\"viewEventsEnabled\":true}", serverTime / 1000.0);
+    }
+
+    /**
+     * @param url - request url.
+     * @return - decoded query params of the url, in order.
+     */
+    static Map<String, String> parseParams(String url) {
+        Map<String, String> params = new LinkedHashMap<>();
+        int queryStart = url.indexOf('?');
+        if (queryStart == -1) {
+            return params;
+        }
+        for (String param : url.substring(queryStart + 1).split("&")) {
+            int separator = param.indexOf('=');
+            String key = separator == -1 ? param : param.substring(0, separator);
+            String value = separator == -1 ? "" : param.substring(separator + 1);
+            params.put(decode(key), decode(value));
+        }
+        return params;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
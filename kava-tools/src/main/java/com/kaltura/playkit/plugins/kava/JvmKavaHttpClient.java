@@ -0,0 +1,125 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link KavaHttpClient} on top of {@link HttpURLConnection}, running the requests on a small pool of
+ * daemon threads the way the netkit executor does on the device.
+ * The requests of one session always run on the same thread, one after the other. Sessions still run in
+ * parallel, but the order the server sees the events of a session in depends only on the dispatcher
+ * and the faults, not on the races between the threads.
+ */
+final class JvmKavaHttpClient implements KavaHttpClient {
+
+    private static final int THREAD_COUNT = 4;
+
+    private static final String SESSION_ID_PARAM = "sessionId=";
+
+    private final ExecutorService[] lanes = new ExecutorService[THREAD_COUNT];
+    private final int timeoutMs;
+    private final KavaRequestListener listener;
+
+    /**
+     * @param timeoutMs - connect and read timeout of every request, in ms.
+     * @param listener  - listener of the sent requests, may be null.
+     */
+    JvmKavaHttpClient(int timeoutMs, KavaRequestListener listener) {
+        this.timeoutMs = timeoutMs;
+        this.listener = listener;
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "KavaHttp");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public void execute(KavaRequest request) {
+        if (listener != null) {
+            listener.onRequest(request);
+        }
+        lanes[Math.floorMod(getSessionKey(request.url).hashCode(), THREAD_COUNT)].execute(() -> {
+            String response = null;
+            boolean isSuccess = false;
+            int statusCode = KavaRequest.STATUS_CODE_UNKNOWN;
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(request.url).openConnection();
+                connection.setConnectTimeout(timeoutMs);
+                connection.setReadTimeout(timeoutMs);
+                connection.setRequestMethod(request.method);
+                for (Map.Entry<String, String> header : request.headers.entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+                if (request.body != null) {
+                    connection.setDoOutput(true);
+                    OutputStream output = connection.getOutputStream();
+                    output.write(request.body.getBytes(StandardCharsets.UTF_8));
+                    output.close();
+                }
+                statusCode = connection.getResponseCode();
+                isSuccess = statusCode >= 200 && statusCode < 300;
+                InputStream input = isSuccess ? connection.getInputStream() : connection.getErrorStream();
+                if (input != null) {
+                    response = readFully(input);
+                }
+            } catch (IOException e) {
+                isSuccess = false;
+            }
+            request.complete(isSuccess, statusCode, response);
+        });
+    }
+
+    /**
+     * Wait for the requests handed to the client so far.
+     *
+     * @param timeoutMs - maximal wait in ms.
+     */
+    void shutdown(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return - the sessionId param of the url, or the whole url if it has none.
+     */
+    private static String getSessionKey(String url) {
+        int start = url.indexOf(SESSION_ID_PARAM);
+        if (start == -1) {
+            return url;
+        }
+        start += SESSION_ID_PARAM.length();
+        int end = url.indexOf('&', start);
+        return end == -1 ? url.substring(start) : url.substring(start, end);
+    }
+
+    private static String readFully(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+}
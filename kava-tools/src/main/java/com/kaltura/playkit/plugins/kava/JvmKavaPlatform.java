@@ -0,0 +1,81 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Pure JVM stand-ins for the Android side of the {@link KavaPlatform}: a fixed network, sound on
+ * and a temporary files directory.
+ */
+final class JvmKavaPlatform implements KavaNetworkInfo, KavaAudioState {
+
+    static final String APPLICATION_ID = "com.kaltura.kava.tools";
+    static final String USER_AGENT = "kava-tools";
+    static final String CLIENT_TAG = "playkit/android-jvm";
+
+    private final String networkClass;
+    private final boolean isMeteredNetwork;
+
+    private JvmKavaPlatform(String networkClass, boolean isMeteredNetwork) {
+        this.networkClass = networkClass;
+        this.isMeteredNetwork = isMeteredNetwork;
+    }
+
+    /**
+     * @param clock - time source of the platform.
+     * @return - platform on an unmetered WIFI network, with a new temporary files directory.
+     */
+    static KavaPlatform create(KavaClock clock) {
+        return create(clock, "WIFI", false);
+    }
+
+    /**
+     * @param clock            - time source of the platform.
+     * @param networkClass     - reported networkConnectionType.
+     * @param isMeteredNetwork - true to simulate a cellular network.
+     * @return - platform with a new temporary files directory.
+     */
+    static KavaPlatform create(KavaClock clock, String networkClass, boolean isMeteredNetwork) {
+        JvmKavaPlatform environment = new JvmKavaPlatform(networkClass, isMeteredNetwork);
+        return new KavaPlatform(clock, environment, environment, APPLICATION_ID, USER_AGENT, CLIENT_TAG, createFilesDir());
+    }
+
+    /**
+     * Tools measure the Kava code, not the logging sink.
+     */
+    static void muteLog() {
+        KavaLog.setSink((level, tag, message) -> {
+        });
+    }
+
+    private static File createFilesDir() {
+        try {
+            File filesDir = Files.createTempDirectory("kava").toFile();
+            filesDir.deleteOnExit();
+            return filesDir;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create the files directory", e);
+        }
+    }
+
+    @Override
+    public String getNetworkClass() {
+        return networkClass;
+    }
+
+    @Override
+    public boolean isNetworkAvailable() {
+        return true;
+    }
+
+    @Override
+    public boolean isMeteredNetwork() {
+        return isMeteredNetwork;
+    }
+
+    @Override
+    public int getSoundMode() {
+        return SOUND_MODE_ON;
+    }
+}
@@ -0,0 +1,355 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end delivery check: real time Kava sessions report through the real dispatcher and an HTTP
+ * transport to a {@link KavaStandInServer}, once per fault profile. For every profile it measures the
+ * delivery ratio, the duplicates and ordering of the events by eventIndex as the server saw them, and
+ * the end to end latency percentiles, and checks them against the {@link Thresholds} of the profile.
+ * Real time, so it is not part of the tests: KavaDeliveryTest runs only the delivery and ordering checks
+ * of the profiles whose outcome does not depend on timing.
+ * <p>
+ * Usage: KavaDeliveryCheck [--profiles none,latency,loss,burst5xx,slowBody,all] [--sessions N] [--duration S] [--plain]
+ */
+final class KavaDeliveryCheck {
+
+    private static final String DEFAULT_PROFILES = "none,latency,loss,burst5xx,slowBody,all";
+    private static final int DEFAULT_SESSIONS = 4;
+    private static final int DEFAULT_DURATION_SEC = 15;
+    private static final int HTTP_TIMEOUT_MS = 10000;
+    private static final long PLAYHEAD_INTERVAL_MS = 500;
+    // Not checked.
+    static final int ANY = -1;
+
+    /**
+     * Latency bounds: VIEW events wait up to the 1 second flush window, and every transport thread runs
+     * the requests of its sessions one after the other, so an injected delay queues the following requests.
+     */
+    private static final Map<String, Thresholds> THRESHOLDS = new HashMap<>();
+
+    static {
+        THRESHOLDS.put("none", new Thresholds(1.0, 0, 0, 2000));
+        THRESHOLDS.put("latency", new Thresholds(1.0, 0, ANY, 6000));
+        // The JVM transport retries a GET whose connection was closed.
+        THRESHOLDS.put("loss", new Thresholds(0.95, 0, ANY, 3000));
+        // 5 of every 20 requests fail.
+        THRESHOLDS.put("burst5xx", new Thresholds(0.6, 0, ANY, 2000));
+        // Requests still trickling when the run ends are not delivered.
+        THRESHOLDS.put("slowBody", new Thresholds(0.75, 0, ANY, 30000));
+        THRESHOLDS.put("all", new Thresholds(0.45, 0, ANY, 30000));
+    }
+
+    private final KavaStandInServer server;
+    private final int sessionCount;
+    private final int durationSec;
+    private final boolean isPlainResponse;
+
+    /**
+     * Measurements of one fault profile run.
+     */
+    static final class Result {
+        final KavaStandInServer.FaultProfile profile;
+        final boolean isPlainResponse;
+        int sentCount;
+        int deliveredCount;
+        int receivedCount;
+        int acceptedCount;
+        int droppedCount;
+        int serverErrorCount;
+        int duplicateCount;
+        int outOfOrderCount;
+        // Latencies of the delivered requests in ms, sorted.
+        final List<Long> endToEndLatencies = new ArrayList<>();
+        final List<Long> transportLatencies = new ArrayList<>();
+
+        Result(KavaStandInServer.FaultProfile profile, boolean isPlainResponse) {
+            this.profile = profile;
+            this.isPlainResponse = isPlainResponse;
+        }
+
+        double getDeliveryRatio() {
+            return sentCount > 0 ? (double) deliveredCount / sentCount : 0;
+        }
+
+        /**
+         * @return - end to end latency percentile in ms, -1 if nothing was delivered.
+         */
+        long getEndToEndLatency(int percentile) {
+            return endToEndLatencies.isEmpty() ? -1 : percentile(endToEndLatencies, percentile);
+        }
+
+        /**
+         * @return - transport latency percentile in ms, -1 if nothing was delivered.
+         */
+        long getTransportLatency(int percentile) {
+            return transportLatencies.isEmpty() ? -1 : percentile(transportLatencies, percentile);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%s response): %d sent, %d delivered (%.1f%%)", profile.name, isPlainResponse ? "plain" : "json",
+                    sentCount, deliveredCount, 100 * getDeliveryRatio()) + System.lineSeparator()
+                    + String.format(Locale.US, "  server: %d received, %d accepted, %d dropped, %d 5xx, %d duplicates, %d out of order",
+                    receivedCount, acceptedCount, droppedCount, serverErrorCount, duplicateCount, outOfOrderCount) + System.lineSeparator()
+                    + "  end to end latency ms: " + formatPercentiles(endToEndLatencies) + System.lineSeparator()
+                    + "  transport latency ms:  " + formatPercentiles(transportLatencies);
+        }
+    }
+
+    /**
+     * What a fault profile run must achieve, {@link #ANY} for a bound that is not checked.
+     */
+    static final class Thresholds {
+        final double minDeliveryRatio;
+        final int maxDuplicates;
+        final int maxOutOfOrder;
+        final long maxEndToEndLatencyP95Ms;
+
+        Thresholds(double minDeliveryRatio, int maxDuplicates, int maxOutOfOrder, long maxEndToEndLatencyP95Ms) {
+            this.minDeliveryRatio = minDeliveryRatio;
+            this.maxDuplicates = maxDuplicates;
+            this.maxOutOfOrder = maxOutOfOrder;
+            this.maxEndToEndLatencyP95Ms = maxEndToEndLatencyP95Ms;
+        }
+
+        /**
+         * @return - the thresholds the result misses, empty if it meets all of them.
+         */
+        List<String> check(Result result) {
+            List<String> missed = new ArrayList<>();
+            if (result.sentCount == 0) {
+                missed.add("no events were sent");
+            }
+            if (result.getDeliveryRatio() < minDeliveryRatio) {
+                missed.add("delivery ratio below " + minDeliveryRatio);
+            }
+            if (maxDuplicates != ANY && result.duplicateCount > maxDuplicates) {
+                missed.add("over " + maxDuplicates + " duplicate events");
+            }
+            if (maxOutOfOrder != ANY && result.outOfOrderCount > maxOutOfOrder) {
+                missed.add("over " + maxOutOfOrder + " events out of eventIndex order");
+            }
+            if (maxEndToEndLatencyP95Ms != ANY) {
+                long endToEndLatencyP95 = result.getEndToEndLatency(95);
+                if (endToEndLatencyP95 < 0 || endToEndLatencyP95 > maxEndToEndLatencyP95Ms) {
+                    missed.add("end to end latency p95 " + endToEndLatencyP95 + " ms over " + maxEndToEndLatencyP95Ms + " ms");
+                }
+            }
+            return missed;
+        }
+    }
+
+    KavaDeliveryCheck(KavaStandInServer server, int sessionCount, int durationSec, boolean isPlainResponse) {
+        this.server = server;
+        this.sessionCount = sessionCount;
+        this.durationSec = durationSec;
+        this.isPlainResponse = isPlainResponse;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String profiles = DEFAULT_PROFILES;
+        int sessionCount = DEFAULT_SESSIONS;
+        int durationSec = DEFAULT_DURATION_SEC;
+        boolean isPlainResponse = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profiles":
+                    profiles = args[++i];
+                    break;
+                case "--sessions":
+                    sessionCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    durationSec = Integer.parseInt(args[++i]);
+                    break;
+                case "--plain":
+                    isPlainResponse = true;
+                    break;
+                default:
+                    System.err.println("Usage: KavaDeliveryCheck [--profiles " + DEFAULT_PROFILES + "] [--sessions N] [--duration S] [--plain]");
+                    System.exit(1);
+            }
+        }
+
+        JvmKavaPlatform.muteLog();
+        KavaStandInServer server = new KavaStandInServer();
+        server.start();
+        List<String> failedProfiles = new ArrayList<>();
+        try {
+            KavaDeliveryCheck check = new KavaDeliveryCheck(server, sessionCount, durationSec, isPlainResponse);
+            for (String name : profiles.split(",")) {
+                KavaStandInServer.FaultProfile profile = KavaStandInServer.FaultProfile.get(name);
+                if (profile == null) {
+                    System.err.println("Unknown fault profile " + name);
+                    System.exit(1);
+                }
+                Result result = check.run(profile);
+                System.out.println(result);
+                List<String> missed = THRESHOLDS.get(name).check(result);
+                if (!missed.isEmpty()) {
+                    System.out.println("  MISSED: " + String.join(", ", missed));
+                    failedProfiles.add(name);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+        if (!failedProfiles.isEmpty()) {
+            System.err.println("Thresholds missed by " + String.join(", ", failedProfiles));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return - the measurements of the profile, the server must be started.
+     */
+    Result run(KavaStandInServer.FaultProfile profile) throws InterruptedException {
+        server.reset(profile, isPlainResponse);
+        List<KavaRequest> sentRequests = Collections.synchronizedList(new ArrayList<>());
+        JvmKavaHttpClient httpClient = new JvmKavaHttpClient(HTTP_TIMEOUT_MS, request -> {
+            if (request.event != null) {
+                sentRequests.add(request);
+            }
+        });
+        KavaScheduler.execute(() -> KavaDispatcher.getInstance().setHttpClient(httpClient));
+
+        ScheduledExecutorService player = Executors.newSingleThreadScheduledExecutor();
+        for (int i = 0; i < sessionCount; i++) {
+            play(player, profile.name + "-" + i);
+        }
+        player.shutdown();
+        player.awaitTermination(durationSec + 10, TimeUnit.SECONDS);
+        // Let the last VIEW flush go out, then wait for the in flight requests.
+        Thread.sleep(KavaDispatcher.VIEW_EVENTS_FLUSH_WINDOW_MS * 2);
+        httpClient.shutdown(HTTP_TIMEOUT_MS * 2);
+
+        return measure(profile, new ArrayList<>(sentRequests), server.getReceivedEvents());
+    }
+
+    /**
+     * Play a VOD entry of the check duration in real time: a pause and a seek in the middle, to the end.
+     */
+    private void play(ScheduledExecutorService player, String sessionId) {
+        KavaEventLoop eventLoop = new KavaEventLoop();
+        // A files directory per session, or the sessions of the same entry would continue each other's persisted state.
+        KavaSession session = new KavaSession(JvmKavaPlatform.create(KavaClock.SYSTEM), KavaDispatcher.getInstance(), eventLoop, new KavaSession.Listener() {
+            @Override
+            public void onAnalyticsReport(String eventName) {
+            }
+
+            @Override
+            public void onMetricsReport(KavaMetrics metrics) {
+            }
+
+            @Override
+            public void onProgressMilestone(int milestone, boolean isPercent) {
+            }
+        });
+        KavaAnalyticsConfig pluginConfig = new KavaAnalyticsConfig()
+                .setPartnerId(1234)
+                .setEntryId("1_delivery")
+                .setBaseUrl(server.getBaseUrl())
+                .setViewEventInterval(1);
+        long durationMs = TimeUnit.SECONDS.toMillis(durationSec);
+        long pauseAtMs = durationMs / 3;
+        long seekAtMs = durationMs / 2;
+
+        eventLoop.post(() -> {
+            session.onUpdateConfig(pluginConfig);
+            session.onUpdateMedia(new KavaMedia("1_delivery", null, KavaMediaEntryType.Vod), sessionId, 30);
+            session.onSourceSelected("hls", false);
+            session.onLoadedMetadata();
+            session.onCanPlay(false);
+            session.onPlay();
+            session.onPlaying();
+        });
+        for (long time = PLAYHEAD_INTERVAL_MS; time <= durationMs; time += PLAYHEAD_INTERVAL_MS) {
+            long position = time;
+            player.schedule(() -> eventLoop.post(() -> session.onPlayheadUpdated(position, Math.min(position + 20000, durationMs), durationMs)),
+                    time, TimeUnit.MILLISECONDS);
+        }
+        player.schedule(() -> eventLoop.post(session::onPause), pauseAtMs, TimeUnit.MILLISECONDS);
+        player.schedule(() -> eventLoop.post(() -> {
+            session.onPlay();
+            session.onPlaying();
+        }), pauseAtMs + 1000, TimeUnit.MILLISECONDS);
+        player.schedule(() -> eventLoop.post(() -> {
+            session.onSeeking(seekAtMs + 2000);
+            session.onPlaying();
+        }), seekAtMs, TimeUnit.MILLISECONDS);
+        player.schedule(() -> eventLoop.post(() -> {
+            session.onEnded();
+            session.destroy();
+        }), durationMs + PLAYHEAD_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private Result measure(KavaStandInServer.FaultProfile profile, List<KavaRequest> sentRequests, List<KavaStandInServer.ReceivedEvent> receivedEvents) {
+        Result result = new Result(profile, isPlainResponse);
+        result.sentCount = sentRequests.size();
+        for (KavaRequest request : sentRequests) {
+            if (request.isSuccess) {
+                result.deliveredCount++;
+                result.endToEndLatencies.add(request.getEndToEndLatency());
+                result.transportLatencies.add(request.getLatency());
+            }
+        }
+        Collections.sort(result.endToEndLatencies);
+        Collections.sort(result.transportLatencies);
+
+        // Ordering as the server accepted the events: an event arriving after a later event of its session is out of order.
+        Map<String, Integer> lastEventIndex = new HashMap<>();
+        Set<String> acceptedEvents = new HashSet<>();
+        result.receivedCount = receivedEvents.size();
+        for (KavaStandInServer.ReceivedEvent event : receivedEvents) {
+            if (event.status == KavaStandInServer.STATUS_DROPPED) {
+                result.droppedCount++;
+                continue;
+            }
+            if (event.status != 200) {
+                result.serverErrorCount++;
+                continue;
+            }
+            if (!acceptedEvents.add(event.sessionId + ":" + event.eventIndex)) {
+                result.duplicateCount++;
+            }
+            Integer lastIndex = lastEventIndex.get(event.sessionId);
+            if (lastIndex != null && event.eventIndex < lastIndex) {
+                result.outOfOrderCount++;
+            } else {
+                lastEventIndex.put(event.sessionId, event.eventIndex);
+            }
+        }
+        result.acceptedCount = acceptedEvents.size();
+        return result;
+    }
+
+    /**
+     * @param values - samples, sorted in place.
+     * @return - p50, p95, p99 and max of the samples.
+     */
+    static String formatPercentiles(List<Long> values) {
+        if (values.isEmpty()) {
+            return "no samples";
+        }
+        Collections.sort(values);
+        return String.format(Locale.US, "p50 %d, p95 %d, p99 %d, max %d",
+                percentile(values, 50), percentile(values, 95), percentile(values, 99), values.get(values.size() - 1));
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, Math.min(index, sortedValues.size() - 1)));
+    }
+}
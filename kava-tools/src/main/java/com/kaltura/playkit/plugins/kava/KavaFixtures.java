@@ -0,0 +1,43 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Kava state shared by the benchmarks and the checks, so they all measure the same thing.
+ */
+final class KavaFixtures {
+
+    static final String ENTRY_ID = "1_3bwzbc9o";
+    static final String SESSION_ID = "2b2c04b1-8e36-4b4a-b9c2-1d5bfe2f7a31:6a7d2b04-47b5-4a4a-b0a1-0d8f2d1bbf3c";
+    static final String ERROR_DETAILS = "SOURCE_ERROR - ExoPlaybackException: Source error, caused by: HttpDataSourceException";
+    static final long ERROR_FINGERPRINT = 0x9e3779b97f4a7c15L;
+
+    private KavaFixtures() {
+    }
+
+    /**
+     * @param clock - time source of the DataHandler.
+     * @return - DataHandler in the state of a VOD entry in the middle of playback.
+     */
+    static DataHandler createPlayingDataHandler(KavaClock clock) {
+        DataHandler dataHandler = new DataHandler(JvmKavaPlatform.create(clock));
+        dataHandler.onUpdateConfig(new KavaAnalyticsConfig()
+                .setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID)
+                .setEntryId(ENTRY_ID)
+                .setUserId("kava-tools-user")
+                .setCustomVar1("customVar1")
+                .setPlaybackContext("kava-tools"));
+        dataHandler.onUpdateMedia(ENTRY_ID, SESSION_ID, 30);
+        dataHandler.handleSourceSelected(DataHandler.StreamFormat.AppleHttp.formatName);
+        dataHandler.handleFirstPlay();
+        dataHandler.handleLoadedMetaData();
+        dataHandler.handleCanPlay();
+        dataHandler.handlePlaybackInfoBitrate(2_500_000);
+        dataHandler.handleAudioLanguage("en");
+        dataHandler.handleCaptionLanguage("es");
+        dataHandler.handleSegmentDownloadTime(1_200_000, 400);
+        dataHandler.handleManifestDownloadTime(8_000, 60);
+        dataHandler.handleConnectionAcquired(35);
+        dataHandler.handlePlayheadUpdated(125_000, 140_000, 3_600_000);
+        dataHandler.setSessionStartTime("1573049629.312");
+        return dataHandler;
+    }
+}
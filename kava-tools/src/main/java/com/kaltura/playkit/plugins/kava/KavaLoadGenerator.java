@@ -0,0 +1,200 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load generator for sizing the analytics ingestion: N simulated player sessions report through
+ * the real Kava session, params and url building to an HTTP endpoint, in the plugin's exact wire format.
+ * Sessions are started over the ramp up time and replaced when they end, keeping N sessions playing.
+ * All the sessions share the single analytics thread and dispatcher, as the players of one process do,
+ * on virtual time that runs --speed times faster than the wall clock.
+ * <p>
+ * Reports the achieved events per second and the request latency percentiles every few seconds.
+ */
+final class KavaLoadGenerator {
+
+    private static final String USAGE = "Usage: KavaLoadGenerator [--url URL] [--sessions N] [--ramp-up S] [--run-time S] [--speed K]"
+            + " [--live-share F] [--watch-time MIN] [--abr-interval S] [--stalls-per-minute R] [--seeks-per-minute R]"
+            + " [--max-in-flight N] [--timeout MS]";
+
+    private static final long TICK_MS = 5;
+    private static final long REPORT_INTERVAL_MS = 10000;
+
+    private String url;
+    private int sessionCount = 100;
+    private long rampUpMs = 10000;
+    private long runTimeMs = 60000;
+    private long speed = 1;
+    private double liveShare;
+    private long watchTimeMs = TimeUnit.MINUTES.toMillis(30);
+    private long abrChangeIntervalMs = 60000;
+    private double stallsPerMinute = 0.5;
+    private double seeksPerMinute = 0.2;
+    private int maxInFlight = 1000;
+    private int timeoutMs = 10000;
+
+    private final List<SimulatedPlayback> playbacks = new ArrayList<>();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+    private VirtualTimeExecutor executor;
+    private NioKavaHttpClient httpClient;
+    private int startedCount;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        KavaLoadGenerator generator = new KavaLoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--url":
+                    generator.url = value;
+                    break;
+                case "--sessions":
+                    generator.sessionCount = Integer.parseInt(value);
+                    break;
+                case "--ramp-up":
+                    generator.rampUpMs = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+                    break;
+                case "--run-time":
+                    generator.runTimeMs = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+                    break;
+                case "--speed":
+                    generator.speed = Long.parseLong(value);
+                    break;
+                case "--live-share":
+                    generator.liveShare = Double.parseDouble(value);
+                    break;
+                case "--watch-time":
+                    generator.watchTimeMs = TimeUnit.MINUTES.toMillis(Long.parseLong(value));
+                    break;
+                case "--abr-interval":
+                    generator.abrChangeIntervalMs = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+                    break;
+                case "--stalls-per-minute":
+                    generator.stallsPerMinute = Double.parseDouble(value);
+                    break;
+                case "--seeks-per-minute":
+                    generator.seeksPerMinute = Double.parseDouble(value);
+                    break;
+                case "--max-in-flight":
+                    generator.maxInFlight = Integer.parseInt(value);
+                    break;
+                case "--timeout":
+                    generator.timeoutMs = Integer.parseInt(value);
+                    break;
+                default:
+                    System.err.println(USAGE);
+                    System.exit(1);
+            }
+            i++;
+        }
+
+        JvmKavaPlatform.muteLog();
+        KavaStandInServer server = null;
+        if (generator.url == null) {
+            server = new KavaStandInServer();
+            server.start();
+            generator.url = server.getBaseUrl();
+            System.out.println("No --url, sending to a local stand-in server at " + generator.url);
+        }
+        try {
+            generator.run();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        // This thread becomes the analytics thread: it advances the virtual time and runs all the sessions.
+        executor = new VirtualTimeExecutor(System.currentTimeMillis());
+        executor.install();
+        httpClient = new NioKavaHttpClient(timeoutMs, maxInFlight, latencyRecorder);
+        KavaDispatcher.getInstance().setHttpClient(httpClient);
+
+        long startNanos = System.nanoTime();
+        long reportedMs = 0;
+        long reportedSentCount = 0;
+        long[] reportedLatencies = null;
+        long elapsedMs;
+        while ((elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)) < runTimeMs) {
+            startSessions(rampUpMs > 0 ? Math.min(sessionCount, (int) (sessionCount * elapsedMs / rampUpMs) + 1) : sessionCount);
+            executor.advanceTo(elapsedMs * speed);
+            if (elapsedMs - reportedMs >= REPORT_INTERVAL_MS) {
+                long sentCount = httpClient.getSentCount();
+                long[] latencies = latencyRecorder.snapshot();
+                report(String.format(Locale.US, "%4ds", elapsedMs / 1000), playbacks.size(), sentCount - reportedSentCount, elapsedMs - reportedMs, latencies, reportedLatencies);
+                reportedMs = elapsedMs;
+                reportedSentCount = sentCount;
+                reportedLatencies = latencies;
+            }
+            Thread.sleep(TICK_MS);
+        }
+
+        for (SimulatedPlayback playback : playbacks) {
+            playback.stop();
+        }
+        // Let the closing events go out and wait for the requests in flight.
+        long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(KavaDispatcher.VIEW_EVENTS_FLUSH_WINDOW_MS + timeoutMs);
+        executor.advanceBy(KavaDispatcher.VIEW_EVENTS_FLUSH_WINDOW_MS);
+        while ((httpClient.getInFlightCount() > 0 || executor.getNextDeadline() != -1 && executor.getNextDeadline() <= executor.elapsedRealtimeMs())
+                && System.nanoTime() < drainDeadline) {
+            executor.advanceBy(0);
+            Thread.sleep(TICK_MS);
+        }
+
+        report("total", startedCount, httpClient.getSentCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), latencyRecorder.snapshot(), null);
+    }
+
+    /**
+     * Replace the ended sessions and start new ones up to the count.
+     */
+    private void startSessions(int targetCount) {
+        for (Iterator<SimulatedPlayback> iterator = playbacks.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isEnded()) {
+                iterator.remove();
+            }
+        }
+        while (playbacks.size() < targetCount) {
+            int sessionNumber = startedCount++;
+            boolean isLive = sessionNumber % 100 < liveShare * 100;
+            SimulatedPlayback.Scenario scenario = new SimulatedPlayback.Scenario()
+                    .setLive(isLive)
+                    .setDuration(watchTimeMs)
+                    .setAbrChangeInterval(abrChangeIntervalMs)
+                    .setStallsPerMinute(stallsPerMinute)
+                    .setSeeksPerMinute(seeksPerMinute);
+            KavaAnalyticsConfig pluginConfig = new KavaAnalyticsConfig()
+                    .setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID)
+                    .setEntryId(isLive ? "1_load_live" : "1_load_vod")
+                    .setBaseUrl(url);
+            // A files directory per session, or the sessions of the same entry would continue each other's persisted state.
+            SimulatedPlayback playback = new SimulatedPlayback(executor, JvmKavaPlatform.create(executor), pluginConfig,
+                    "kava-load-" + sessionNumber, scenario, sessionNumber, new KavaSession.Listener() {
+                @Override
+                public void onAnalyticsReport(String eventName) {
+                }
+
+                @Override
+                public void onMetricsReport(KavaMetrics metrics) {
+                }
+
+                @Override
+                public void onProgressMilestone(int milestone, boolean isPercent) {
+                }
+            });
+            playback.start();
+            playbacks.add(playback);
+        }
+    }
+
+    private void report(String label, int sessions, long sentCount, long durationMs, long[] latencies, long[] previousLatencies) {
+        System.out.println(String.format(Locale.US, "%s: %d sessions, %d events (%.1f/s), %d in flight, %d failed, latency us: %s",
+                label, sessions, sentCount, durationMs > 0 ? sentCount * 1000.0 / durationMs : 0, httpClient.getInFlightCount(),
+                httpClient.getFailedCount(), LatencyRecorder.formatPercentiles(latencies, previousLatencies)));
+    }
+}
@@ -0,0 +1,14 @@
+package com.kaltura.playkit.plugins.kava;
+
+/**
+ * Observer of the requests the tools' transports send.
+ */
+interface KavaRequestListener {
+
+    /**
+     * Called when the request is handed to the transport, on the analytics thread.
+     *
+     * @param request - sent request.
+     */
+    void onRequest(KavaRequest request);
+}
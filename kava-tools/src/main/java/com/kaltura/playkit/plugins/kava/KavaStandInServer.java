@@ -0,0 +1,258 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the analytics server: implements the service=analytics&action=trackEvent contract
+ * on the loopback interface, answering in the Json or the plain String response shape, with the faults
+ * of its {@link FaultProfile} injected.
+ */
+final class KavaStandInServer {
+
+    static final String PATH = "/api_v3/index.php";
+
+    static final int STATUS_DROPPED = -1;
+
+    /**
+     * Faults injected into the responses. All the randomness is seeded, so a profile fails the same
+     * requests on every run.
+     */
+    static final class FaultProfile {
+
+        final String name;
+        private long latencyMs;
+        private long latencyJitterMs;
+        private double dropRate;
+        private int serverErrorBurstPeriod;
+        private int serverErrorBurstLength;
+        private long slowBodyMs;
+
+        FaultProfile(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param latencyMs       - time before the response starts, in ms.
+         * @param latencyJitterMs - random extra time on top of the latency, up to this value in ms.
+         */
+        FaultProfile setLatency(long latencyMs, long latencyJitterMs) {
+            this.latencyMs = latencyMs;
+            this.latencyJitterMs = latencyJitterMs;
+            return this;
+        }
+
+        /**
+         * @param dropRate - share of the requests whose connection is closed without any response, 0 to 1.
+         */
+        FaultProfile setDropRate(double dropRate) {
+            this.dropRate = dropRate;
+            return this;
+        }
+
+        /**
+         * @param period - every that many requests a burst starts.
+         * @param length - consecutive requests answered with 503 in every burst.
+         */
+        FaultProfile setServerErrorBurst(int period, int length) {
+            this.serverErrorBurstPeriod = period;
+            this.serverErrorBurstLength = length;
+            return this;
+        }
+
+        /**
+         * @param slowBodyMs - time the response body is trickled over, byte by byte, in ms.
+         */
+        FaultProfile setSlowBody(long slowBodyMs) {
+            this.slowBodyMs = slowBodyMs;
+            return this;
+        }
+
+        /**
+         * @param name - none, latency, loss, burst5xx, slowBody or all.
+         * @return - the named profile, or null if there is no such profile.
+         */
+        static FaultProfile get(String name) {
+            switch (name) {
+                case "none":
+                    return new FaultProfile(name);
+                case "latency":
+                    return new FaultProfile(name).setLatency(300, 400);
+                case "loss":
+                    return new FaultProfile(name).setDropRate(0.1);
+                case "burst5xx":
+                    return new FaultProfile(name).setServerErrorBurst(20, 5);
+                case "slowBody":
+                    return new FaultProfile(name).setSlowBody(2000);
+                case "all":
+                    return new FaultProfile(name).setLatency(300, 400).setDropRate(0.1).setServerErrorBurst(20, 5).setSlowBody(2000);
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * trackEvent request as the server saw it.
+     */
+    static final class ReceivedEvent {
+
+        final String sessionId;
+        final int eventIndex;
+        final String eventType;
+        // HTTP status of the response, or STATUS_DROPPED.
+        final int status;
+
+        ReceivedEvent(String sessionId, int eventIndex, String eventType, int status) {
+            this.sessionId = sessionId;
+            this.eventIndex = eventIndex;
+            this.eventType = eventType;
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "KavaStandInServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<ReceivedEvent> receivedEvents = new ArrayList<>();
+    private final Random random = new Random(0);
+    private volatile FaultProfile faultProfile = FaultProfile.get("none");
+    private volatile boolean isPlainResponse;
+    private int requestCount;
+
+    /**
+     * Bind the server to a free port of the loopback interface.
+     */
+    KavaStandInServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return - base url to set in the KavaAnalyticsConfig.
+     */
+    String getBaseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+    }
+
+    /**
+     * Replace the fault profile and forget the received events.
+     *
+     * @param faultProfile    - faults to inject from now on.
+     * @param isPlainResponse - true to answer with the plain String server time instead of the Json object.
+     */
+    synchronized void reset(FaultProfile faultProfile, boolean isPlainResponse) {
+        this.faultProfile = faultProfile;
+        this.isPlainResponse = isPlainResponse;
+        receivedEvents.clear();
+        requestCount = 0;
+        random.setSeed(0);
+    }
+
+    /**
+     * @return - the trackEvent requests received since the last reset, in arrival order.
+     */
+    synchronized List<ReceivedEvent> getReceivedEvents() {
+        return new ArrayList<>(receivedEvents);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = FakeKavaHttpClient.parseParams(exchange.getRequestURI().toString());
+        if (!"analytics".equals(params.get("service")) || !"trackEvent".equals(params.get("action"))) {
+            respond(exchange, 400, "Unsupported service or action", 0);
+            return;
+        }
+
+        FaultProfile profile = faultProfile;
+        int status;
+        long delayMs;
+        synchronized (this) {
+            int requestNumber = requestCount++;
+            if (random.nextDouble() < profile.dropRate) {
+                status = STATUS_DROPPED;
+            } else if (profile.serverErrorBurstPeriod > 0 && requestNumber % profile.serverErrorBurstPeriod < profile.serverErrorBurstLength) {
+                status = 503;
+            } else {
+                status = 200;
+            }
+            delayMs = profile.latencyMs + (profile.latencyJitterMs > 0 ? (long) (random.nextDouble() * profile.latencyJitterMs) : 0);
+            receivedEvents.add(new ReceivedEvent(params.get("sessionId"), parseInt(params.get("eventIndex")), params.get("eventType"), status));
+        }
+
+        sleep(delayMs);
+        if (status == STATUS_DROPPED) {
+            // Closing the exchange before the headers were sent resets the connection.
+            exchange.close();
+            return;
+        }
+        if (status != 200) {
+            respond(exchange, status, "Service Unavailable", 0);
+            return;
+        }
+        double serverTime = System.currentTimeMillis() / 1000.0;
+        String body = isPlainResponse ? String.format(Locale.US, "%.3f", serverTime)
+                : String.format(Locale.US, "{\"time\":%.3f,\"viewEventsEnabled\":true}", serverTime);
+        respond(exchange, 200, body, profile.slowBodyMs);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, long slowBodyMs) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream output = exchange.getResponseBody();
+        if (slowBodyMs > 0) {
+            for (byte value : bytes) {
+                output.write(value);
+                output.flush();
+                sleep(slowBodyMs / bytes.length);
+            }
+        } else {
+            output.write(bytes);
+        }
+        exchange.close();
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? Integer.parseInt(value) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void sleep(long delayMs) {
+        if (delayMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
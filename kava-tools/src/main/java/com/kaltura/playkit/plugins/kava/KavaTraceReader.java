@@ -0,0 +1,242 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a {@link KavaTrace} file back into the sequence of {@link KavaSession} calls it recorded.
+ */
+final class KavaTraceReader {
+
+    /**
+     * Recorded session call.
+     */
+    interface Call {
+
+        /**
+         * @param session - session to replay the call on, on the analytics thread.
+         * @param clock   - clock of the replay, for the calls that take the player wall time.
+         */
+        void apply(KavaSession session, KavaClock clock);
+    }
+
+    static final class Record {
+
+        final byte type;
+        // Time passed since the previous record, in ms.
+        final long elapsedMs;
+        final Call call;
+
+        Record(byte type, long elapsedMs, Call call) {
+            this.type = type;
+            this.elapsedMs = elapsedMs;
+            this.call = call;
+        }
+    }
+
+    // Oldest trace version the reader still reads.
+    private static final int MIN_VERSION = 1;
+
+    private final DataInputStream input;
+    private final int version;
+
+    private KavaTraceReader(DataInputStream input, int version) {
+        this.input = input;
+        this.version = version;
+    }
+
+    /**
+     * @param file - trace file.
+     * @return - all the records of the trace, in order.
+     * @throws IOException - if the file can't be read or is not a supported trace.
+     */
+    static List<Record> readAll(File file) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (input.readInt() != KavaTrace.MAGIC) {
+                throw new IOException(file + " is not a Kava trace");
+            }
+            int version = input.readInt();
+            if (version < MIN_VERSION || version > KavaTrace.VERSION) {
+                throw new IOException(file + " has unsupported Kava trace version " + version);
+            }
+
+            KavaTraceReader reader = new KavaTraceReader(input, version);
+            List<Record> records = new ArrayList<>();
+            Record record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record);
+            }
+            return records;
+        } finally {
+            input.close();
+        }
+    }
+
+    private Record readRecord() throws IOException {
+        int type = input.read();
+        if (type == -1) {
+            return null;
+        }
+        try {
+            long elapsedMs = readLong();
+            return new Record((byte) type, elapsedMs, readCall((byte) type));
+        } catch (EOFException e) {
+            // The process was killed in the middle of the record, the trace ends with the last full one.
+            return null;
+        }
+    }
+
+    private Call readCall(byte type) throws IOException {
+        switch (type) {
+            case KavaTrace.CONFIG: {
+                KavaAnalyticsConfig pluginConfig = KavaAnalyticsConfigCodec.getInstance().fromJson(readString());
+                return (session, clock) -> session.onUpdateConfig(pluginConfig);
+            }
+            case KavaTrace.MEDIA: {
+                KavaMedia media = null;
+                if (input.readBoolean()) {
+                    String id = readString();
+                    int metadataSize = (int) readLong();
+                    Map<String, String> metadata = new HashMap<>();
+                    for (int i = 0; i < metadataSize; i++) {
+                        metadata.put(readString(), readString());
+                    }
+                    media = new KavaMedia(id, metadata, KavaMediaEntryType.values()[(int) readLong()]);
+                }
+                KavaMedia recordedMedia = media;
+                String sessionId = readString();
+                double targetBuffer = input.readDouble();
+                return (session, clock) -> session.onUpdateMedia(recordedMedia, sessionId, targetBuffer);
+            }
+            case KavaTrace.BUFFERING:
+                return (session, clock) -> session.onBuffering();
+            case KavaTrace.READY:
+                return (session, clock) -> session.onReady();
+            case KavaTrace.CAN_PLAY: {
+                boolean isLive = input.readBoolean();
+                return (session, clock) -> session.onCanPlay(isLive);
+            }
+            case KavaTrace.LOADED_METADATA:
+                return (session, clock) -> session.onLoadedMetadata();
+            case KavaTrace.PLAY:
+                return (session, clock) -> session.onPlay();
+            case KavaTrace.PAUSE:
+                return (session, clock) -> session.onPause();
+            case KavaTrace.PLAYBACK_RATE: {
+                float rate = input.readFloat();
+                return (session, clock) -> session.onPlaybackRateChanged(rate);
+            }
+            case KavaTrace.PLAYING:
+                return (session, clock) -> session.onPlaying();
+            case KavaTrace.SEEKING: {
+                long targetPosition = readLong();
+                return (session, clock) -> session.onSeeking(targetPosition);
+            }
+            case KavaTrace.REPLAY:
+                return (session, clock) -> session.onReplay();
+            case KavaTrace.ENDED:
+                return (session, clock) -> session.onEnded();
+            case KavaTrace.SOURCE_SELECTED: {
+                String deliveryType = readString();
+                boolean isLocalSource = input.readBoolean();
+                return (session, clock) -> session.onSourceSelected(deliveryType, isLocalSource);
+            }
+            case KavaTrace.PLAYBACK_INFO: {
+                long videoBitrate = readLong();
+                return (session, clock) -> session.onPlaybackInfoBitrate(videoBitrate);
+            }
+            case KavaTrace.TRACKS_AVAILABLE: {
+                String audioLanguage = readString();
+                String captionLanguage = readString();
+                return (session, clock) -> session.onTracksAvailable(audioLanguage, captionLanguage);
+            }
+            case KavaTrace.VIDEO_TRACK_CHANGED: {
+                long bitrate = readLong();
+                return (session, clock) -> session.onVideoTrackChanged(bitrate);
+            }
+            case KavaTrace.AUDIO_TRACK_CHANGED: {
+                String language = readString();
+                return (session, clock) -> session.onAudioTrackChanged(language);
+            }
+            case KavaTrace.TEXT_TRACK_CHANGED: {
+                String language = readString();
+                return (session, clock) -> session.onTextTrackChanged(language);
+            }
+            case KavaTrace.BYTES_LOADED: {
+                int segmentType = (int) readLong();
+                long bytesLoaded = readLong();
+                long loadDuration = readLong();
+                return (session, clock) -> session.onBytesLoaded(segmentType, bytesLoaded, loadDuration);
+            }
+            case KavaTrace.SEQUENCE_ID: {
+                String sequenceId = readString();
+                return (session, clock) -> session.onSequenceId(sequenceId);
+            }
+            case KavaTrace.CONNECTION_ACQUIRED: {
+                long connectDurationMs = readLong();
+                return (session, clock) -> session.onConnectionAcquired(connectDurationMs);
+            }
+            case KavaTrace.ERROR: {
+                int errorCode = (int) readLong();
+                String errorDetails = readString();
+                long errorFingerprint = version >= 2 ? readLong() : ErrorFingerprint.NONE;
+                boolean isPlayerError = input.readBoolean();
+                long position = readLong();
+                return (session, clock) -> session.onError(errorCode, errorDetails, errorFingerprint, isPlayerError, position);
+            }
+            case KavaTrace.PLAYHEAD_UPDATED: {
+                long position = readLong();
+                long bufferPosition = readLong();
+                long duration = readLong();
+                return (session, clock) -> session.onPlayheadUpdated(position, bufferPosition, duration);
+            }
+            case KavaTrace.APPLICATION_PAUSED: {
+                long position = readLong();
+                long bufferedPosition = readLong();
+                long duration = readLong();
+                return (session, clock) -> session.onApplicationPaused(clock.currentTimeMillis(), position, bufferedPosition, duration);
+            }
+            case KavaTrace.APPLICATION_RESUMED:
+                return (session, clock) -> session.onApplicationResumed(clock.currentTimeMillis());
+            case KavaTrace.DESTROY:
+                return (session, clock) -> session.destroy();
+            case KavaTrace.AD_STARTED:
+                return (session, clock) -> session.onAdStarted();
+            case KavaTrace.AD_COMPLETED:
+                return (session, clock) -> session.onAdCompleted();
+            case KavaTrace.AD_BUFFER_START:
+                return (session, clock) -> session.onAdBufferStart();
+            case KavaTrace.AD_BUFFER_END:
+                return (session, clock) -> session.onAdBufferEnd();
+            case KavaTrace.AD_ERROR:
+                return (session, clock) -> session.onAdError();
+            default:
+                throw new IOException("Unknown Kava trace record type " + type);
+        }
+    }
+
+    private long readLong() throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int value;
+        do {
+            value = input.readUnsignedByte();
+            zigzag |= (long) (value & 0x7F) << shift;
+            shift += 7;
+        } while ((value & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private String readString() throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
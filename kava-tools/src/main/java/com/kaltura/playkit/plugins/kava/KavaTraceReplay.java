@@ -0,0 +1,172 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Replays recorded {@link KavaTrace} files through a real {@link KavaSession}, on virtual time and a fake
+ * transport, and reports the Kava events the session produced and what producing them cost.
+ * <p>
+ * Usage: KavaTraceReplay [--speed N] [--latency MS] [--params] trace...
+ * <ul>
+ * <li>--speed: virtual time speed up over real time, 1000 by default, 0 to replay as fast as possible.</li>
+ * <li>--latency: response time of the fake analytics server in ms, 100 by default.</li>
+ * <li>--params: print every produced event together with its params.</li>
+ * </ul>
+ */
+final class KavaTraceReplay {
+
+    private static final long DEFAULT_SPEED = 1000;
+    private static final long DEFAULT_LATENCY_MS = 100;
+
+    private final VirtualTimeExecutor executor = new VirtualTimeExecutor(System.currentTimeMillis());
+    private final KavaPlatform platform = JvmKavaPlatform.create(executor);
+    private final long speed;
+    private final long latencyMs;
+    private final boolean printParams;
+    private final List<KavaRequest> sentRequests = new ArrayList<>();
+
+    private KavaTraceReplay(long speed, long latencyMs, boolean printParams) {
+        this.speed = speed;
+        this.latencyMs = latencyMs;
+        this.printParams = printParams;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long speed = DEFAULT_SPEED;
+        long latencyMs = DEFAULT_LATENCY_MS;
+        boolean printParams = false;
+        List<File> traces = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    speed = Long.parseLong(args[++i]);
+                    break;
+                case "--latency":
+                    latencyMs = Long.parseLong(args[++i]);
+                    break;
+                case "--params":
+                    printParams = true;
+                    break;
+                default:
+                    traces.add(new File(args[i]));
+                    break;
+            }
+        }
+        if (traces.isEmpty()) {
+            System.err.println("Usage: KavaTraceReplay [--speed N] [--latency MS] [--params] trace...");
+            System.exit(1);
+        }
+
+        JvmKavaPlatform.muteLog();
+        KavaTraceReplay replay = new KavaTraceReplay(speed, latencyMs, printParams);
+        replay.executor.install();
+        KavaDispatcher.getInstance().setHttpClient(new FakeKavaHttpClient(replay.executor, latencyMs, replay.sentRequests::add));
+        for (File trace : traces) {
+            replay.replay(trace);
+        }
+    }
+
+    private void replay(File trace) throws IOException, InterruptedException {
+        List<KavaTraceReader.Record> records = KavaTraceReader.readAll(trace);
+        sentRequests.clear();
+
+        KavaEventLoop eventLoop = new KavaEventLoop();
+        KavaSession session = new KavaSession(platform, KavaDispatcher.getInstance(), eventLoop, new KavaSession.Listener() {
+            @Override
+            public void onAnalyticsReport(String eventName) {
+            }
+
+            @Override
+            public void onMetricsReport(KavaMetrics metrics) {
+            }
+
+            @Override
+            public void onProgressMilestone(int milestone, boolean isPercent) {
+            }
+        });
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        long startCpuTime = threadMXBean.getCurrentThreadCpuTime();
+        long startAllocatedBytes = getAllocatedBytes(threadMXBean);
+        long startWallTime = System.nanoTime();
+        long startTime = executor.elapsedRealtimeMs();
+        long time = startTime;
+        boolean isDestroyed = false;
+        for (KavaTraceReader.Record record : records) {
+            time += record.elapsedMs;
+            pace(startWallTime, time - startTime);
+            executor.advanceTo(time);
+            eventLoop.post(() -> record.call.apply(session, executor));
+            executor.advanceTo(time);
+            isDestroyed = record.type == KavaTrace.DESTROY;
+        }
+        if (!isDestroyed) {
+            eventLoop.post(session::destroy);
+        }
+        // Let the last delayed VIEW events go out and their responses come back.
+        executor.advanceBy(KavaDispatcher.VIEW_EVENTS_FLUSH_WINDOW_MS + 2 * latencyMs);
+        long wallTimeMs = (System.nanoTime() - startWallTime) / 1000000;
+        long cpuTimeNs = threadMXBean.getCurrentThreadCpuTime() - startCpuTime;
+        long allocatedBytes = startAllocatedBytes >= 0 ? getAllocatedBytes(threadMXBean) - startAllocatedBytes : -1;
+
+        report(trace, records.size(), executor.elapsedRealtimeMs() - startTime, wallTimeMs, cpuTimeNs, allocatedBytes);
+    }
+
+    private void pace(long startWallTime, long virtualElapsedMs) throws InterruptedException {
+        if (speed <= 0) {
+            return;
+        }
+        long sleepMs = virtualElapsedMs / speed - (System.nanoTime() - startWallTime) / 1000000;
+        if (sleepMs > 0) {
+            Thread.sleep(sleepMs);
+        }
+    }
+
+    private void report(File trace, int recordCount, long virtualTimeMs, long wallTimeMs, long cpuTimeNs, long allocatedBytes) {
+        Map<KavaEvents, Integer> eventCounts = new EnumMap<>(KavaEvents.class);
+        for (KavaRequest request : sentRequests) {
+            if (request.event == null) {
+                continue;
+            }
+            Integer count = eventCounts.get(request.event);
+            eventCounts.put(request.event, count != null ? count + 1 : 1);
+            if (printParams) {
+                System.out.println(request.eventIndex + " " + request.event.name() + " " + FakeKavaHttpClient.parseParams(request.url));
+            }
+        }
+
+        int requestCount = sentRequests.size();
+        System.out.println(String.format(Locale.US, "%s: %d records, %d requests, %.1f s of playback replayed in %d ms",
+                trace.getName(), recordCount, requestCount, virtualTimeMs / 1000.0, wallTimeMs));
+        for (Map.Entry<KavaEvents, Integer> eventCount : eventCounts.entrySet()) {
+            System.out.println(String.format(Locale.US, "  %-28s %d", eventCount.getKey().name(), eventCount.getValue()));
+        }
+        System.out.println(String.format(Locale.US, "  cpu: %.2f ms (%.1f us per request)",
+                cpuTimeNs / 1e6, requestCount > 0 ? cpuTimeNs / 1e3 / requestCount : 0));
+        if (allocatedBytes >= 0) {
+            System.out.println(String.format(Locale.US, "  allocated: %d bytes (%d per request)",
+                    allocatedBytes, requestCount > 0 ? allocatedBytes / requestCount : 0));
+        }
+    }
+
+    /**
+     * @return - bytes allocated by the current thread so far, or -1 if the JVM can't tell.
+     */
+    static long getAllocatedBytes(ThreadMXBean threadMXBean) {
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (hotSpotThreadMXBean.isThreadAllocatedMemorySupported() && hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return hotSpotThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free log-linear histogram of latencies: exact below 64, then 32 buckets per power of two
+ * (about 3% precision), so millions of samples take a fixed few KB.
+ */
+final class LatencyRecorder {
+
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKETS = 32;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - 6) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param value - non negative latency sample.
+     */
+    void record(long value) {
+        counts.incrementAndGet(getBucket(Math.max(0, value)));
+    }
+
+    /**
+     * @return - copy of the samples recorded so far.
+     */
+    long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param current  - later snapshot.
+     * @param previous - earlier snapshot of the same recorder, null for none.
+     * @return - p50, p95, p99 and max of the samples recorded between the snapshots.
+     */
+    static String formatPercentiles(long[] current, long[] previous) {
+        long[] samples = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            samples[i] = current[i] - (previous != null ? previous[i] : 0);
+            total += samples[i];
+        }
+        if (total == 0) {
+            return "no samples";
+        }
+        return String.format(Locale.US, "p50 %d, p95 %d, p99 %d, max %d",
+                getPercentile(samples, total, 50), getPercentile(samples, total, 95), getPercentile(samples, total, 99), getPercentile(samples, total, 100));
+    }
+
+    private static long getPercentile(long[] samples, long total, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += samples[i];
+            if (seen >= rank) {
+                return getBucketValue(i);
+            }
+        }
+        return getBucketValue(BUCKETS - 1);
+    }
+
+    static int getBucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - 5));
+        return Math.min(BUCKETS - 1, LINEAR_BUCKETS + (exponent - 6) * SUB_BUCKETS + mantissa - SUB_BUCKETS);
+    }
+
+    /**
+     * @return - the middle of the bucket values.
+     */
+    static long getBucketValue(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 6;
+        long mantissa = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        long lowerBound = mantissa << (exponent - 5);
+        return lowerBound + (1L << (exponent - 5)) / 2;
+    }
+}
@@ -0,0 +1,82 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non blocking {@link KavaHttpClient} on the JDK HTTP client, so thousands of simulated sessions can keep
+ * requests in flight without a thread each. Measures the wall clock latency of every request.
+ */
+final class NioKavaHttpClient implements KavaHttpClient {
+
+    private final HttpClient httpClient;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final Semaphore inFlightPermits;
+    private final LatencyRecorder latencyRecorder;
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong succeededCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param timeoutMs       - connect and response timeout of every request, in ms.
+     * @param maxInFlight     - maximal amount of requests waiting for their response. Sending blocks above it.
+     * @param latencyRecorder - recorder of the request latencies, in microseconds.
+     */
+    NioKavaHttpClient(int timeoutMs, int maxInFlight, LatencyRecorder latencyRecorder) {
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.maxInFlight = maxInFlight;
+        this.inFlightPermits = new Semaphore(maxInFlight);
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    @Override
+    public void execute(KavaRequest request) {
+        HttpRequest.Builder httpRequest = HttpRequest.newBuilder(URI.create(request.url)).timeout(timeout);
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            httpRequest.setHeader(header.getKey(), header.getValue());
+        }
+        httpRequest.method(request.method, request.body != null ? HttpRequest.BodyPublishers.ofString(request.body) : HttpRequest.BodyPublishers.noBody());
+
+        inFlightPermits.acquireUninterruptibly();
+        sentCount.incrementAndGet();
+        long sentNanos = System.nanoTime();
+        httpClient.sendAsync(httpRequest.build(), HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            inFlightPermits.release();
+            boolean isSuccess = error == null && response.statusCode() >= 200 && response.statusCode() < 300;
+            if (isSuccess) {
+                succeededCount.incrementAndGet();
+                latencyRecorder.record((System.nanoTime() - sentNanos) / 1000);
+            } else {
+                failedCount.incrementAndGet();
+            }
+            request.complete(isSuccess, error == null ? response.statusCode() : KavaRequest.STATUS_CODE_UNKNOWN, error == null ? response.body() : null);
+        });
+    }
+
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    long getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    long getFailedCount() {
+        return failedCount.get();
+    }
+
+    int getInFlightCount() {
+        return maxInFlight - inFlightPermits.availablePermits();
+    }
+}
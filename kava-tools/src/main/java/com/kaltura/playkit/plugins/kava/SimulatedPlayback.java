@@ -0,0 +1,233 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.Random;
+
+/**
+ * Player stand-in driving a {@link KavaSession} the way the plugin adapter does, on the analytics thread
+ * of a {@link VirtualTimeExecutor}: start up, playhead updates, segment downloads, ABR switches, stalls and
+ * seeks, to the end of the entry.
+ */
+final class SimulatedPlayback {
+
+    private static final long[] BITRATE_LADDER = {400_000, 800_000, 1_500_000, 2_500_000, 4_500_000};
+    private static final long STARTUP_TIME_MS = 300;
+    private static final long MIN_STALL_MS = 500;
+    private static final long MAX_STALL_MS = 3000;
+    private static final long BUFFER_AHEAD_MS = 20000;
+
+    /**
+     * Behavior of the simulated player. Rates are per minute of playback and drawn per playhead tick.
+     */
+    static final class Scenario {
+
+        private boolean isLive;
+        private long durationMs = 3_600_000;
+        private long playheadIntervalMs = 200;
+        private long segmentDurationMs = 4000;
+        private long abrChangeIntervalMs = 300_000;
+        private double stallsPerMinute;
+        private double seeksPerMinute;
+
+        /**
+         * @param isLive - true for a live entry, played at the live edge until the duration passes.
+         */
+        Scenario setLive(boolean isLive) {
+            this.isLive = isLive;
+            return this;
+        }
+
+        /**
+         * @param durationMs - VOD entry duration, or the time a live entry is watched, in ms.
+         */
+        Scenario setDuration(long durationMs) {
+            this.durationMs = durationMs;
+            return this;
+        }
+
+        /**
+         * @param playheadIntervalMs - player playhead update interval in ms.
+         */
+        Scenario setPlayheadInterval(long playheadIntervalMs) {
+            this.playheadIntervalMs = playheadIntervalMs;
+            return this;
+        }
+
+        /**
+         * @param abrChangeIntervalMs - mean time between video bitrate switches in ms, 0 for none.
+         */
+        Scenario setAbrChangeInterval(long abrChangeIntervalMs) {
+            this.abrChangeIntervalMs = abrChangeIntervalMs;
+            return this;
+        }
+
+        Scenario setStallsPerMinute(double stallsPerMinute) {
+            this.stallsPerMinute = stallsPerMinute;
+            return this;
+        }
+
+        Scenario setSeeksPerMinute(double seeksPerMinute) {
+            this.seeksPerMinute = seeksPerMinute;
+            return this;
+        }
+    }
+
+    private final VirtualTimeExecutor executor;
+    private final KavaEventLoop eventLoop = new KavaEventLoop();
+    private final KavaSession session;
+    private final KavaAnalyticsConfig pluginConfig;
+    private final String sessionId;
+    private final Scenario scenario;
+    private final Random random;
+    private final Runnable tickTask = this::tick;
+
+    private long position;
+    private long nextSegmentPosition;
+    private long nextAbrChangeTime;
+    private long stallEndTime = -1;
+    private int bitrateIndex = 2;
+    private boolean isEnded;
+
+    /**
+     * @param executor     - virtual time the playback runs on, installed as the analytics thread.
+     * @param platform     - platform of the session.
+     * @param pluginConfig - Kava config of the session.
+     * @param sessionId    - player session id.
+     * @param scenario     - player behavior.
+     * @param seed         - seed of the random player behavior.
+     * @param listener     - listener of the session reports.
+     */
+    SimulatedPlayback(VirtualTimeExecutor executor, KavaPlatform platform, KavaAnalyticsConfig pluginConfig, String sessionId,
+                      Scenario scenario, long seed, KavaSession.Listener listener) {
+        this.executor = executor;
+        this.pluginConfig = pluginConfig;
+        this.sessionId = sessionId;
+        this.scenario = scenario;
+        this.random = new Random(seed);
+        this.session = new KavaSession(platform, KavaDispatcher.getInstance(), eventLoop, listener);
+    }
+
+    /**
+     * Load the entry and start playing it. The playback goes on by itself as the virtual time advances.
+     */
+    void start() {
+        KavaMediaEntryType mediaEntryType = scenario.isLive ? KavaMediaEntryType.Live : KavaMediaEntryType.Vod;
+        long bitrate = BITRATE_LADDER[bitrateIndex];
+        long connectDurationMs = 20 + random.nextInt(80);
+        eventLoop.post(() -> {
+            session.onUpdateConfig(pluginConfig);
+            session.onUpdateMedia(new KavaMedia(pluginConfig.getEntryId(), null, mediaEntryType), sessionId, 30);
+            session.onSourceSelected(DataHandler.StreamFormat.AppleHttp.formatName, false);
+            session.onConnectionAcquired(connectDurationMs);
+            session.onTracksAvailable("en", "es");
+            session.onLoadedMetadata();
+            session.onCanPlay(scenario.isLive);
+            session.onVideoTrackChanged(bitrate);
+            session.onPlay();
+        });
+        executor.schedule(() -> eventLoop.post(() -> {
+            session.onPlaybackInfoBitrate(bitrate);
+            session.onPlaying();
+        }), STARTUP_TIME_MS);
+        nextAbrChangeTime = nextAbrChangeTime(STARTUP_TIME_MS);
+        executor.schedule(tickTask, STARTUP_TIME_MS + scenario.playheadIntervalMs);
+    }
+
+    /**
+     * Close the player in the middle of the playback, as the user leaving the screen.
+     */
+    void stop() {
+        if (isEnded) {
+            return;
+        }
+        isEnded = true;
+        eventLoop.post(session::destroy);
+    }
+
+    boolean isEnded() {
+        return isEnded;
+    }
+
+    KavaSession getSession() {
+        return session;
+    }
+
+    private void tick() {
+        if (isEnded) {
+            return;
+        }
+        long now = executor.elapsedRealtimeMs();
+        if (stallEndTime >= 0) {
+            if (now >= stallEndTime) {
+                stallEndTime = -1;
+                eventLoop.post(session::onReady);
+            }
+        } else {
+            position += scenario.playheadIntervalMs;
+            maybeStall(now);
+            maybeSeek();
+            maybeChangeBitrate(now);
+        }
+
+        while (nextSegmentPosition <= position + BUFFER_AHEAD_MS) {
+            long segmentBytes = BITRATE_LADDER[bitrateIndex] / 8 * scenario.segmentDurationMs / 1000;
+            long loadDuration = 100 + random.nextInt(900);
+            eventLoop.post(() -> session.onBytesLoaded(KavaSession.SEGMENT_VIDEO, segmentBytes, loadDuration));
+            nextSegmentPosition += scenario.segmentDurationMs;
+        }
+
+        long playheadPosition = position;
+        long duration = scenario.isLive ? position + BUFFER_AHEAD_MS : scenario.durationMs;
+        eventLoop.post(() -> session.onPlayheadUpdated(playheadPosition, Math.min(playheadPosition + BUFFER_AHEAD_MS, duration), duration));
+
+        if (position >= scenario.durationMs) {
+            isEnded = true;
+            eventLoop.post(() -> {
+                if (!scenario.isLive) {
+                    session.onEnded();
+                }
+                session.destroy();
+            });
+            return;
+        }
+        executor.schedule(tickTask, scenario.playheadIntervalMs);
+    }
+
+    private void maybeStall(long now) {
+        if (random.nextDouble() < scenario.stallsPerMinute * scenario.playheadIntervalMs / 60000) {
+            stallEndTime = now + MIN_STALL_MS + (long) (random.nextDouble() * (MAX_STALL_MS - MIN_STALL_MS));
+            eventLoop.post(session::onBuffering);
+        }
+    }
+
+    private void maybeSeek() {
+        if (scenario.isLive || random.nextDouble() >= scenario.seeksPerMinute * scenario.playheadIntervalMs / 60000) {
+            return;
+        }
+        long targetPosition = (long) (random.nextDouble() * scenario.durationMs);
+        position = targetPosition;
+        nextSegmentPosition = targetPosition;
+        eventLoop.post(() -> {
+            session.onSeeking(targetPosition);
+            session.onPlaying();
+        });
+    }
+
+    private void maybeChangeBitrate(long now) {
+        if (scenario.abrChangeIntervalMs <= 0 || now < nextAbrChangeTime) {
+            return;
+        }
+        nextAbrChangeTime = nextAbrChangeTime(now);
+        int step = random.nextBoolean() ? 1 : -1;
+        bitrateIndex = Math.max(0, Math.min(BITRATE_LADDER.length - 1, bitrateIndex + step));
+        long bitrate = BITRATE_LADDER[bitrateIndex];
+        eventLoop.post(() -> {
+            session.onVideoTrackChanged(bitrate);
+            session.onPlaybackInfoBitrate(bitrate);
+        });
+    }
+
+    private long nextAbrChangeTime(long now) {
+        // Exponentially distributed, with the configured mean.
+        return now + (long) (-Math.log(1 - random.nextDouble()) * scenario.abrChangeIntervalMs);
+    }
+}
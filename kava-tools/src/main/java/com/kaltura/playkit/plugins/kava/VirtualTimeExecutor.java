@@ -0,0 +1,162 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analytics thread executor and clock running on virtual time. Tasks run on the thread that advances the
+ * time, in deadline order and in submission order for the same deadline, so a replay is deterministic
+ * and a whole session takes only the CPU time of its tasks.
+ * Tasks may be submitted from any thread, e.g. by a real transport completing requests; they run on the
+ * next advance.
+ */
+final class VirtualTimeExecutor implements KavaScheduler.Executor, KavaClock {
+
+    private final PriorityQueue<VirtualTask> tasks = new PriorityQueue<>();
+    private final long wallClockOrigin;
+    private volatile long now;
+    private long sequence;
+
+    /**
+     * @param wallClockOrigin - wall clock time of the virtual time 0, in ms.
+     */
+    VirtualTimeExecutor(long wallClockOrigin) {
+        this.wallClockOrigin = wallClockOrigin;
+    }
+
+    /**
+     * Make this executor the Kava analytics thread. Must be called before any Kava session is created.
+     */
+    void install() {
+        KavaScheduler.setExecutor(this, this);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        schedule(task, 0);
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        VirtualTask virtualTask = new VirtualTask(task, now + Math.max(0, delayMs), sequence++);
+        tasks.add(virtualTask);
+        return virtualTask;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return wallClockOrigin + now;
+    }
+
+    @Override
+    public long elapsedRealtimeMs() {
+        return now;
+    }
+
+    /**
+     * Run all the tasks due up to the time, including the tasks they schedule, then move the clock to it.
+     *
+     * @param time - virtual time in ms, not earlier than the current one.
+     */
+    void advanceTo(long time) {
+        VirtualTask task;
+        while ((task = pollDueTask(time)) != null) {
+            task.task.run();
+        }
+        synchronized (this) {
+            now = Math.max(now, time);
+        }
+    }
+
+    void advanceBy(long delayMs) {
+        advanceTo(now + delayMs);
+    }
+
+    /**
+     * @return - deadline of the next pending task, or -1 if there is none.
+     */
+    synchronized long getNextDeadline() {
+        VirtualTask task;
+        while ((task = tasks.peek()) != null && task.isCancelled) {
+            tasks.poll();
+        }
+        return task != null ? task.deadline : -1;
+    }
+
+    private synchronized VirtualTask pollDueTask(long time) {
+        VirtualTask task;
+        while ((task = tasks.peek()) != null && task.deadline <= time) {
+            tasks.poll();
+            if (!task.isCancelled) {
+                now = Math.max(now, task.deadline);
+                task.isDone = true;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private final class VirtualTask implements ScheduledFuture<Object>, Comparable<Delayed> {
+
+        final Runnable task;
+        final long deadline;
+        final long sequence;
+        volatile boolean isCancelled;
+        volatile boolean isDone;
+
+        VirtualTask(Runnable task, long deadline, long sequence) {
+            this.task = task;
+            this.deadline = deadline;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - now, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other instanceof VirtualTask) {
+                VirtualTask otherTask = (VirtualTask) other;
+                if (deadline != otherTask.deadline) {
+                    return deadline < otherTask.deadline ? -1 : 1;
+                }
+                return sequence < otherTask.sequence ? -1 : (sequence == otherTask.sequence ? 0 : 1);
+            }
+            long delay = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
+            return delay < 0 ? -1 : (delay == 0 ? 0 : 1);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (isDone || isCancelled) {
+                return false;
+            }
+            isCancelled = true;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return isDone || isCancelled;
+        }
+
+        @Override
+        public Object get() {
+            return null;
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.kaltura.playkit.plugins.kava;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Budgets of the allocation tests, read from {@value #RESOURCE}.
+ */
+final class KavaAllocationBudgets {
+
+    static final String RESOURCE = "kava-allocation-budgets.properties";
+    private static final String DEFAULT_EVENT_BUDGET = "default";
+
+    private final Properties budgets = new Properties();
+
+    KavaAllocationBudgets() throws IOException {
+        InputStream input = KavaAllocationBudgets.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if (input == null) {
+            throw new IOException(RESOURCE + " is missing from the test resources");
+        }
+        try {
+            budgets.load(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return - bytes allowed per event of the type.
+     */
+    long getEventBudget(KavaEvents event) {
+        return get(budgets.getProperty(event.name()) != null ? event.name() : DEFAULT_EVENT_BUDGET);
+    }
+
+    /**
+     * @return - the budget in bytes.
+     */
+    long get(String name) {
+        String budget = budgets.getProperty(name);
+        if (budget == null) {
+            throw new IllegalStateException("No " + name + " budget in " + RESOURCE);
+        }
+        return Long.parseLong(budget.trim());
+    }
+}
@@ -0,0 +1,68 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End to end delivery through the real dispatcher and an HTTP transport to the {@link KavaStandInServer}:
+ * the delivery ratio, duplicates and ordering of the profiles whose outcome does not depend on timing.
+ * Real time, about 10 seconds per profile. The latency bounds and the other fault profiles are checked by
+ * the opt-in deliveryCheck task.
+ */
+@RunWith(Parameterized.class)
+public class KavaDeliveryTest {
+
+    private static final int SESSIONS = 4;
+    private static final int DURATION_SEC = 6;
+
+    private static KavaStandInServer server;
+
+    private final String profileName;
+    private final boolean isPlainResponse;
+    private final KavaDeliveryCheck.Thresholds thresholds;
+
+    @Parameterized.Parameters(name = "{0}, plain response {1}")
+    public static List<Object[]> profiles() {
+        return Arrays.asList(new Object[][]{
+                {"none", false, new KavaDeliveryCheck.Thresholds(1.0, 0, 0, KavaDeliveryCheck.ANY)},
+                {"none", true, new KavaDeliveryCheck.Thresholds(1.0, 0, 0, KavaDeliveryCheck.ANY)},
+                // 5 of every 20 requests fail, failed requests are not sent again.
+                {"burst5xx", false, new KavaDeliveryCheck.Thresholds(0.6, 0, KavaDeliveryCheck.ANY, KavaDeliveryCheck.ANY)},
+        });
+    }
+
+    public KavaDeliveryTest(String profileName, boolean isPlainResponse, KavaDeliveryCheck.Thresholds thresholds) {
+        this.profileName = profileName;
+        this.isPlainResponse = isPlainResponse;
+        this.thresholds = thresholds;
+    }
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        JvmKavaPlatform.muteLog();
+        server = new KavaStandInServer();
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void deliversWithinProfileThresholds() throws InterruptedException {
+        KavaDeliveryCheck.Result result = new KavaDeliveryCheck(server, SESSIONS, DURATION_SEC, isPlainResponse)
+                .run(KavaStandInServer.FaultProfile.get(profileName));
+        List<String> missed = thresholds.check(result);
+        assertTrue(String.join(", ", missed) + "\n" + result, missed.isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Bytes allocated per event on the event path as the session runs it: collecting the params, then building
+ * the request with its url. Counted by the thread allocation counter, after a warm up, so the JIT compiled
+ * code with its escape analysis is measured and not the interpreter.
+ */
+@RunWith(Parameterized.class)
+public class KavaEventAllocationTest {
+
+    private static final int ITERATIONS = 20000;
+
+    private static KavaAllocationBudgets budgets;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final KavaEvents event;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> events() {
+        List<Object[]> events = new ArrayList<>();
+        for (KavaEvents event : KavaEvents.values()) {
+            events.add(new Object[]{event});
+        }
+        return events;
+    }
+
+    public KavaEventAllocationTest(KavaEvents event) {
+        this.event = event;
+    }
+
+    @BeforeClass
+    public static void loadBudgets() throws IOException {
+        JvmKavaPlatform.muteLog();
+        budgets = new KavaAllocationBudgets();
+    }
+
+    @Test
+    public void allocatesWithinBudget() {
+        assumeTrue("This JVM can't count the bytes allocated per thread", KavaTraceReplay.getAllocatedBytes(threadMXBean) >= 0);
+
+        DataHandler dataHandler = KavaFixtures.createPlayingDataHandler(KavaClock.SYSTEM);
+        runEvent(dataHandler, ITERATIONS);
+        long startAllocatedBytes = KavaTraceReplay.getAllocatedBytes(threadMXBean);
+        runEvent(dataHandler, ITERATIONS);
+        long bytesPerEvent = (KavaTraceReplay.getAllocatedBytes(threadMXBean) - startAllocatedBytes) / ITERATIONS;
+
+        long budget = budgets.getEventBudget(event);
+        assertTrue("Nothing allocated per " + event + " event, the measurement is broken", bytesPerEvent > 0);
+        assertTrue(event + " allocates " + bytesPerEvent + " bytes per event, over the budget of " + budget, bytesPerEvent <= budget);
+    }
+
+    private void runEvent(DataHandler dataHandler, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            if (event == KavaEvents.ERROR) {
+                // ERROR params are reset once reported.
+                dataHandler.handleAdError(1005, KavaFixtures.ERROR_DETAILS, KavaFixtures.ERROR_FINGERPRINT);
+            }
+            Map<String, String> params = dataHandler.collectData(event, KavaMediaEntryType.Vod, false);
+            KavaRequestFactory.sendAnalyticsEvent(KavaAnalyticsConfig.DEFAULT_BASE_URL, JvmKavaPlatform.USER_AGENT, params, event, i, null);
+        }
+    }
+}
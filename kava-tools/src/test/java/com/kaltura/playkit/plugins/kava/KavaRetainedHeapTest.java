@@ -0,0 +1,104 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Heap retained by one session after an hour of simulated playback, ABR switches and stalls included,
+ * over the heap retained before the session was created, and its growth since the first minutes. Every reading is taken after full collections
+ * repeated until the used heap settles, a heap that does not settle or a reading of 0 or less fails the
+ * test instead of passing as noise.
+ */
+public class KavaRetainedHeapTest {
+
+    private static final long WARM_UP_PLAYBACK_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MEASURED_PLAYBACK_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final int MAX_GC_PASSES = 20;
+    // Consecutive readings within the tolerance for the heap to count as settled.
+    private static final int SETTLED_READINGS = 3;
+    private static final long SETTLED_TOLERANCE_BYTES = 1024;
+
+    private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+    @Test
+    public void sessionRetainsHeapWithinBudget() throws Exception {
+        KavaAllocationBudgets budgets = new KavaAllocationBudgets();
+        long budget = budgets.get("retainedHeap");
+        long growthBudget = budgets.get("retainedHeapGrowth");
+        JvmKavaPlatform.muteLog();
+        VirtualTimeExecutor executor = new VirtualTimeExecutor(System.currentTimeMillis());
+        executor.install();
+        KavaDispatcher.getInstance().setHttpClient(new FakeKavaHttpClient(executor, 50, null));
+        KavaAnalyticsConfig pluginConfig = new KavaAnalyticsConfig()
+                .setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID)
+                .setEntryId(KavaFixtures.ENTRY_ID);
+        SimulatedPlayback.Scenario scenario = new SimulatedPlayback.Scenario()
+                .setDuration(WARM_UP_PLAYBACK_MS + MEASURED_PLAYBACK_MS + TimeUnit.MINUTES.toMillis(1))
+                .setStallsPerMinute(0.2);
+        KavaPlatform platform = JvmKavaPlatform.create(executor);
+
+        long baselineHeap = getSettledHeap();
+        SimulatedPlayback playback = new SimulatedPlayback(executor, platform, pluginConfig,
+                KavaFixtures.SESSION_ID, scenario, 0, new KavaSession.Listener() {
+            @Override
+            public void onAnalyticsReport(String eventName) {
+            }
+
+            @Override
+            public void onMetricsReport(KavaMetrics metrics) {
+            }
+
+            @Override
+            public void onProgressMilestone(int milestone, boolean isPercent) {
+            }
+        });
+        playback.start();
+        executor.advanceTo(WARM_UP_PLAYBACK_MS);
+        long warmUpRetainedHeap = getSettledHeap() - baselineHeap;
+        executor.advanceTo(WARM_UP_PLAYBACK_MS + MEASURED_PLAYBACK_MS);
+        long retainedHeap = getSettledHeap() - baselineHeap;
+
+        assertFalse("The simulated playback ended before the measurement", playback.isEnded());
+        assertTrue("Session retains " + warmUpRetainedHeap + " bytes after its first minutes, the measurement is broken", warmUpRetainedHeap > 0);
+        assertTrue("Session retains " + retainedHeap + " bytes after an hour, the measurement is broken", retainedHeap > 0);
+        assertTrue("Session retains " + retainedHeap + " bytes after an hour, over the budget of " + budget, retainedHeap <= budget);
+        // The growth may be 0 or less once the session dropped state of its first minutes, a leak makes it grow.
+        long retainedHeapGrowth = retainedHeap - warmUpRetainedHeap;
+        assertTrue("Session retained " + retainedHeapGrowth + " more bytes over the hour, over the budget of " + growthBudget,
+                retainedHeapGrowth <= growthBudget);
+        // The session must be reachable up to the last reading.
+        Reference.reachabilityFence(playback);
+    }
+
+    /**
+     * @return - used heap after full collections, once it stopped changing, in bytes.
+     */
+    private long getSettledHeap() throws InterruptedException {
+        long previousHeap = -1;
+        int settledReadings = 0;
+        for (int i = 0; i < MAX_GC_PASSES; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long heap = memoryMXBean.getHeapMemoryUsage().getUsed();
+            if (previousHeap >= 0 && Math.abs(heap - previousHeap) <= SETTLED_TOLERANCE_BYTES) {
+                if (++settledReadings == SETTLED_READINGS) {
+                    return heap;
+                }
+            } else {
+                settledReadings = 0;
+            }
+            previousHeap = heap;
+        }
+        fail("The used heap did not settle within " + MAX_GC_PASSES + " full collections, last reading " + previousHeap + " bytes");
+        return -1;
+    }
+}
@@ -0,0 +1,172 @@
+package com.kaltura.playkit.plugins.kava;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Buffer time of the content around ads, through a real {@link KavaSession} on virtual time.
+ */
+public class KavaSessionBufferingTest {
+
+    private static VirtualTimeExecutor executor;
+    private static final List<KavaRequest> requests = new ArrayList<>();
+
+    private KavaEventLoop eventLoop;
+    private KavaSession session;
+
+    @BeforeClass
+    public static void installExecutor() {
+        JvmKavaPlatform.muteLog();
+        executor = new VirtualTimeExecutor(System.currentTimeMillis());
+        executor.install();
+        KavaDispatcher.getInstance().setHttpClient(new FakeKavaHttpClient(executor, 50, requests::add));
+    }
+
+    @Before
+    public void startSession() {
+        eventLoop = new KavaEventLoop();
+        session = new KavaSession(JvmKavaPlatform.create(executor), KavaDispatcher.getInstance(), eventLoop, new KavaSession.Listener() {
+            @Override
+            public void onAnalyticsReport(String eventName) {
+            }
+
+            @Override
+            public void onMetricsReport(KavaMetrics metrics) {
+            }
+
+            @Override
+            public void onProgressMilestone(int milestone, boolean isPercent) {
+            }
+        });
+        KavaAnalyticsConfig pluginConfig = new KavaAnalyticsConfig()
+                .setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID)
+                .setEntryId(KavaFixtures.ENTRY_ID);
+        post(() -> session.onUpdateConfig(pluginConfig));
+        startMedia();
+        // Settle the flush window of the start events.
+        advance(2000);
+        requests.clear();
+    }
+
+    @After
+    public void destroySession() {
+        post(session::destroy);
+        advance(2000);
+        requests.clear();
+    }
+
+    @Test
+    public void contentBufferingDuringAdIsNotCounted() {
+        post(session::onBuffering);
+        advance(1000);
+        post(session::onReady);
+        advance(3000);
+        post(session::onAdStarted);
+        advance(2000);
+        post(session::onBuffering);
+        advance(4000);
+        post(session::onReady);
+        advance(1000);
+        post(session::onAdCompleted);
+        advance(15000);
+
+        // Only the content buffering before the ad.
+        assertEquals("1.0", getLastView().get("bufferTimeSum"));
+        assertEquals(1, count(KavaEvents.BUFFER_START));
+        assertEquals(1, count(KavaEvents.BUFFER_END));
+    }
+
+    @Test
+    public void contentBufferingIsCountedFromTheAdEnd() {
+        advance(3000);
+        post(session::onAdStarted);
+        advance(2000);
+        post(session::onBuffering);
+        advance(4000);
+        post(session::onAdCompleted);
+        advance(2000);
+        post(session::onReady);
+        advance(15000);
+
+        assertEquals("2.0", getLastView().get("bufferTimeSum"));
+        assertEquals(1, count(KavaEvents.BUFFER_START));
+        assertEquals(1, count(KavaEvents.BUFFER_END));
+    }
+
+    @Test
+    public void adStartEndsContentBuffering() {
+        advance(3000);
+        post(session::onBuffering);
+        advance(1000);
+        post(session::onAdStarted);
+        advance(5000);
+        post(session::onReady);
+        advance(1000);
+        post(session::onAdCompleted);
+        advance(15000);
+
+        assertEquals("1.0", getLastView().get("bufferTimeSum"));
+        assertEquals(1, count(KavaEvents.BUFFER_START));
+        assertEquals(1, count(KavaEvents.BUFFER_END));
+    }
+
+    @Test
+    public void mediaChangeEndsBuffering() {
+        advance(3000);
+        post(session::onBuffering);
+        advance(1000);
+        startMedia();
+        advance(2000);
+        requests.clear();
+        advance(15000);
+
+        assertEquals("0.0", getLastView().get("bufferTimeSum"));
+    }
+
+    private void startMedia() {
+        post(() -> {
+            session.onUpdateMedia(new KavaMedia(KavaFixtures.ENTRY_ID, null, KavaMediaEntryType.Vod), KavaFixtures.SESSION_ID, 30);
+            session.onSourceSelected(DataHandler.StreamFormat.AppleHttp.formatName, false);
+            session.onLoadedMetadata();
+            session.onCanPlay(false);
+            session.onPlay();
+            session.onPlaying();
+        });
+    }
+
+    private void post(Runnable event) {
+        eventLoop.post(event);
+        executor.advanceBy(0);
+    }
+
+    private static void advance(long delayMs) {
+        executor.advanceBy(delayMs);
+    }
+
+    private static Map<String, String> getLastView() {
+        for (int i = requests.size() - 1; i >= 0; i--) {
+            if (requests.get(i).event == KavaEvents.VIEW) {
+                return FakeKavaHttpClient.parseParams(requests.get(i).url);
+            }
+        }
+        throw new AssertionError("No VIEW sent");
+    }
+
+    private static int count(KavaEvents event) {
+        int count = 0;
+        for (KavaRequest request : requests) {
+            if (request.event == event) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
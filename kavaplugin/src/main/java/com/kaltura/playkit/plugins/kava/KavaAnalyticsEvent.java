@@ -21,10 +21,14 @@ import com.kaltura.playkit.PKEvent;
 public class KavaAnalyticsEvent implements PKEvent {
 
     public static final Class<KavaAnalyticsReport> reportSent = KavaAnalyticsReport.class;
+    public static final Class<KavaMetricsReport> metricsReport = KavaMetricsReport.class;
+    public static final Class<KavaProgressMilestoneReport> progressMilestone = KavaProgressMilestoneReport.class;
 
 
     public enum Type {
-        REPORT_SENT
+        REPORT_SENT,
+        METRICS_REPORT,
+        PROGRESS_MILESTONE
     }
 
     public static class KavaAnalyticsReport extends KavaAnalyticsEvent {
@@ -36,6 +40,42 @@ public class KavaAnalyticsEvent implements PKEvent {
         }
     }
 
+    /**
+     * Posted after every VIEW event report, holds the delivery pipeline counters.
+     */
+    public static class KavaMetricsReport extends KavaAnalyticsEvent {
+
+        public final KavaMetrics metrics;
+
+        public KavaMetricsReport(KavaMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Enum eventType() {
+            return Type.METRICS_REPORT;
+        }
+    }
+
+    /**
+     * Posted when the playback reached a configured progress milestone other than the PLAY_REACHED events.
+     */
+    public static class KavaProgressMilestoneReport extends KavaAnalyticsEvent {
+
+        public final int milestone;
+        public final boolean isPercent;
+
+        public KavaProgressMilestoneReport(int milestone, boolean isPercent) {
+            this.milestone = milestone;
+            this.isPercent = isPercent;
+        }
+
+        @Override
+        public Enum eventType() {
+            return Type.PROGRESS_MILESTONE;
+        }
+    }
+
     @Override
     public Enum eventType() {
         return Type.REPORT_SENT;
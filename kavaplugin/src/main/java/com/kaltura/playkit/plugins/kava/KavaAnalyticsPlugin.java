@@ -13,39 +13,40 @@
 package com.kaltura.playkit.plugins.kava;
 
 import android.content.Context;
-import android.text.TextUtils;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.kaltura.android.exoplayer2.C;
-import com.kaltura.netkit.connect.executor.APIOkRequestsExecutor;
-import com.kaltura.netkit.connect.executor.RequestQueue;
-import com.kaltura.netkit.connect.request.RequestBuilder;
-import com.kaltura.netkit.connect.response.ResponseElement;
-import com.kaltura.netkit.utils.OnRequestCompletion;
 import com.kaltura.playkit.MessageBus;
 import com.kaltura.playkit.PKError;
+import com.kaltura.playkit.PKEvent;
 import com.kaltura.playkit.PKLog;
 import com.kaltura.playkit.PKMediaConfig;
 import com.kaltura.playkit.PKMediaEntry;
+import com.kaltura.playkit.PKMediaFormat;
+import com.kaltura.playkit.PKMediaSource;
 import com.kaltura.playkit.PKPlugin;
 import com.kaltura.playkit.Player;
 import com.kaltura.playkit.PlayerEvent;
-import com.kaltura.playkit.PlayerState;
-
+import com.kaltura.playkit.ads.PKAdErrorType;
+import com.kaltura.playkit.player.AudioTrack;
+import com.kaltura.playkit.player.PKPlayerErrorType;
+import com.kaltura.playkit.player.PKTracks;
+import com.kaltura.playkit.player.PlayerSettings;
+import com.kaltura.playkit.player.TextTrack;
 import com.kaltura.playkit.player.metadata.PKMetadata;
 import com.kaltura.playkit.player.metadata.PKTextInformationFrame;
+import com.kaltura.playkit.plugins.ads.AdEvent;
 import com.kaltura.playkit.plugin.kava.BuildConfig;
 import com.kaltura.playkit.utils.Consts;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.text.DecimalFormat;
-import java.util.Map;
+import java.io.File;
+import java.util.List;
 
 /**
  * Created by anton.afanasiev on 27/09/2017.
+ * Adapter between the player and the platform independent {@link KavaSession}. Listeners are called
+ * on the player thread, they only translate the player events into plain values and hand them over to
+ * the analytics thread, which owns all the Kava state.
  */
 
 public class KavaAnalyticsPlugin extends PKPlugin {
@@ -53,33 +54,13 @@ public class KavaAnalyticsPlugin extends PKPlugin {
     private static final PKLog log = PKLog.get(KavaAnalyticsPlugin.class.getSimpleName());
     private static final String TEXT = "TEXT";
 
+    private static volatile File traceDirectory;
+
     private Player player;
+    private KavaPlatform platform;
     private MessageBus messageBus;
-    private PlayerState playerState;
-    private PKMediaConfig mediaConfig;
-    private DataHandler dataHandler;
-    private RequestQueue requestExecutor;
-    private KavaAnalyticsConfig pluginConfig;
-
-    private PlayerEvent.PlayheadUpdated playheadUpdated;
-    private boolean playReached25;
-    private boolean playReached50;
-    private boolean playReached75;
-    private boolean playReached100;
-
-    private boolean isAutoPlay;
-    private boolean isImpressionSent;
-    private boolean isBufferingStart;
-    private boolean isEnded = false;
-    private boolean isPaused = true;
-    private Boolean isFirstPlay;
-    private boolean isFatalError;
-    private boolean isLiveMedia;
-
-    private ViewTimer viewTimer;
-    private ViewTimer.ViewEventTrigger viewEventTrigger = initViewTrigger();
-    private long applicationBackgroundTimeStamp;
-    private DecimalFormat decimalFormat;
+    private KavaSession session;
+    private final KavaEventLoop eventLoop = new KavaEventLoop();
 
     public static final Factory factory = new Factory() {
         @Override
@@ -99,177 +80,193 @@ public class KavaAnalyticsPlugin extends PKPlugin {
 
         @Override
         public void warmUp(Context context) {
-
+            //The baseUrl is not known yet, the connection is opened by onLoad.
+            KavaScheduler.execute(() -> {
+                KavaAndroidEnvironment.getPlatform(context);
+                installHttpClient(KavaDispatcher.getInstance());
+            });
         }
     };
 
+    /**
+     * Prepare the analytics path ahead of the first playback, on the Kava analytics thread: read the user agent
+     * and package name, encode the default referrer and open the connection to the analytics endpoint.
+     * The factory warm up does the same without opening the connection.
+     *
+     * @param context - any context of the application.
+     * @param baseUrl - analytics endpoint the plugin is configured with.
+     */
+    public static void warmUp(Context context, String baseUrl) {
+        KavaScheduler.execute(() -> {
+            KavaPlatform platform = KavaAndroidEnvironment.getPlatform(context);
+            KavaDispatcher dispatcher = KavaDispatcher.getInstance();
+            installHttpClient(dispatcher);
+            dispatcher.preconnect(baseUrl, platform.userAgent);
+        });
+    }
+
+    private static void installHttpClient(KavaDispatcher dispatcher) {
+        if (!dispatcher.hasHttpClient()) {
+            dispatcher.setHttpClient(new KavaNetkitHttpClient());
+        }
+    }
+
     @Override
     protected void onLoad(Player player, Object config, MessageBus messageBus, Context context) {
         log.d("onLoad");
-        decimalFormat = new DecimalFormat("#");
-        decimalFormat.setMaximumFractionDigits(3);
         this.player = player;
         this.messageBus = messageBus;
-        this.requestExecutor = APIOkRequestsExecutor.getSingleton();
-        addListeners();
-        dataHandler = new DataHandler(context, player);
-        onUpdateConfig(config);
-    }
-
-    private void addListeners() {
-        messageBus.addListener(this, PlayerEvent.stateChanged, event -> {
-            handleStateChanged(event);
-        });
+        KavaPlatform platform = KavaAndroidEnvironment.getPlatform(context);
+        this.platform = platform;
+        KavaDispatcher dispatcher = KavaDispatcher.getInstance();
+        eventLoop.post(() -> installHttpClient(dispatcher));
+        session = new KavaSession(platform, dispatcher, eventLoop, new KavaSession.Listener() {
+            @Override
+            public void onAnalyticsReport(String eventName) {
+                messageBus.post(new KavaAnalyticsEvent.KavaAnalyticsReport(eventName));
+            }
 
-        this.messageBus.addListener(this, PlayerEvent.canPlay, event -> {
-            isLiveMedia = player.isLive();
-            if (isFirstPlay == null || isFirstPlay) {
-                dataHandler.handleCanPlay();
+            @Override
+            public void onMetricsReport(KavaMetrics metrics) {
+                messageBus.post(new KavaAnalyticsEvent.KavaMetricsReport(metrics));
             }
-        });
 
-        messageBus.addListener(this, PlayerEvent.loadedMetadata, event -> {
-            if (!isImpressionSent) {
-                sendAnalyticsEvent(KavaEvents.IMPRESSION);
-                dataHandler.handleLoadedMetaData();
-                if (isAutoPlay) {
-                    sendAnalyticsEvent(KavaEvents.PLAY_REQUEST);
-                    isAutoPlay = false;
-                }
-                isImpressionSent = true;
+            @Override
+            public void onProgressMilestone(int milestone, boolean isPercent) {
+                messageBus.post(new KavaAnalyticsEvent.KavaProgressMilestoneReport(milestone, isPercent));
             }
         });
+        final File traceDirectory = KavaAnalyticsPlugin.traceDirectory;
+        if (traceDirectory != null) {
+            final File traceFile = new File(traceDirectory, "kava-" + System.currentTimeMillis() + "-" + System.identityHashCode(this) + KavaTrace.FILE_EXTENSION);
+            eventLoop.post(() -> session.setTraceWriter(new KavaTraceWriter(platform.clock, traceFile)));
+        }
+        onUpdateConfig(config);
+    }
 
-        messageBus.addListener(this, PlayerEvent.play, event -> {
-            if (isFirstPlay == null) {
-                dataHandler.handleFirstPlay();
-            }
+    /**
+     * Record the player events of the plugin instances loaded from now on to trace files, one per instance,
+     * for replaying problem sessions off the device. Traces hold the full session data, enable them only on
+     * test devices or for a limited time.
+     *
+     * @param traceDirectory - directory of the trace files, or null to stop tracing new instances.
+     */
+    public static void setTraceDirectory(File traceDirectory) {
+        if (traceDirectory != null && !traceDirectory.isDirectory() && !traceDirectory.mkdirs()) {
+            log.w("Can not create Kava trace directory " + traceDirectory);
+            return;
+        }
+        KavaAnalyticsPlugin.traceDirectory = traceDirectory;
+    }
 
-            if (isImpressionSent && (isFirstPlay == null || !isPaused)) {
-                sendAnalyticsEvent(KavaEvents.PLAY_REQUEST);
-            } else {
-                isAutoPlay = true;
-            }
-            if (isFirstPlay == null) {
-                isFirstPlay = true;
+    private void addListeners(KavaAnalyticsConfig pluginConfig) {
+        // Listeners that feed only disabled events or parameter groups are not registered.
+        messageBus.addListener(this, PlayerEvent.stateChanged, event -> {
+            switch (event.newState) {
+                case BUFFERING:
+                    eventLoop.post(() -> session.onBuffering());
+                    break;
+                case READY:
+                    eventLoop.post(() -> session.onReady());
+                    break;
             }
         });
 
-        messageBus.addListener(this, PlayerEvent.pause, event -> {
-            setIsPaused(true);
-            sendAnalyticsEvent(KavaEvents.PAUSE);
+        this.messageBus.addListener(this, PlayerEvent.canPlay, event -> {
+            final boolean isLive = player.isLive();
+            eventLoop.post(() -> session.onCanPlay(isLive));
         });
 
-        messageBus.addListener(this, PlayerEvent.playbackRateChanged, event -> {
-            dataHandler.handlePlaybackSpeed(event);
-            sendAnalyticsEvent(KavaEvents.SPEED);
-        });
+        messageBus.addListener(this, PlayerEvent.loadedMetadata, event -> eventLoop.post(() -> session.onLoadedMetadata()));
 
-        messageBus.addListener(this, PlayerEvent.playing, event -> {
-            if (isFirstPlay == null || isFirstPlay) {
-                isFirstPlay = false;
-                sendAnalyticsEvent(KavaEvents.PLAY);
-                sendAnalyticsEvent(KavaEvents.VIEW);
-                startViewTimer();
-            } else {
-                if (isPaused && !isEnded) {
-                    sendAnalyticsEvent(KavaEvents.RESUME);
-                }
-            }
-            isEnded = false; // needed in order to prevent sending RESUME event after REPLAY.
-            setIsPaused(false);
-        });
+        messageBus.addListener(this, PlayerEvent.play, event -> eventLoop.post(() -> session.onPlay()));
 
-        messageBus.addListener(this, PlayerEvent.seeking, event -> {
-            PKMediaEntry.MediaEntryType mediaEntryType = getMediaEntryType();
-            if((isFirstPlay == null || isFirstPlay) && (isLiveMedia || PKMediaEntry.MediaEntryType.Live.equals(mediaEntryType)|| PKMediaEntry.MediaEntryType.DvrLive.equals(mediaEntryType))) {
-                return;
-            }
-            dataHandler.handleSeek(event);
-            sendAnalyticsEvent(KavaEvents.SEEK);
-        });
+        messageBus.addListener(this, PlayerEvent.pause, event -> eventLoop.post(() -> session.onPause()));
 
-        messageBus.addListener(this, PlayerEvent.replay, event -> {
-            sendAnalyticsEvent(KavaEvents.REPLAY);
-        });
+        messageBus.addListener(this, PlayerEvent.playbackRateChanged, event -> eventLoop.post(() -> session.onPlaybackRateChanged(event.rate)));
 
-        messageBus.addListener(this, PlayerEvent.sourceSelected, event -> {
-            dataHandler.handleSourceSelected(event);
-        });
+        messageBus.addListener(this, PlayerEvent.playing, event -> eventLoop.post(() -> session.onPlaying()));
 
-        messageBus.addListener(this, PlayerEvent.ended, event -> {
-            PKMediaEntry.MediaEntryType mediaType = getMediaEntryType();
-            boolean isLive = (isLiveMedia || mediaType == PKMediaEntry.MediaEntryType.Live || mediaType == PKMediaEntry.MediaEntryType.DvrLive);
-            if (!isLive) {
-                maybeSentPlayerReachedEvent();
-                if (!playReached100) {
-                    playReached100 = true;
-                    sendAnalyticsEvent(KavaEvents.PLAY_REACHED_100_PERCENT);
-                }
-            }
+        if (pluginConfig.isEventEnabled(KavaEvents.SEEK)) {
+            messageBus.addListener(this, PlayerEvent.seeking, event -> eventLoop.post(() -> session.onSeeking(event.targetPosition)));
+        }
+
+        if (pluginConfig.isEventEnabled(KavaEvents.REPLAY)) {
+            messageBus.addListener(this, PlayerEvent.replay, event -> eventLoop.post(() -> session.onReplay()));
+        }
 
-            isEnded = true;
-            setIsPaused(true);
+        messageBus.addListener(this, PlayerEvent.sourceSelected, event -> {
+            final String deliveryType = getDeliveryType(event.source);
+            final boolean isLocalSource = isLocalSource(event.source);
+            eventLoop.post(() -> session.onSourceSelected(deliveryType, isLocalSource));
         });
 
+        messageBus.addListener(this, PlayerEvent.ended, event -> eventLoop.post(() -> session.onEnded()));
+
         messageBus.addListener(this, PlayerEvent.playbackInfoUpdated, event -> {
-            if (dataHandler.handleTrackChange(event, Consts.TRACK_TYPE_VIDEO)) {
-                sendAnalyticsEvent(KavaEvents.FLAVOR_SWITCHED);
-            }
+            final long videoBitrate = event.playbackInfo.getVideoBitrate();
+            eventLoop.post(() -> session.onPlaybackInfoBitrate(videoBitrate));
         });
 
         messageBus.addListener(this, PlayerEvent.tracksAvailable, event -> {
-            dataHandler.handleTracksAvailable(event);
+            final String audioLanguage = getDefaultAudioLanguage(event.tracksInfo);
+            final String captionLanguage = getDefaultCaptionLanguage(event.tracksInfo);
+            eventLoop.post(() -> session.onTracksAvailable(audioLanguage, captionLanguage));
         });
 
         messageBus.addListener(this, PlayerEvent.videoTrackChanged, event -> {
-            dataHandler.handleTrackChange(event, Consts.TRACK_TYPE_VIDEO);
-            sendAnalyticsEvent(KavaEvents.SOURCE_SELECTED);
+            final long bitrate = event.newTrack.getBitrate();
+            eventLoop.post(() -> session.onVideoTrackChanged(bitrate));
         });
 
         messageBus.addListener(this, PlayerEvent.audioTrackChanged, event -> {
-            dataHandler.handleTrackChange(event, Consts.TRACK_TYPE_AUDIO);
-            sendAnalyticsEvent(KavaEvents.AUDIO_SELECTED);
+            final String language = event.newTrack.getLanguage();
+            eventLoop.post(() -> session.onAudioTrackChanged(language));
         });
 
         messageBus.addListener(this, PlayerEvent.textTrackChanged, event -> {
-            dataHandler.handleTrackChange(event, Consts.TRACK_TYPE_TEXT);
-            sendAnalyticsEvent(KavaEvents.CAPTIONS);
+            final String language = event.newTrack.getLanguage();
+            eventLoop.post(() -> session.onTextTrackChanged(language));
         });
 
-        messageBus.addListener(this, PlayerEvent.bytesLoaded, event -> {
-            //log.d("bytesLoaded = " + event.trackType + " load time " + event.loadDuration);
-            if (C.TRACK_TYPE_VIDEO == event.trackType || C.TRACK_TYPE_DEFAULT == event.trackType) {
-                dataHandler.handleSegmentDownloadTime(event);
-            } else if (C.TRACK_TYPE_UNKNOWN == event.trackType){
-                dataHandler.handleManifestDownloadTime(event);
-            }
-        });
+        if (isViewParamsGroupEnabled(pluginConfig, KavaParamsGroup.SEGMENT_DOWNLOAD)) {
+            messageBus.addListener(this, PlayerEvent.bytesLoaded, event -> {
+                //log.d("bytesLoaded = " + event.trackType + " load time " + event.loadDuration);
+                final int segmentType = getSegmentType(event.trackType);
+                if (segmentType < 0) {
+                    return;
+                }
+                final long bytesLoaded = event.bytesLoaded;
+                final long loadDuration = event.loadDuration;
+                eventLoop.post(() -> session.onBytesLoaded(segmentType, bytesLoaded, loadDuration));
+            });
+        }
 
-        messageBus.addListener(this, PlayerEvent.metadataAvailable, event -> {
-            log.d("metadataAvailable = " + event.eventType());
-            for (PKMetadata pkMetadata : event.metadataList){
-                if (pkMetadata instanceof PKTextInformationFrame) {
-                    PKTextInformationFrame textFrame = (PKTextInformationFrame) pkMetadata;
-                    if (textFrame != null) {
-                        if (TEXT.equals(textFrame.id)) {
-                            try {
-                                if(textFrame.value != null) {
-                                    JSONObject textFrameValue = new JSONObject(textFrame.value);
-                                    String flavorParamsId = textFrameValue.getString("sequenceId");
-                                    //log.d("metadataAvailable Received user text: flavorParamsId = " + flavorParamsId);
-                                    dataHandler.handleSequenceId(flavorParamsId); //flavorParamsId = sequenceId from {"timestamp":1573049629312,"sequenceId":"32"}
-                                }
-                            } catch (JSONException e) {
-                                //e.printStackTrace();
-                                log.e("Failed to parse the sequenceId from TEXT ID3 frame");
-                                return;
-                            }
-                        }
+        if (isViewParamsGroupEnabled(pluginConfig, KavaParamsGroup.SEQUENCE_ID)) {
+            messageBus.addListener(this, PlayerEvent.metadataAvailable, event -> {
+                //Only the last TEXT frame of the event matters, it holds the current sequenceId.
+                String textFrameValue = null;
+                for (PKMetadata pkMetadata : event.metadataList) {
+                    if (pkMetadata instanceof PKTextInformationFrame && TEXT.equals(((PKTextInformationFrame) pkMetadata).id)) {
+                        textFrameValue = ((PKTextInformationFrame) pkMetadata).value; //flavorParamsId = sequenceId from {"timestamp":1573049629312,"sequenceId":"32"}
                     }
                 }
-            }
-        });
+                if (textFrameValue == null) {
+                    return;
+                }
+                final String frameValue = textFrameValue;
+                eventLoop.post(() -> session.onId3TextFrame(frameValue));
+            });
+        }
+
+        if (pluginConfig.isParamsGroupEnabled(KavaParamsGroup.ADS)) {
+            messageBus.addListener(this, AdEvent.started, event -> eventLoop.post(() -> session.onAdStarted()));
+            messageBus.addListener(this, AdEvent.completed, event -> eventLoop.post(() -> session.onAdCompleted()));
+            messageBus.addListener(this, AdEvent.skipped, event -> eventLoop.post(() -> session.onAdCompleted()));
+            messageBus.addListener(this, AdEvent.adBufferStart, event -> eventLoop.post(() -> session.onAdBufferStart()));
+            messageBus.addListener(this, AdEvent.adBufferEnd, event -> eventLoop.post(() -> session.onAdBufferEnd()));
+            messageBus.addListener(this, AdEvent.error, event -> eventLoop.post(() -> session.onAdError()));
+        }
 
         messageBus.addListener(this, PlayerEvent.error, event -> {
             PKError error =  event.error;
@@ -277,332 +274,235 @@ public class KavaAnalyticsPlugin extends PKPlugin {
                 log.v("Error eventType = " + error.errorType + " severity = " + error.severity + " errorMessage = " + error.message);
                 return;
             }
-            dataHandler.handleError(event, isFirstPlay, player.getCurrentPosition());
-            sendAnalyticsEvent(KavaEvents.ERROR);
-            if (viewTimer != null) {
-                viewTimer.setViewEventTrigger(null);
-                viewTimer.stop();
-            }
-        });
-        
-        messageBus.addListener(this, PlayerEvent.playheadUpdated, event -> {
-            playheadUpdated = event;
-            //log.d("playheadUpdated event  position = " + playheadUpdated.position + " duration = " + playheadUpdated.duration);
-            PKMediaEntry.MediaEntryType mediaType = getMediaEntryType();
-            boolean isLive = (isLiveMedia || mediaType == PKMediaEntry.MediaEntryType.Live || mediaType == PKMediaEntry.MediaEntryType.DvrLive);
-            if (!isLive) {
-                maybeSentPlayerReachedEvent();
-            }
+            final long position = player.getCurrentPosition();
+            final int errorCode = getErrorCode(error);
+            final boolean isPlayerError = error != null && error.errorType instanceof PKPlayerErrorType;
+            final String errorDetails = getErrorDetails(event, error);
+            final long errorFingerprint = getErrorFingerprint(error, errorCode);
+            eventLoop.post(() -> session.onError(errorCode, errorDetails, errorFingerprint, isPlayerError, position));
         });
 
-        messageBus.addListener(this, PlayerEvent.connectionAcquired, event -> {
-            dataHandler.handleConnectionAcquired(event);
-        });
-
-    }
+        if (isPlayheadNeeded(pluginConfig)) {
+            messageBus.addListener(this, PlayerEvent.playheadUpdated, event -> {
+                //log.d("playheadUpdated event  position = " + event.position + " duration = " + event.duration);
+                final long position = event.position;
+                final long bufferPosition = event.bufferPosition;
+                final long duration = event.duration;
+                eventLoop.post(() -> session.onPlayheadUpdated(position, bufferPosition, duration));
+            });
+        }
 
-    private PKMediaEntry.MediaEntryType getMediaEntryType() {
-        PKMediaEntry.MediaEntryType mediaType = PKMediaEntry.MediaEntryType.Unknown;
-        if (mediaConfig != null && mediaConfig.getMediaEntry() != null) {
-            mediaType = mediaConfig.getMediaEntry().getMediaType();
+        if (isViewParamsGroupEnabled(pluginConfig, KavaParamsGroup.NETWORK)) {
+            messageBus.addListener(this, PlayerEvent.connectionAcquired, event -> {
+                if (event.uriConnectionAcquiredInfo != null) {
+                    final long connectDurationMs = event.uriConnectionAcquiredInfo.connectDurationMs;
+                    eventLoop.post(() -> session.onConnectionAcquired(connectDurationMs));
+                }
+            });
         }
-        return mediaType;
-    }
 
-    @Override
-    protected void onUpdateMedia(PKMediaConfig mediaConfig) {
-        log.d("onUpdateMedia");
-        this.mediaConfig = mediaConfig;
-        isLiveMedia = false;
-        clearViewTimer();
-        dataHandler.onUpdateMedia(mediaConfig, pluginConfig);
-        resetFlags();
-        viewTimer = new ViewTimer();
-        viewTimer.setViewEventTrigger(viewEventTrigger);
     }
 
-    @Override
-    protected void onUpdateConfig(Object config) {
-        this.pluginConfig = parsePluginConfig(config);
-        dataHandler.onUpdateConfig(pluginConfig);
+    private static boolean isViewParamsGroupEnabled(KavaAnalyticsConfig pluginConfig, KavaParamsGroup paramsGroup) {
+        return pluginConfig.isEventEnabled(KavaEvents.VIEW) && pluginConfig.isParamsGroupEnabled(paramsGroup);
     }
 
-    @Override
-    protected void onApplicationPaused() {
-        log.d("onApplicationPaused");
+    private static boolean isPlayheadNeeded(KavaAnalyticsConfig pluginConfig) {
+        return pluginConfig.isParamsGroupEnabled(KavaParamsGroup.PLAYHEAD)
+                || pluginConfig.isEventEnabled(KavaEvents.PLAY_REACHED_25_PERCENT)
+                || pluginConfig.isEventEnabled(KavaEvents.PLAY_REACHED_50_PERCENT)
+                || pluginConfig.isEventEnabled(KavaEvents.PLAY_REACHED_75_PERCENT)
+                || pluginConfig.isEventEnabled(KavaEvents.PLAY_REACHED_100_PERCENT)
+                || pluginConfig.getProgressMilestones() != null
+                || pluginConfig.getProgressMilestonesSeconds() != null;
+    }
 
-        applicationBackgroundTimeStamp = System.currentTimeMillis();
-        if (dataHandler != null) {
-            PKMediaEntry.MediaEntryType mediaEntryType = getMediaEntryType();
-            dataHandler.onApplicationPaused(mediaEntryType);
-        }
-        if (viewTimer != null) {
-            viewTimer.setViewEventTrigger(null);
-            viewTimer.stop();
+    /**
+     * @return - one of the KavaSession.SEGMENT_ constants, or -1 for the track types that are not measured.
+     */
+    private static int getSegmentType(int trackType) {
+        if (C.TRACK_TYPE_VIDEO == trackType || C.TRACK_TYPE_DEFAULT == trackType) {
+            return KavaSession.SEGMENT_VIDEO;
+        } else if (C.TRACK_TYPE_AUDIO == trackType) {
+            return KavaSession.SEGMENT_AUDIO;
+        } else if (C.TRACK_TYPE_TEXT == trackType) {
+            return KavaSession.SEGMENT_TEXT;
+        } else if (C.TRACK_TYPE_UNKNOWN == trackType) {
+            return KavaSession.SEGMENT_MANIFEST;
         }
+        return -1;
     }
 
-    @Override
-    protected void onApplicationResumed() {
-        log.d("onApplicationResumed");
-
-        long currentTimeInSeconds = System.currentTimeMillis() - applicationBackgroundTimeStamp;
-        if (dataHandler != null) {
-            if (currentTimeInSeconds >= ViewTimer.MAX_ALLOWED_VIEW_IDLE_TIME) {
-                dataHandler.handleViewEventSessionClosed();
+    private static String getDeliveryType(PKMediaSource selectedSource) {
+        if (selectedSource != null && selectedSource.getMediaFormat() != null) {
+            PKMediaFormat selectedSourceMediaFormat = selectedSource.getMediaFormat();
+            switch (selectedSourceMediaFormat) {
+                case dash:
+                case hls:
+                    return selectedSourceMediaFormat.name();
             }
-            dataHandler.setOnApplicationResumed();
         }
-        startViewTimer();
+        return DataHandler.StreamFormat.Url.formatName;
     }
 
-    private void startViewTimer() {
-        if (viewTimer != null) {
-            viewTimer.setViewEventTrigger(viewEventTrigger);
-            viewTimer.start();
+    private static boolean isLocalSource(PKMediaSource source) {
+        String url = source != null ? source.getUrl() : null;
+        if (url == null) {
+            return false;
         }
+        return url.startsWith("/") || url.startsWith("file:") || url.startsWith("content:");
     }
 
-    @Override
-    protected void onDestroy() {
-        if (messageBus != null) {
-            messageBus.removeListeners(this);
+    private static String getDefaultAudioLanguage(PKTracks trackInfo) {
+        if (trackInfo == null) {
+            return null;
         }
-        clearViewTimer();
+        List<AudioTrack> trackInfoAudioTracks = trackInfo.getAudioTracks();
+        int defaultAudioTrackIndex = trackInfo.getDefaultAudioTrackIndex();
+        if (defaultAudioTrackIndex < trackInfoAudioTracks.size() && trackInfoAudioTracks.get(defaultAudioTrackIndex) != null) {
+            return trackInfoAudioTracks.get(defaultAudioTrackIndex).getLanguage();
+        }
+        return null;
     }
 
-    private void clearViewTimer() {
-        if (viewTimer != null) {
-            viewTimer.setViewEventTrigger(null);
-            viewTimer.stop();
-            viewTimer = null;
+    private static String getDefaultCaptionLanguage(PKTracks trackInfo) {
+        if (trackInfo == null) {
+            return null;
+        }
+        List<TextTrack> trackInfoTextTracks = trackInfo.getTextTracks();
+        int defaultTextTrackIndex = trackInfo.getDefaultTextTrackIndex();
+        if (defaultTextTrackIndex < trackInfoTextTracks.size() && trackInfoTextTracks.get(defaultTextTrackIndex) != null) {
+            return trackInfoTextTracks.get(defaultTextTrackIndex).getLanguage();
         }
+        return null;
     }
 
-    private void handleStateChanged(PlayerEvent.StateChanged event) {
-        switch (event.newState) {
-            case BUFFERING:
-                playerState = PlayerState.BUFFERING;
-                //We should start count buffering time only after IMPRESSION was sent.
-                if (isImpressionSent) {
-                    dataHandler.handleBufferingStart();
-                    sendAnalyticsEvent(KavaEvents.BUFFER_START);
-                    isBufferingStart = true;
-                }
-                break;
-            case READY:
-                playerState = PlayerState.READY;
-                dataHandler.handleBufferingEnd();
-                if (isBufferingStart) {
-                    sendAnalyticsEvent(KavaEvents.BUFFER_END);
-                    isBufferingStart = false;
-                }
-                break;
+    private static int getErrorCode(PKError error) {
+        if (error != null && error.errorType instanceof PKPlayerErrorType) {
+            return ((PKPlayerErrorType) error.errorType).errorCode;
+        } else if (error != null && error.errorType instanceof PKAdErrorType) {
+            return ((PKAdErrorType) error.errorType).errorCode;
         }
+        return -1;
     }
 
-    private void sendAnalyticsEvent(final KavaEvents event) {
+    private static String getErrorDetails(PKEvent event, PKError error) {
+        if (error == null || !(error.errorType instanceof PKPlayerErrorType || error.errorType instanceof PKAdErrorType)) {
+            return null;
+        }
+        String errorTypeName = error.errorType != null ? error.errorType.name() : null;
+        return DataHandler.buildErrorDetails(error.message, errorTypeName, error.exception, event.eventType().name());
+    }
 
-        if (isInputInvalid())
-            return;
+    private static long getErrorFingerprint(PKError error, int errorCode) {
+        if (error == null || !(error.errorType instanceof PKPlayerErrorType || error.errorType instanceof PKAdErrorType)) {
+            return ErrorFingerprint.NONE;
+        }
+        return ErrorFingerprint.of(errorCode, error.errorType.name(), error.exception);
+    }
 
-        if (isFatalError) {
-            return;
+    private static KavaMediaEntryType getMediaEntryType(PKMediaConfig mediaConfig) {
+        PKMediaEntry.MediaEntryType mediaType = PKMediaEntry.MediaEntryType.Unknown;
+        if (mediaConfig != null && mediaConfig.getMediaEntry() != null) {
+            mediaType = mediaConfig.getMediaEntry().getMediaType();
+        }
+        if (mediaType == null) {
+            return KavaMediaEntryType.Unknown;
         }
-        if (event == KavaEvents.ERROR) {
-            isFatalError = true;
+        switch (mediaType) {
+            case Vod:
+                return KavaMediaEntryType.Vod;
+            case Live:
+                return KavaMediaEntryType.Live;
+            case DvrLive:
+                return KavaMediaEntryType.Dvr;
+            default:
+                return KavaMediaEntryType.Unknown;
         }
+    }
 
-        Map<String, String> params = dataHandler.collectData(event, mediaConfig.getMediaEntry().getMediaType(), isLiveMedia, playheadUpdated);
+    /**
+     * @return - max player buffer in seconds, or -1 if not available.
+     */
+    private double getPlayerTargetBuffer() {
+        if (player != null && player.getSettings() instanceof PlayerSettings) {
+            return ((PlayerSettings) player.getSettings()).getLoadControlBuffers().getMaxPlayerBufferMs() / Consts.MILLISECONDS_MULTIPLIER_FLOAT;
+        }
+        return -1;
+    }
 
-        RequestBuilder requestBuilder = KavaService.sendAnalyticsEvent(pluginConfig.getBaseUrl(), dataHandler.getUserAgent(), params);
-        requestBuilder.completion(new OnRequestCompletion() {
-            @Override
-            public void onComplete(ResponseElement response) {
-                log.d("onComplete: " + event.name());
-                try {
-                    if(response == null || response.getResponse() == null) {
-                        log.w("Kava event response is null");
-                        return;
-                    }
-                    //If response is in Json format, handle it and update required values.
-                    JSONObject jsonObject = new JSONObject(response.getResponse());
-                    if (decimalFormat != null) {
-                        dataHandler.setSessionStartTime(decimalFormat.format(jsonObject.optDouble("time")));
-                    }
-                    if (viewTimer != null) {
-                        viewTimer.setViewEventsEnabled(jsonObject.optBoolean("viewEventsEnabled", true));
-                    }
-                } catch (JSONException e) {
-                    //If no, exception thrown, we will treat response as String format.
-                    if (response.getResponse() != null) {
-                        dataHandler.setSessionStartTime(response.getResponse());
-                    }
-                }
+    @Override
+    protected void onUpdateMedia(PKMediaConfig mediaConfig) {
+        log.d("onUpdateMedia");
+        final String sessionId = player != null ? player.getSessionId() : null;
+        final double targetBuffer = getPlayerTargetBuffer();
+        final PKMediaEntry mediaEntry = mediaConfig != null ? mediaConfig.getMediaEntry() : null;
+        final KavaMedia media = mediaEntry != null ? new KavaMedia(mediaEntry.getId(), mediaEntry.getMetadata(), getMediaEntryType(mediaConfig)) : null;
+        eventLoop.post(() -> session.onUpdateMedia(media, sessionId, targetBuffer));
+    }
 
-                messageBus.post(new KavaAnalyticsEvent.KavaAnalyticsReport(event.name()));
-            }
+    @Override
+    protected void onUpdateConfig(Object config) {
+        final KavaAnalyticsConfig pluginConfig = parsePluginConfig(config);
+        //The set of listeners depends on the enabled events, so they are registered again.
+        messageBus.removeListeners(this);
+        addListeners(pluginConfig);
+        final String userAgent = platform.userAgent;
+        eventLoop.post(() -> {
+            session.onUpdateConfig(pluginConfig);
+            KavaDispatcher.getInstance().preconnect(pluginConfig.getBaseUrl(), userAgent);
         });
-        log.d("request sent " + requestBuilder.build().getUrl());
-        requestExecutor.queue(requestBuilder.build());
     }
 
-    private boolean isInputInvalid() {
-        if (mediaConfig == null || mediaConfig.getMediaEntry() == null) {
-            return true;
-        }
-
-        if (!isValidEntryId()) {
-            if (dataHandler != null && pluginConfig.getPartnerId() == null && pluginConfig.getEntryId() == null) {
-                pluginConfig.setPartnerId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID);
-                pluginConfig.setEntryId(KavaAnalyticsConfig.DEFAULT_KAVA_ENTRY_ID);
-                dataHandler.updatePartnerAndEntryId(KavaAnalyticsConfig.DEFAULT_KAVA_PARTNER_ID, KavaAnalyticsConfig.DEFAULT_KAVA_ENTRY_ID);
-            } else {
-                return true;
-            }
-        }
-
-        if (!pluginConfig.isPartnerIdValid()) {
-            int ovpPartnerId = getOvpPartnerId(mediaConfig);
-            String entryId = dataHandler != null ? dataHandler.populateEntryId(mediaConfig, pluginConfig) : null;
-            if (dataHandler != null && ovpPartnerId > 0 && !TextUtils.isEmpty(entryId)) {
-                log.d("Getting ovpPartnerId from metadata");
-                pluginConfig.setPartnerId(ovpPartnerId);
-                pluginConfig.setEntryId(entryId);
-                dataHandler.updatePartnerAndEntryId(ovpPartnerId, entryId);
-                return false;
-            }
+    @Override
+    protected void onApplicationPaused() {
+        log.d("onApplicationPaused");
 
-            log.w("Can not send analytics event. Mandatory field partnerId is missing");
-            return true;
-        }
-        return false;
+        final long backgroundTimeStamp = System.currentTimeMillis();
+        //Player is destroyed during onApplicationPaused call, so its values must be read right now.
+        final long position = player != null ? player.getCurrentPosition() : 0;
+        final long bufferedPosition = player != null ? player.getBufferedPosition() : 0;
+        final long duration = player != null ? player.getDuration() : 0;
+        eventLoop.post(() -> session.onApplicationPaused(backgroundTimeStamp, position, bufferedPosition, duration));
     }
 
-    private boolean isValidEntryId() {
-
-        if (mediaConfig == null || mediaConfig.getMediaEntry() == null) {
-            return false;
-        }
+    @Override
+    protected void onApplicationResumed() {
+        log.d("onApplicationResumed");
 
-        boolean mediaEntryValid = true;
-        if (mediaConfig.getMediaEntry().getId() == null) {
-            log.w("Can not send analytics event. Mandatory field entryId is missing");
-            mediaEntryValid = false;
-        } else {
-            // for OTT assetId is not valid for Kava
-            mediaEntryValid = mediaEntryValid && !TextUtils.isDigitsOnly(mediaConfig.getMediaEntry().getId());
-        }
+        final long foregroundTimeStamp = System.currentTimeMillis();
+        eventLoop.post(() -> session.onApplicationResumed(foregroundTimeStamp));
+    }
 
-        boolean metadataVaild = true;
-        if ((pluginConfig == null || TextUtils.isEmpty(pluginConfig.getEntryId())) && !isEntryIdInMetadata()) {
-            log.w("Can not send analytics event. Mandatory field entryId is missing");
-            metadataVaild = false;
+    @Override
+    protected void onDestroy() {
+        if (messageBus != null) {
+            messageBus.removeListeners(this);
         }
-
-        return mediaEntryValid || metadataVaild;
+        eventLoop.post(() -> session.destroy());
     }
 
-    private boolean isEntryIdInMetadata() {
-        return (mediaConfig != null && mediaConfig.getMediaEntry() != null &&
-                mediaConfig.getMediaEntry().getMetadata() != null) &&
-                mediaConfig.getMediaEntry().getMetadata().containsKey("entryId") &&
-                !TextUtils.isEmpty(mediaConfig.getMediaEntry().getMetadata().get("entryId"));
+    /**
+     * @return - readable dump of the recent Kava events of all the players and their delivery status.
+     */
+    public static String dumpFlightRecorder() {
+        return KavaDispatcher.getInstance().getFlightRecorder().dump();
     }
 
-    private int getOvpPartnerId(PKMediaConfig pkMediaConfig) {
-        if (mediaConfig == null) {
-            return 0;
-        }
-
-        final String kavaPartnerIdKey = "kavaPartnerId";
-        int ovpPartnerId = 0;
-        if (pkMediaConfig.getMediaEntry() != null && pkMediaConfig.getMediaEntry().getMetadata() != null) {
-            if (pkMediaConfig.getMediaEntry().getMetadata().containsKey(kavaPartnerIdKey)) {
-                String partnerId = pkMediaConfig.getMediaEntry().getMetadata().get(kavaPartnerIdKey);
-                ovpPartnerId = Integer.parseInt(partnerId != null && TextUtils.isDigitsOnly(partnerId) && !TextUtils.isEmpty(partnerId) ? partnerId : "0");
-            }
-        }
-        return ovpPartnerId;
+    /**
+     * @return - process wide counters of the Kava delivery pipeline, shared by all the player instances.
+     */
+    public static KavaMetrics getMetrics() {
+        return KavaDispatcher.getInstance().getMetrics();
     }
 
     private KavaAnalyticsConfig parsePluginConfig(Object config) {
         if (config instanceof KavaAnalyticsConfig) {
             return (KavaAnalyticsConfig) config;
         } else if (config instanceof JsonObject) {
-            return new Gson().fromJson((JsonObject) config, KavaAnalyticsConfig.class);
+            return KavaAnalyticsConfigCodec.getInstance().fromJson((JsonObject) config);
         }
         // If no config passed, create default one.
         return new KavaAnalyticsConfig();
     }
-
-    private void maybeSentPlayerReachedEvent() {
-        float progress = 0f;
-        if (playheadUpdated != null && playheadUpdated.position >= 0 && playheadUpdated.duration > 0) {
-            progress = (float) playheadUpdated.position / playheadUpdated.duration;
-        }
-        if (progress < 0.25) {
-            return;
-        }
-
-        if (!playReached25) {
-            playReached25 = true;
-            sendAnalyticsEvent(KavaEvents.PLAY_REACHED_25_PERCENT);
-        }
-
-        if (!playReached50 && progress >= 0.5) {
-            playReached50 = true;
-            sendAnalyticsEvent(KavaEvents.PLAY_REACHED_50_PERCENT);
-        }
-
-        if (!playReached75 && progress >= 0.75) {
-            playReached75 = true;
-            sendAnalyticsEvent(KavaEvents.PLAY_REACHED_75_PERCENT);
-        }
-    }
-
-    private void setIsPaused(boolean isPaused) {
-        this.isPaused = isPaused;
-        if (viewTimer != null) {
-            if (isPaused) {
-                viewTimer.pause();
-            } else {
-                viewTimer.resume();
-            }
-        }
-    }
-
-    private void resetFlags() {
-        setIsPaused(true);
-        isEnded = false;
-        isFirstPlay = null;
-        isLiveMedia = false;
-        isFatalError = false;
-        isImpressionSent = false;
-        isBufferingStart = false;
-        playReached25 = playReached50 = playReached75 = playReached100 = false;
-        playheadUpdated = null;
-    }
-
-    private ViewTimer.ViewEventTrigger initViewTrigger() {
-        return new ViewTimer.ViewEventTrigger() {
-            @Override
-            public void onTriggerViewEvent() {
-                //When we send VIEW event, while player is buffering we should
-                //manually update buffer time. So we will simulate handleBufferEnd()
-                if (playerState == PlayerState.BUFFERING) {
-                    dataHandler.handleBufferingEnd();
-                }
-                sendAnalyticsEvent(KavaEvents.VIEW);
-            }
-
-            @Override
-            public void onResetViewEvent() {
-                dataHandler.handleViewEventSessionClosed();
-            }
-
-            @Override
-            public void onTick() {}
-        };
-    }
 }
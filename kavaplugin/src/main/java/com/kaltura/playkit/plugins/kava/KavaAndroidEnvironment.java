@@ -0,0 +1,110 @@
+package com.kaltura.playkit.plugins.kava;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import com.kaltura.playkit.PKLog;
+import com.kaltura.playkit.PlayKitManager;
+import com.kaltura.playkit.Utils;
+
+/**
+ * Android side of the {@link KavaPlatform}: network and sound state read from the system services,
+ * and the Kava log routed to {@link PKLog}.
+ */
+class KavaAndroidEnvironment implements KavaNetworkInfo, KavaAudioState {
+
+    private final Context context;
+    private final AudioManager audioManager;
+
+    private KavaAndroidEnvironment(Context context) {
+        this.context = context;
+        this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    private static KavaPlatform platform;
+
+    /**
+     * The platform values are read once, either by the factory warm up or by the first plugin instance.
+     *
+     * @param context - any context of the application.
+     * @return - platform of the Kava sessions of this application.
+     */
+    static synchronized KavaPlatform getPlatform(Context context) {
+        if (platform == null) {
+            Context applicationContext = context.getApplicationContext();
+            platform = createPlatform(applicationContext != null ? applicationContext : context);
+        }
+        return platform;
+    }
+
+    private static KavaPlatform createPlatform(Context context) {
+        KavaLog.setSink(KavaAndroidEnvironment::log);
+        KavaAndroidEnvironment environment = new KavaAndroidEnvironment(context);
+        return new KavaPlatform(KavaClock.SYSTEM, environment, environment, context.getPackageName(),
+                Utils.getUserAgent(context), PlayKitManager.CLIENT_TAG, context.getFilesDir());
+    }
+
+    private static void log(int level, String tag, String message) {
+        PKLog log = PKLog.get(tag);
+        switch (level) {
+            case KavaLog.VERBOSE:
+                log.v(message);
+                break;
+            case KavaLog.DEBUG:
+                log.d(message);
+                break;
+            case KavaLog.WARN:
+                log.w(message);
+                break;
+            default:
+                log.e(message);
+                break;
+        }
+    }
+
+    @Override
+    public String getNetworkClass() {
+        return Utils.getNetworkClass(context);
+    }
+
+    @Override
+    public boolean isNetworkAvailable() {
+        try {
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            NetworkInfo networkInfo = connectivityManager != null ? connectivityManager.getActiveNetworkInfo() : null;
+            return networkInfo != null && networkInfo.isConnected();
+        } catch (SecurityException e) {
+            //No ACCESS_NETWORK_STATE permission, assume we are online.
+            return true;
+        }
+    }
+
+    @Override
+    public boolean isMeteredNetwork() {
+        try {
+            ConnectivityManager connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+            if (connectivityManager == null) {
+                return false;
+            }
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            return connectivityManager.isActiveNetworkMetered() || (networkInfo != null && networkInfo.getType() == ConnectivityManager.TYPE_MOBILE);
+        } catch (SecurityException e) {
+            //No ACCESS_NETWORK_STATE permission, keep the default interval.
+            return false;
+        }
+    }
+
+    @Override
+    public int getSoundMode() {
+        if (audioManager == null) {
+            return SOUND_MODE_UNKNOWN;
+        }
+        int musicVolume = audioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
+        if (musicVolume == 0 || audioManager.getRingerMode() != AudioManager.RINGER_MODE_NORMAL) {
+            return SOUND_MODE_OFF;
+        }
+        return SOUND_MODE_ON;
+    }
+}
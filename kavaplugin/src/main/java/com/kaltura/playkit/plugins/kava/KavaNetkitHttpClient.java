@@ -0,0 +1,42 @@
+package com.kaltura.playkit.plugins.kava;
+
+import com.kaltura.netkit.connect.executor.APIOkRequestsExecutor;
+import com.kaltura.netkit.connect.executor.RequestQueue;
+import com.kaltura.netkit.connect.request.RequestBuilder;
+import com.kaltura.netkit.connect.request.RequestElement;
+
+import java.util.Map;
+
+/**
+ * {@link KavaHttpClient} on top of the netkit executor shared with the rest of playkit.
+ */
+class KavaNetkitHttpClient implements KavaHttpClient {
+
+    private RequestQueue requestExecutor;
+
+    @Override
+    public void execute(KavaRequest request) {
+        if (requestExecutor == null) {
+            requestExecutor = APIOkRequestsExecutor.getSingleton();
+        }
+
+        RequestBuilder requestBuilder = new RequestBuilder()
+                .method(request.method)
+                .url(request.url)
+                .completion(response -> {
+                    if (response == null) {
+                        request.complete(false, null);
+                    } else {
+                        request.complete(response.isSuccess(), response.getCode(), response.getResponse());
+                    }
+                });
+        if (request.body != null) {
+            requestBuilder.body(request.body);
+        }
+        RequestElement requestElement = requestBuilder.build();
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            requestElement.getHeaders().put(header.getKey(), header.getValue());
+        }
+        requestExecutor.queue(requestElement);
+    }
+}
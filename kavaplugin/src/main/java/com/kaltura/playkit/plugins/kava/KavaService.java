@@ -12,8 +12,6 @@
 
 package com.kaltura.playkit.plugins.kava;
 
-import android.net.Uri;
-
 import com.kaltura.netkit.connect.request.RequestBuilder;
 
 import java.util.Map;
@@ -22,25 +20,22 @@ import static com.kaltura.playkit.utils.Consts.HTTP_METHOD_GET;
 
 /**
  * Created by anton.afanasiev on 02/10/2017.
+ *
+ * @deprecated The plugin no longer sends its reports through this class, it is kept for the integrators that
+ * build Kava requests themselves. The url is encoded by the same code as the plugin reports.
  */
-
+@Deprecated
 public class KavaService {
 
+    /**
+     * @deprecated Kept for backward compatibility, will be removed in a future major version.
+     */
+    @Deprecated
     public static RequestBuilder sendAnalyticsEvent(String baseUrl, String userAgent, Map<String, String> params) {
         RequestBuilder requestBuilder = new RequestBuilder()
                 .method(HTTP_METHOD_GET)
-                .url(buildUrlWithParams(baseUrl, params));
+                .url(KavaRequestFactory.buildUrlWithParams(baseUrl, params));
         requestBuilder.build().getHeaders().put("User-Agent", userAgent);
         return requestBuilder;
     }
-
-    private static String buildUrlWithParams(String baserUrl, Map<String, String> params) {
-
-        Uri.Builder builder = Uri.parse(baserUrl).buildUpon();
-
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            builder.appendQueryParameter(entry.getKey(), entry.getValue());
-        }
-        return builder.build().toString();
-    }
 }